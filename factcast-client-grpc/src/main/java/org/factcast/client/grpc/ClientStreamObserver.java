@@ -16,6 +16,7 @@
 package org.factcast.client.grpc;
 
 import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -62,6 +63,14 @@ public void onNext(MSG_Notification f) {
           onError(e);
         }
         break;
+      case Facts:
+        try {
+          subscription.notifyElements(new ArrayList<>(converter.fromProto(f.getFacts())));
+        } catch (TransformationException e) {
+          // cannot happen on client side...
+          onError(e);
+        }
+        break;
 
       default:
         subscription.notifyError(
@@ -84,6 +84,9 @@ public class GrpcFactStore implements FactStore {
 
   private final AtomicBoolean initialized = new AtomicBoolean(false);
 
+  // older servers would silently ignore payload predicates and send every fact
+  private volatile boolean payloadPredicatesSupported = false;
+
   @Autowired
   @Generated
   public GrpcFactStore(
@@ -144,6 +147,7 @@ public void publish(@NonNull List<? extends Fact> factsToPublish) {
   @Override
   public Subscription subscribe(
       @NonNull SubscriptionRequestTO req, @NonNull FactObserver observer) {
+    assertPayloadPredicatesSupported(req.specs());
     SubscriptionImpl subscription = SubscriptionImpl.on(observer);
     StreamObserver<FactStoreProto.MSG_Notification> responseObserver =
         new ClientStreamObserver(subscription);
@@ -193,6 +197,10 @@ public synchronized void initialize() {
       logProtocolVersion(serverProtocolVersion);
       logServerVersion(serverProperties);
       configureCompression(serverProperties.get(Capabilities.CODECS.toString()));
+      configureNotificationBatches(
+          serverProperties.get(Capabilities.NOTIFICATION_BATCHES.toString()));
+      configureBinaryFacts(serverProtocolVersion);
+      configurePayloadPredicates(serverProperties.get(Capabilities.PAYLOAD_PREDICATES.toString()));
     }
   }
 
@@ -238,6 +246,46 @@ void configureCompression(String codecListFromServer) {
             });
   }
 
+  @VisibleForTesting
+  void configureNotificationBatches(String notificationBatchesFromServer) {
+    if (Boolean.parseBoolean(notificationBatchesFromServer)) {
+      log.info("requesting batched notifications");
+      // only subscriptions are affected
+      Metadata meta = new Metadata();
+      meta.put(Headers.NOTIFICATION_BATCHES, String.valueOf(true));
+      stub = MetadataUtils.attachHeaders(stub, meta);
+    }
+  }
+
+  @VisibleForTesting
+  void configureBinaryFacts(ProtocolVersion serverProtocolVersion) {
+    if (Headers.BINARY_FACTS_SINCE.isCompatibleTo(serverProtocolVersion)) {
+      log.info("requesting binary facts");
+      // only subscriptions are affected
+      Metadata meta = new Metadata();
+      meta.put(Headers.BINARY_FACTS, String.valueOf(true));
+      stub = MetadataUtils.attachHeaders(stub, meta);
+    }
+  }
+
+  @VisibleForTesting
+  void configurePayloadPredicates(String payloadPredicatesFromServer) {
+    payloadPredicatesSupported = Boolean.parseBoolean(payloadPredicatesFromServer);
+    if (!payloadPredicatesSupported) {
+      log.info("Server does not support payload predicates, specs using them will be rejected");
+    }
+  }
+
+  @VisibleForTesting
+  void assertPayloadPredicatesSupported(List<FactSpec> specs) {
+    if (!payloadPredicatesSupported
+        && specs.stream().anyMatch(s -> !s.payloadPredicates().isEmpty())) {
+      throw new IncompatibleProtocolVersions(
+          "The Server does not support payload predicates in FactSpecs. "
+              + "\nPlease upgrade the Server or filter the facts by other means.");
+    }
+  }
+
   @Override
   public Set<String> enumerateNamespaces() {
     MSG_Empty empty = converter.empty();
@@ -289,6 +337,7 @@ public boolean publishIfUnchanged(
 
   @Override
   public @NonNull StateToken stateFor(List<FactSpec> specs) {
+    assertPayloadPredicatesSupported(specs);
     MSG_FactSpecsJson msg = converter.toProtoFactSpecs(specs);
     try {
       MSG_UUID result = blockingStub.stateForSpecsJson(msg);
@@ -20,6 +20,7 @@
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.UUID;
 import org.factcast.core.Fact;
 import org.factcast.core.subscription.FactTransformers;
@@ -30,6 +31,7 @@
 import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification.Type;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -65,6 +67,17 @@ void testOnNext() {
     verify(factObserver).onNext(eq(f));
   }
 
+  @Test
+  void testOnNextFacts() {
+    Fact f1 = Fact.of("{\"ns\":\"ns\",\"id\":\"" + UUID.randomUUID() + "\"}", "{}");
+    Fact f2 = Fact.of("{\"ns\":\"ns\",\"id\":\"" + UUID.randomUUID() + "\"}", "{}");
+    MSG_Notification n = converter.createNotificationFor(converter.toProto(Arrays.asList(f1, f2)));
+    uut.onNext(n);
+    InOrder inOrder = inOrder(factObserver);
+    inOrder.verify(factObserver).onNext(eq(f1));
+    inOrder.verify(factObserver).onNext(eq(f2));
+  }
+
   @Test
   void testOnNextFailsOnUnknownMessage() {
     assertThrows(
@@ -36,6 +36,7 @@
 import org.factcast.core.spec.FactSpec;
 import org.factcast.core.store.RetryableException;
 import org.factcast.core.store.StateToken;
+import org.factcast.core.subscription.SubscriptionRequest;
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.observer.FactObserver;
 import org.factcast.grpc.api.ConditionalPublishRequest;
@@ -97,6 +98,60 @@ void configureCompressionSkipCompression() {
     verifyNoMoreInteractions(stub);
   }
 
+  @Test
+  void configureNotificationBatchesIfAvail() {
+    uut.configureNotificationBatches("true");
+    verify(stub).withInterceptors(any());
+  }
+
+  @Test
+  void configureNotificationBatchesSkipIfNotAvail() {
+    uut.configureNotificationBatches(null);
+    uut.configureNotificationBatches("false");
+    verifyNoMoreInteractions(stub);
+  }
+
+  @Test
+  void configureBinaryFactsIfServerSupportsIt() {
+    uut.configureBinaryFacts(ProtocolVersion.of(1, 2, 0));
+    verify(stub).withInterceptors(any());
+  }
+
+  @Test
+  void configureBinaryFactsSkipForOlderServers() {
+    uut.configureBinaryFacts(ProtocolVersion.of(1, 1, 0));
+    verifyNoMoreInteractions(stub);
+  }
+
+  @Test
+  void rejectsPayloadPredicatesIfServerDoesNotSupportThem() {
+    uut.configurePayloadPredicates(null);
+    List<FactSpec> specs = Collections.singletonList(FactSpec.ns("ns").payload("a", 1));
+
+    assertThatThrownBy(() -> uut.stateFor(specs)).isInstanceOf(IncompatibleProtocolVersions.class);
+    assertThatThrownBy(
+            () ->
+                uut.subscribe(
+                    SubscriptionRequestTO.forFacts(
+                        SubscriptionRequest.catchup(specs).fromScratch()),
+                    mock(FactObserver.class)))
+        .isInstanceOf(IncompatibleProtocolVersions.class);
+    verifyNoInteractions(blockingStub, stub);
+  }
+
+  @Test
+  void acceptsSpecsWithoutPayloadPredicatesForAnyServer() {
+    uut.configurePayloadPredicates("false");
+    uut.assertPayloadPredicatesSupported(Collections.singletonList(FactSpec.ns("ns")));
+  }
+
+  @Test
+  void acceptsPayloadPredicatesIfServerSupportsThem() {
+    uut.configurePayloadPredicates("true");
+    uut.assertPayloadPredicatesSupported(
+        Collections.singletonList(FactSpec.ns("ns").payload("a", 1)));
+  }
+
   @Test
   void fetchById() {
     final TestFact fact = new TestFact();
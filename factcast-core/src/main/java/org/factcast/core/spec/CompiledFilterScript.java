@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.core.spec;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import org.factcast.core.Fact;
+
+/**
+ * A js filter script, compiled once per engine. Engines are not safe to be used by more than one
+ * thread at a time, so they are pooled and borrowed for the evaluation of a single fact.
+ */
+class CompiledFilterScript {
+
+  private static final String ENTRYPOINT = "__factcast_filter";
+
+  private final String code;
+
+  private final Supplier<ScriptEngine> engineSupplier;
+
+  private final int maxIdleEngines;
+
+  private final Deque<Invocable> engines = new ConcurrentLinkedDeque<>();
+
+  private final AtomicInteger idle = new AtomicInteger();
+
+  CompiledFilterScript(
+      @NonNull FilterScript script, @NonNull Supplier<ScriptEngine> engineSupplier) {
+    this(script, engineSupplier, Runtime.getRuntime().availableProcessors());
+  }
+
+  CompiledFilterScript(
+      @NonNull FilterScript script,
+      @NonNull Supplier<ScriptEngine> engineSupplier,
+      int maxIdleEngines) {
+    this.code =
+        "var test="
+            + script.source()
+            + ";\nfunction "
+            + ENTRYPOINT
+            + "(h,p){ return test(JSON.parse(h),JSON.parse(p)) }";
+    this.engineSupplier = engineSupplier;
+    this.maxIdleEngines = maxIdleEngines;
+    // compile eagerly, so that broken scripts fail on subscription
+    release(createEngine());
+  }
+
+  @SneakyThrows
+  boolean test(@NonNull Fact t) {
+    Invocable invocable = borrow();
+    try {
+      return (Boolean) invocable.invokeFunction(ENTRYPOINT, t.jsonHeader(), t.jsonPayload());
+    } finally {
+      release(invocable);
+    }
+  }
+
+  int idleEngines() {
+    return idle.get();
+  }
+
+  private Invocable borrow() {
+    Invocable invocable = engines.poll();
+    if (invocable == null) {
+      return createEngine();
+    }
+    idle.decrementAndGet();
+    return invocable;
+  }
+
+  private void release(Invocable invocable) {
+    // engines exceeding the limit are left to the GC
+    if (idle.incrementAndGet() <= maxIdleEngines) {
+      engines.push(invocable);
+    } else {
+      idle.decrementAndGet();
+    }
+  }
+
+  @SneakyThrows
+  private Invocable createEngine() {
+    ScriptEngine engine = engineSupplier.get();
+    engine.eval(code);
+    return (Invocable) engine;
+  }
+}
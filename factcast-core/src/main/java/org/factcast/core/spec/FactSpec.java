@@ -16,6 +16,8 @@
 package org.factcast.core.spec;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -46,11 +48,34 @@ public class FactSpec {
 
   @JsonProperty FilterScript filterScript = null;
 
+  // omitted when empty, so that specs without predicates serialize as before
+  @NonNull
+  @JsonProperty
+  @JsonInclude(Include.NON_EMPTY)
+  final List<PayloadPredicate> payloadPredicates = new LinkedList<>();
+
   public FactSpec meta(@NonNull String k, @NonNull String v) {
     meta.put(k, v);
     return this;
   }
 
+  /**
+   * Only matches facts, whose payload contains the given value (or any one of the orValues) at the
+   * given dot-separated path. Other than filter scripts, this is evaluated by the database.
+   */
+  public FactSpec payload(@NonNull String path, Object value, Object... orValues) {
+    List<Object> anyOf = new ArrayList<>();
+    anyOf.add(value);
+    if (orValues == null) {
+      // payload(path, x, null) passes null as the array
+      anyOf.add(null);
+    } else {
+      anyOf.addAll(Arrays.asList(orValues));
+    }
+    payloadPredicates.add(PayloadPredicate.of(path, anyOf));
+    return this;
+  }
+
   public static FactSpec ns(@NonNull String ns) {
     return new FactSpec(ns);
   }
@@ -117,6 +142,7 @@ public FactSpec copy() {
     FactSpec fs =
         FactSpec.ns(ns).type(type).version(version).aggId(aggId).filterScript(filterScript);
     fs.meta.putAll(meta);
+    fs.payloadPredicates.addAll(payloadPredicates);
     return fs;
   }
 }
@@ -15,6 +15,7 @@
  */
 package org.factcast.core.spec;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.util.LRUMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,7 @@
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import org.factcast.core.Fact;
+import org.factcast.core.util.FactCastJson;
 
 /**
  * Matches facts against specifications.
@@ -35,7 +37,8 @@
  */
 public final class FactSpecMatcher implements Predicate<Fact> {
 
-  private static final LRUMap<FilterScript, ScriptEngine> scriptEngineCache = new LRUMap<>(10, 200);
+  private static final LRUMap<FilterScript, CompiledFilterScript> scriptCache =
+      new LRUMap<>(10, 200);
 
   @NonNull final String ns;
 
@@ -47,9 +50,11 @@ public final class FactSpecMatcher implements Predicate<Fact> {
 
   final Map<String, String> meta;
 
+  final List<PayloadPredicate> payloadPredicates;
+
   final FilterScript script;
 
-  final ScriptEngine scriptEngine;
+  final CompiledFilterScript compiledScript;
 
   private static final Supplier<ScriptEngine> jsScriptEngineSupplier =
       new JavaScriptEngineSupplier();
@@ -65,8 +70,9 @@ public FactSpecMatcher(@NonNull FactSpec spec) {
     version = spec.version();
     aggId = spec.aggId();
     meta = spec.meta();
+    payloadPredicates = spec.payloadPredicates();
     script = spec.filterScript();
-    scriptEngine = getEngine(script);
+    compiledScript = compile(script);
   }
 
   @Override
@@ -76,6 +82,7 @@ public boolean test(Fact t) {
     match = match && versionMatch(t);
     match = match && aggIdMatch(t);
     match = match && metaMatch(t);
+    match = match && payloadMatch(t);
     match = match && scriptMatch(t);
     return match;
   }
@@ -87,8 +94,18 @@ protected boolean metaMatch(Fact t) {
     return meta.entrySet().stream().allMatch(e -> e.getValue().equals(t.meta(e.getKey())));
   }
 
+  @SneakyThrows
+  protected boolean payloadMatch(Fact t) {
+    if (payloadPredicates.isEmpty()) {
+      return true;
+    }
+    JsonNode payload = FactCastJson.readTree(t.jsonPayload());
+    return payloadPredicates.stream().allMatch(p -> p.test(payload));
+  }
+
   protected boolean nsMatch(Fact t) {
-    return ns.equals(t.ns());
+    // like the store queries, "*" matches any namespace
+    return "*".equals(ns) || ns.equals(t.ns());
   }
 
   protected boolean typeMatch(Fact t) {
@@ -114,18 +131,16 @@ protected boolean aggIdMatch(Fact t) {
     return t.aggIds().contains(aggId);
   }
 
-  @SneakyThrows
   @Generated
   protected boolean scriptMatch(Fact t) {
     if (script == null) {
       return true;
     }
-    return (Boolean) scriptEngine.eval("test(" + t.jsonHeader() + "," + t.jsonPayload() + ")");
+    return compiledScript.test(t);
   }
 
-  @SneakyThrows
   @Generated
-  private static synchronized ScriptEngine getEngine(FilterScript filterScript) {
+  private static synchronized CompiledFilterScript compile(FilterScript filterScript) {
     if (filterScript == null) {
       return null;
     }
@@ -133,14 +148,14 @@ private static synchronized ScriptEngine getEngine(FilterScript filterScript) {
     // TODO: currently only supports language js:
     if ("js".equals(filterScript.languageIdentifier())) {
 
-      ScriptEngine cachedEngine = scriptEngineCache.get(filterScript);
-      if (cachedEngine != null) {
-        return cachedEngine;
+      CompiledFilterScript cached = scriptCache.get(filterScript);
+      if (cached != null) {
+        return cached;
       } else {
-        ScriptEngine engine = jsScriptEngineSupplier.get();
-        engine.eval("var test=" + filterScript.source());
-        scriptEngineCache.put(filterScript, engine);
-        return engine;
+        CompiledFilterScript compiled =
+            new CompiledFilterScript(filterScript, jsScriptEngineSupplier);
+        scriptCache.put(filterScript, compiled);
+        return compiled;
       }
     } else {
       // TODO really?
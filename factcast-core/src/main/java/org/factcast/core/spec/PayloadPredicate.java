@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.core.spec;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.factcast.core.util.FactCastJson;
+
+/**
+ * Declarative predicate on the payload of a fact: the property at the given path has to be equal to
+ * any one of the given scalar values. In contrast to filter scripts, the store can evaluate this
+ * predicate while querying.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PayloadPredicate {
+
+  /** dot-separated path to the property, for instance "address.city" */
+  @NonNull String path;
+
+  /** Strings, Numbers, Booleans or null */
+  @NonNull List<Object> anyOf;
+
+  public static PayloadPredicate of(@NonNull String path, @NonNull List<Object> anyOf) {
+    if (path.trim().isEmpty() || path.startsWith(".") || path.endsWith(".")) {
+      throw new IllegalArgumentException("Invalid payload path: '" + path + "'");
+    }
+    if (anyOf.isEmpty()) {
+      throw new IllegalArgumentException("At least one value needed for payload path " + path);
+    }
+    for (Object o : anyOf) {
+      if (!isScalar(o)) {
+        throw new IllegalArgumentException(
+            "Only Strings, Numbers, Booleans or null can be matched, got " + o.getClass());
+      }
+    }
+    return new PayloadPredicate(path, new ArrayList<>(anyOf));
+  }
+
+  private static boolean isScalar(Object o) {
+    return o == null || o instanceof String || o instanceof Number || o instanceof Boolean;
+  }
+
+  public List<String> pathElements() {
+    return Arrays.asList(path.split("\\."));
+  }
+
+  /**
+   * @return a json object that contains the given value at the path of this predicate, suitable for
+   *     a jsonb containment check
+   */
+  public ObjectNode toContainedObject(Object value) {
+    ObjectNode root = FactCastJson.newObjectNode();
+    ObjectNode current = root;
+    List<String> elements = pathElements();
+    for (int i = 0; i < elements.size() - 1; i++) {
+      current = current.putObject(elements.get(i));
+    }
+    current.set(elements.get(elements.size() - 1), FactCastJson.valueToTree(value));
+    return root;
+  }
+
+  public boolean test(@NonNull JsonNode payload) {
+    JsonNode node = payload;
+    for (String e : pathElements()) {
+      if (node == null || !node.isObject()) {
+        return false;
+      }
+      node = node.get(e);
+    }
+    if (node == null) {
+      return false;
+    }
+    for (Object expected : anyOf) {
+      if (matches(node, expected)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(JsonNode node, Object expected) {
+    if (expected == null) {
+      return node.isNull();
+    }
+    if (expected instanceof String) {
+      return node.isTextual() && expected.equals(node.textValue());
+    }
+    if (expected instanceof Boolean) {
+      return node.isBoolean() && expected.equals(node.booleanValue());
+    }
+    // numbers are compared by value, like postgres does for jsonb
+    return node.isNumber()
+        && node.decimalValue().compareTo(new BigDecimal(expected.toString())) == 0;
+  }
+}
@@ -15,10 +15,25 @@
  */
 package org.factcast.core.subscription;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.NonNull;
 import org.factcast.core.Fact;
 
 public interface FactTransformerService {
   Fact transformIfNecessary(@NonNull Fact original, int targetVersion)
       throws TransformationException;
+
+  /**
+   * Transforms a batch of facts, returning the results in the order of the requests.
+   * Implementations are encouraged to access their caches in bulk and to transform in parallel.
+   */
+  default List<Fact> transformIfNecessary(@NonNull List<TransformationRequest> requests)
+      throws TransformationException {
+    List<Fact> transformed = new ArrayList<>(requests.size());
+    for (TransformationRequest r : requests) {
+      transformed.add(transformIfNecessary(r.toTransform(), r.targetVersion()));
+    }
+    return transformed;
+  }
 }
@@ -15,6 +15,8 @@
  */
 package org.factcast.core.subscription;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.NonNull;
 import org.factcast.core.Fact;
 
@@ -23,4 +25,15 @@ public interface FactTransformers {
 
   @NonNull
   Fact transformIfNecessary(@NonNull Fact e) throws TransformationException;
+
+  /** Transforms a batch of facts, returning the results in the same order. */
+  @NonNull
+  default List<Fact> transformIfNecessary(@NonNull List<Fact> facts)
+      throws TransformationException {
+    List<Fact> transformed = new ArrayList<>(facts.size());
+    for (Fact f : facts) {
+      transformed.add(transformIfNecessary(f));
+    }
+    return transformed;
+  }
 }
@@ -16,6 +16,9 @@
 package org.factcast.core.subscription;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -26,6 +29,7 @@
 import lombok.extern.slf4j.Slf4j;
 import org.factcast.core.Fact;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.observer.FlowControl;
 import org.factcast.core.subscription.observer.GenericObserver;
 
 /**
@@ -162,6 +166,65 @@ public void notifyElement(@NonNull Fact e) throws TransformationException {
     }
   }
 
+  /**
+   * Transforms the given facts as a batch before passing them to the observer. Stops notifying as
+   * soon as the subscription is closed.
+   */
+  public void notifyElements(@NonNull List<Fact> facts) throws TransformationException {
+    if (!closed.get() && !facts.isEmpty()) {
+      for (Fact f : transformers.transformIfNecessary(facts)) {
+        if (closed.get()) {
+          break;
+        }
+        observer.onNext(f);
+      }
+    }
+  }
+
+  /**
+   * Like {@link #notifyElements(List)}, but stops as soon as the observer signals that it cannot
+   * take more facts for now (see {@link FlowControl}).
+   *
+   * @return the transformed facts, that were not notified. They can be passed in again later, as
+   *     facts of the requested versions are not transformed again.
+   */
+  public List<Fact> notifyElementsWhileReady(@NonNull List<Fact> facts)
+      throws TransformationException {
+    if (closed.get() || facts.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Fact> transformed = transformers.transformIfNecessary(facts);
+    int notified = 0;
+    while (notified < transformed.size() && !closed.get() && isReady()) {
+      observer.onNext(transformed.get(notified++));
+    }
+    if (closed.get() || notified == transformed.size()) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(transformed.subList(notified, transformed.size()));
+  }
+
+  /**
+   * @return false, if the observer signals that it cannot take more facts for now
+   * @see FlowControl
+   */
+  public boolean isReady() {
+    return !(observer instanceof FlowControl) || ((FlowControl) observer).isReady();
+  }
+
+  /**
+   * Runs the given callback as soon as the observer is ready for more facts.
+   *
+   * @see FlowControl
+   */
+  public void onReady(@NonNull Runnable callback) {
+    if (observer instanceof FlowControl) {
+      ((FlowControl) observer).onReady(callback);
+    } else {
+      callback.run();
+    }
+  }
+
   public SubscriptionImpl onClose(Runnable e) {
     onClose = e;
     return this;
@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.core.subscription.observer;
+
+import lombok.NonNull;
+
+/**
+ * Optionally implemented by observers, whose consumer might not keep up with the facts delivered.
+ *
+ * <p>Fact sources that support it stop delivering while the observer is not ready and continue,
+ * once it signals readiness again, instead of blocking until the consumer catches up.
+ */
+public interface FlowControl {
+
+  /** @return false, if the observer cannot take more facts for now */
+  boolean isReady();
+
+  /**
+   * Registers a callback to be run once, as soon as the observer is ready (again). If it is ready
+   * already, the callback is run immediately.
+   *
+   * <p>The callback might be run by a transport thread, so it should hand off any real work.
+   */
+  void onReady(@NonNull Runnable callback);
+}
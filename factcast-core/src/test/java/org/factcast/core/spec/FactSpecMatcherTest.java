@@ -18,8 +18,15 @@
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.factcast.core.Fact;
 import org.factcast.core.TestFact;
 import org.factcast.core.TestHelper;
@@ -45,6 +52,7 @@ void testMetaMatch() {
   void testNsMatch() {
     assertTrue(nsMatch(FactSpec.ns("default"), new TestFact().ns("default")));
     assertFalse(nsMatch(FactSpec.ns("default"), new TestFact().ns("xxx")));
+    assertTrue(nsMatch(FactSpec.ns("*"), new TestFact().ns("xxx")));
   }
 
   @Test
@@ -183,6 +191,75 @@ void testMatchesByScript() {
     assertFalse(p.test(new TestFact().ns("1")));
   }
 
+  @Test
+  void testMatchesByScriptConcurrently() throws Exception {
+    String script =
+        "function (h,p) { var x = p.n; for (var i=0;i<1000;i++) { x = p.n; } return x % 2 == 0 }";
+    Predicate<Fact> p = FactSpecMatcher.matches(FactSpec.ns("1").jsFilterScript(script));
+
+    ExecutorService es = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results =
+          IntStream.range(0, 200)
+              .mapToObj(
+                  i ->
+                      es.submit(
+                          () -> p.test(new TestFact().ns("1").jsonPayload("{\"n\":" + i + "}"))))
+              .collect(Collectors.toList());
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(i % 2 == 0, results.get(i).get());
+      }
+    } finally {
+      es.shutdown();
+    }
+  }
+
+  @Test
+  void testScriptIsCompiledOncePerEngine() {
+    FilterScript script = FilterScript.js("function (h,p) { return p.test == 1 }");
+    AtomicInteger created = new AtomicInteger();
+    JavaScriptEngineSupplier supplier = new JavaScriptEngineSupplier();
+    CompiledFilterScript uut =
+        new CompiledFilterScript(
+            script,
+            () -> {
+              created.incrementAndGet();
+              return supplier.get();
+            },
+            1);
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue(uut.test(new TestFact().jsonPayload("{\"test\":1}")));
+    }
+
+    assertEquals(1, created.get());
+    assertEquals(1, uut.idleEngines());
+  }
+
+  @Test
+  void testBrokenScriptFailsOnCreation() {
+    Assertions.assertThrows(
+        Exception.class,
+        () -> FactSpecMatcher.matches(FactSpec.ns("1").jsFilterScript("function (h,p) { retur")));
+  }
+
+  @Test
+  void testMatchesByPayload() {
+    Predicate<Fact> p = FactSpecMatcher.matches(FactSpec.ns("1").payload("a.b", 1, 2));
+    assertTrue(p.test(new TestFact().ns("1").jsonPayload("{\"a\":{\"b\":1}}")));
+    assertTrue(p.test(new TestFact().ns("1").jsonPayload("{\"a\":{\"b\":2}}")));
+    assertFalse(p.test(new TestFact().ns("1").jsonPayload("{\"a\":{\"b\":3}}")));
+    assertFalse(p.test(new TestFact().ns("1")));
+  }
+
+  @Test
+  void testMatchesByAllPayloadPredicates() {
+    Predicate<Fact> p =
+        FactSpecMatcher.matches(FactSpec.ns("1").payload("a", "x").payload("b", true));
+    assertTrue(p.test(new TestFact().ns("1").jsonPayload("{\"a\":\"x\",\"b\":true}")));
+    assertFalse(p.test(new TestFact().ns("1").jsonPayload("{\"a\":\"x\",\"b\":false}")));
+  }
+
   @Test
   void testFactSpecMatcherNullConstructor() {
     Assertions.assertThrows(NullPointerException.class, () -> new FactSpecMatcher(null));
@@ -193,4 +193,34 @@ public void testFromList() {
         .contains(FactSpec.ns("ns").type("type").version(2))
         .contains(FactSpec.ns("ns").type("type"));
   }
+
+  @Test
+  public void testPayload() {
+    FactSpec spec = FactSpec.ns("ns").payload("a.b", 1, 2).payload("c", "x");
+    assertEquals(2, spec.payloadPredicates().size());
+    assertEquals(Arrays.asList(1, 2), spec.payloadPredicates().get(0).anyOf());
+    assertEquals(Arrays.asList("x"), spec.payloadPredicates().get(1).anyOf());
+  }
+
+  @Test
+  public void testPayloadWithNullAlternative() {
+    FactSpec spec = FactSpec.ns("ns").payload("a", 1, (Object[]) null);
+    assertEquals(Arrays.asList(1, null), spec.payloadPredicates().get(0).anyOf());
+  }
+
+  @Test
+  public void testPayloadIsCopied() {
+    FactSpec spec = FactSpec.ns("ns").payload("a", 1);
+    FactSpec copy = spec.copy();
+    assertEquals(spec, copy);
+    copy.payload("b", 2);
+    assertEquals(1, spec.payloadPredicates().size());
+  }
+
+  @Test
+  public void testPayloadSerialization() {
+    FactSpec spec = FactSpec.ns("ns").payload("a.b", "x", 1, true);
+    FactSpec read = FactCastJson.readValue(FactSpec.class, FactCastJson.writeValueAsString(spec));
+    assertEquals(spec, read);
+  }
 }
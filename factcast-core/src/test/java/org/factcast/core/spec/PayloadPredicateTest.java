@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.core.spec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Arrays;
+import java.util.Collections;
+import lombok.SneakyThrows;
+import org.factcast.core.util.FactCastJson;
+import org.junit.jupiter.api.*;
+
+public class PayloadPredicateTest {
+
+  @Test
+  void testInvalidPath() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PayloadPredicate.of("", Collections.singletonList("x")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PayloadPredicate.of(".a", Collections.singletonList("x")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PayloadPredicate.of("a.", Collections.singletonList("x")));
+  }
+
+  @Test
+  void testNoValues() {
+    assertThrows(
+        IllegalArgumentException.class, () -> PayloadPredicate.of("a", Collections.emptyList()));
+  }
+
+  @Test
+  void testNonScalarValue() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PayloadPredicate.of("a", Collections.singletonList(Collections.emptyMap())));
+  }
+
+  @Test
+  void testNulls() {
+    assertThrows(NullPointerException.class, () -> PayloadPredicate.of(null, null));
+    assertThrows(
+        NullPointerException.class,
+        () -> PayloadPredicate.of("a", Collections.singletonList("x")).test(null));
+  }
+
+  @Test
+  void testMatchesString() {
+    PayloadPredicate uut = PayloadPredicate.of("state", Arrays.asList("open", "closed"));
+    assertTrue(uut.test(json("{\"state\":\"open\"}")));
+    assertTrue(uut.test(json("{\"state\":\"closed\"}")));
+    assertFalse(uut.test(json("{\"state\":\"cancelled\"}")));
+    assertFalse(uut.test(json("{\"other\":\"open\"}")));
+    assertFalse(uut.test(json("{}")));
+  }
+
+  @Test
+  void testMatchesNested() {
+    PayloadPredicate uut = PayloadPredicate.of("order.state", Collections.singletonList("open"));
+    assertTrue(uut.test(json("{\"order\":{\"state\":\"open\"}}")));
+    assertFalse(uut.test(json("{\"order\":\"open\"}")));
+    assertFalse(uut.test(json("{\"state\":\"open\"}")));
+  }
+
+  @Test
+  void testMatchesNumbersByValue() {
+    PayloadPredicate uut = PayloadPredicate.of("n", Arrays.asList(1, 2.5));
+    assertTrue(uut.test(json("{\"n\":1}")));
+    assertTrue(uut.test(json("{\"n\":1.0}")));
+    assertTrue(uut.test(json("{\"n\":2.5}")));
+    assertFalse(uut.test(json("{\"n\":\"1\"}")));
+    assertFalse(uut.test(json("{\"n\":3}")));
+  }
+
+  @Test
+  void testMatchesBooleanAndNull() {
+    PayloadPredicate uut = PayloadPredicate.of("b", Arrays.asList(true, null));
+    assertTrue(uut.test(json("{\"b\":true}")));
+    assertTrue(uut.test(json("{\"b\":null}")));
+    assertFalse(uut.test(json("{\"b\":false}")));
+    assertFalse(uut.test(json("{\"b\":\"true\"}")));
+    assertFalse(uut.test(json("{}")));
+  }
+
+  @Test
+  void testToContainedObject() {
+    PayloadPredicate uut = PayloadPredicate.of("a.b.c", Collections.singletonList(1));
+    assertEquals("{\"a\":{\"b\":{\"c\":1}}}", uut.toContainedObject(1).toString());
+    assertEquals("{\"a\":{\"b\":{\"c\":null}}}", uut.toContainedObject(null).toString());
+    assertEquals("{\"a\":{\"b\":{\"c\":\"x\"}}}", uut.toContainedObject("x").toString());
+  }
+
+  @SneakyThrows
+  private static JsonNode json(String s) {
+    return FactCastJson.readTree(s);
+  }
+}
@@ -20,13 +20,18 @@
 import static org.mockito.Mockito.*;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeoutException;
 import org.factcast.core.Fact;
 import org.factcast.core.TestFact;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.observer.FlowControl;
 import org.factcast.core.subscription.observer.GenericObserver;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -219,4 +224,98 @@ public void testCloseThrowsException() {
     // this must return without exceptions
     uut.notifyComplete();
   }
+
+  @Test
+  void testNotifyElementsTransformsAsBatch() throws Exception {
+    Fact f1 = new TestFact();
+    Fact f2 = new TestFact();
+    Fact t1 = new TestFact();
+    Fact t2 = new TestFact();
+    when(factTransformers.transformIfNecessary(Arrays.asList(f1, f2)))
+        .thenReturn(Arrays.asList(t1, t2));
+
+    uut.notifyElements(Arrays.asList(f1, f2));
+
+    InOrder inOrder = inOrder(observer);
+    inOrder.verify(observer).onNext(t1);
+    inOrder.verify(observer).onNext(t2);
+  }
+
+  @Test
+  void testNotifyElementsAfterClose() throws Exception {
+    uut.close();
+
+    uut.notifyElements(Arrays.asList(new TestFact()));
+
+    verifyNoInteractions(factTransformers, observer);
+  }
+
+  @Test
+  void testNotifyElementsWhileReadyStopsWhenNotReady() throws Exception {
+    FactObserver flowControlled =
+        mock(FactObserver.class, withSettings().extraInterfaces(FlowControl.class));
+    SubscriptionImpl uut = new SubscriptionImpl(flowControlled, factTransformers);
+    Fact f1 = new TestFact();
+    Fact f2 = new TestFact();
+    Fact f3 = new TestFact();
+    Fact t1 = new TestFact();
+    Fact t2 = new TestFact();
+    Fact t3 = new TestFact();
+    when(factTransformers.transformIfNecessary(Arrays.asList(f1, f2, f3)))
+        .thenReturn(Arrays.asList(t1, t2, t3));
+    when(((FlowControl) flowControlled).isReady()).thenReturn(true, false);
+
+    List<Fact> rest = uut.notifyElementsWhileReady(Arrays.asList(f1, f2, f3));
+
+    verify(flowControlled).onNext(t1);
+    verify(flowControlled, never()).onNext(t2);
+    Assertions.assertEquals(Arrays.asList(t2, t3), rest);
+  }
+
+  @Test
+  void testNotifyElementsWhileReadyNotifiesAll() throws Exception {
+    Fact f1 = new TestFact();
+    Fact f2 = new TestFact();
+    when(factTransformers.transformIfNecessary(Arrays.asList(f1, f2)))
+        .thenReturn(Arrays.asList(f1, f2));
+
+    List<Fact> rest = uut.notifyElementsWhileReady(Arrays.asList(f1, f2));
+
+    verify(observer).onNext(f1);
+    verify(observer).onNext(f2);
+    Assertions.assertTrue(rest.isEmpty());
+  }
+
+  @Test
+  void testNotifyElementsWhileReadyAfterClose() throws Exception {
+    uut.close();
+
+    Assertions.assertTrue(uut.notifyElementsWhileReady(Arrays.asList(new TestFact())).isEmpty());
+
+    verifyNoInteractions(factTransformers, observer);
+  }
+
+  @Test
+  void testIsReadyWithoutFlowControl() {
+    Assertions.assertTrue(uut.isReady());
+    Runnable callback = mock(Runnable.class);
+    uut.onReady(callback);
+    verify(callback).run();
+  }
+
+  @Test
+  void testFlowControlIsDelegated() {
+    FactObserver flowControlled =
+        mock(FactObserver.class, withSettings().extraInterfaces(FlowControl.class));
+    SubscriptionImpl uut = new SubscriptionImpl(flowControlled, factTransformers);
+    Runnable callback = mock(Runnable.class);
+
+    Assertions.assertFalse(uut.isReady());
+    when(((FlowControl) flowControlled).isReady()).thenReturn(true);
+    Assertions.assertTrue(uut.isReady());
+
+    uut.onReady(callback);
+    verify((FlowControl) flowControlled).onReady(callback);
+    verify(callback, never()).run();
+  }
 }
@@ -17,7 +17,9 @@
 
 public enum Capabilities {
   FACTCAST_IMPL_VERSION,
-  CODECS;
+  CODECS,
+  NOTIFICATION_BATCHES,
+  PAYLOAD_PREDICATES;
 
   @Override
   public String toString() {
@@ -16,10 +16,28 @@
 package org.factcast.grpc.api;
 
 import io.grpc.Metadata;
+import org.factcast.grpc.api.conv.ProtocolVersion;
 
 public class Headers {
   private static final String GRPC_COMPRESSION_HEADER = "fc-msgcomp";
 
+  private static final String GRPC_NOTIFICATION_BATCHES_HEADER = "fc-notifbatch";
+
+  private static final String GRPC_BINARY_FACTS_HEADER = "fc-binfacts";
+
   public static final Metadata.Key<String> MESSAGE_COMPRESSION =
       Metadata.Key.of(Headers.GRPC_COMPRESSION_HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+  /** sent by clients that can unpack notifications of type Facts */
+  public static final Metadata.Key<String> NOTIFICATION_BATCHES =
+      Metadata.Key.of(Headers.GRPC_NOTIFICATION_BATCHES_HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+  /**
+   * sent by clients that can read facts with native header attributes, if the server's protocol
+   * version is at least {@link #BINARY_FACTS_SINCE}
+   */
+  public static final Metadata.Key<String> BINARY_FACTS =
+      Metadata.Key.of(Headers.GRPC_BINARY_FACTS_HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+  public static final ProtocolVersion BINARY_FACTS_SINCE = ProtocolVersion.of(1, 2, 0);
 }
@@ -64,6 +64,22 @@ public MSG_Notification createNotificationFor(@NonNull Fact t) {
     return builder.build();
   }
 
+  @NonNull
+  public MSG_Notification createNotificationFor(@NonNull MSG_Fact fact) {
+    MSG_Notification.Builder builder =
+        MSG_Notification.newBuilder().setType(MSG_Notification.Type.Fact);
+    builder.setFact(fact);
+    return builder.build();
+  }
+
+  @NonNull
+  public MSG_Notification createNotificationFor(@NonNull MSG_Facts facts) {
+    MSG_Notification.Builder builder =
+        MSG_Notification.newBuilder().setType(MSG_Notification.Type.Facts);
+    builder.setFacts(facts);
+    return builder.build();
+  }
+
   @NonNull
   public MSG_Notification createNotificationFor(@NonNull UUID id) {
     MSG_Notification.Builder builder =
@@ -116,6 +132,23 @@ public IdAndVersion fromProto(MSG_UUID_AND_VERSION request) {
   }
 
   public Fact fromProto(MSG_Fact protoFact) {
+    if (protoFact.hasNativeHeader()) {
+      MSG_FactHeader h = protoFact.getNativeHeader();
+      Set<UUID> aggIds = new LinkedHashSet<>();
+      for (MSG_UUID aggId : h.getAggIdsList()) {
+        aggIds.add(fromProto(aggId));
+      }
+      return new ProtoFact(
+          fromProto(h.getId()),
+          h.getNs(),
+          h.getType().isEmpty() ? null : h.getType(),
+          h.getVersion(),
+          aggIds,
+          h.getSerial(),
+          h.getTimestamp() == 0 ? null : h.getTimestamp(),
+          protoFact.getHeader(),
+          protoFact.getBinaryPayload());
+    }
     return Fact.of(protoFact.getHeader(), protoFact.getPayload());
   }
 
@@ -127,6 +160,38 @@ public MSG_Fact toProto(@NonNull Fact factMark) {
     return proto.build();
   }
 
+  /**
+   * Like {@link #toProto(Fact)}, but with the well-known header attributes as native fields and the
+   * payload as bytes, so that the receiver does not need to parse the header in order to read them.
+   */
+  @NonNull
+  public MSG_Fact toBinaryProto(@NonNull Fact fact) {
+    MSG_FactHeader.Builder header =
+        MSG_FactHeader.newBuilder()
+            .setId(toProto(fact.id()))
+            .setNs(fact.ns())
+            .setVersion(fact.version());
+    if (fact.type() != null) {
+      header.setType(fact.type());
+    }
+    for (UUID aggId : fact.aggIds()) {
+      header.addAggIds(toProto(aggId));
+    }
+    String serial = fact.meta("_ser");
+    if (serial != null) {
+      header.setSerial(Long.parseLong(serial));
+    }
+    Long timestamp = fact.timestamp();
+    if (timestamp != null) {
+      header.setTimestamp(timestamp);
+    }
+    return MSG_Fact.newBuilder()
+        .setHeader(fact.jsonHeader())
+        .setNativeHeader(header)
+        .setBinaryPayload(ByteString.copyFromUtf8(fact.jsonPayload()))
+        .build();
+  }
+
   @NonNull
   public MSG_OptionalFact toProto(@NonNull Optional<Fact> optFact) {
     Builder proto = MSG_OptionalFact.newBuilder();
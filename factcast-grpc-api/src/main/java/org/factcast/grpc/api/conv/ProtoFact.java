@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.grpc.api.conv;
+
+import com.google.protobuf.ByteString;
+import java.io.Serializable;
+import java.util.Set;
+import java.util.UUID;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.factcast.core.DefaultFact;
+import org.factcast.core.Fact;
+import org.factcast.core.FactHeader;
+import org.factcast.core.util.FactCastJson;
+
+/**
+ * Fact received with its well-known header attributes as native fields.
+ *
+ * <p>The header is only parsed, when meta data other than serial and timestamp (or the header
+ * itself) is requested, and the payload is only decoded when requested.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+@ToString(of = {"id"})
+@EqualsAndHashCode(of = {"id"})
+class ProtoFact implements Fact, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Getter @NonNull final UUID id;
+
+  @Getter @NonNull final String ns;
+
+  @Getter final String type;
+
+  @Getter final int version;
+
+  @Getter @NonNull final Set<UUID> aggIds;
+
+  // 0 if not present
+  final long serial;
+
+  final Long timestamp;
+
+  @Getter @NonNull final String jsonHeader;
+
+  @NonNull final transient ByteString payload;
+
+  private transient volatile String jsonPayload;
+
+  private transient volatile FactHeader header;
+
+  @Override
+  public @NonNull String jsonPayload() {
+    String s = jsonPayload;
+    if (s == null) {
+      s = payload.toStringUtf8();
+      jsonPayload = s;
+    }
+    return s;
+  }
+
+  @Override
+  public @NonNull FactHeader header() {
+    FactHeader h = header;
+    if (h == null) {
+      h = FactCastJson.readValue(FactHeader.class, jsonHeader);
+      header = h;
+    }
+    return h;
+  }
+
+  @Override
+  public String meta(String key) {
+    if ("_ser".equals(key) && serial != 0) {
+      return String.valueOf(serial);
+    }
+    if ("_ts".equals(key) && timestamp != null) {
+      return String.valueOf(timestamp);
+    }
+    return header().meta().get(key);
+  }
+
+  @Override
+  public long serial() {
+    if (serial != 0) {
+      return serial;
+    }
+    return Fact.super.serial();
+  }
+
+  @Override
+  public Long timestamp() {
+    if (timestamp != null) {
+      return timestamp;
+    }
+    return Fact.super.timestamp();
+  }
+
+  // serialized as what every consumer knows
+  private Object writeReplace() {
+    return DefaultFact.of(jsonHeader, jsonPayload());
+  }
+}
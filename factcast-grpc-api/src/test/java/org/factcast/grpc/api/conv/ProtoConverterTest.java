@@ -20,11 +20,16 @@
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.*;
 import lombok.NonNull;
 import lombok.val;
 import org.assertj.core.util.Lists;
 import org.assertj.core.util.Maps;
+import org.factcast.core.DefaultFact;
 import org.factcast.core.Fact;
 import org.factcast.core.snap.Snapshot;
 import org.factcast.core.snap.SnapshotId;
@@ -130,6 +135,78 @@ void testToProtoFacts_nullArg() {
     assertThrows(NullPointerException.class, () -> uut.toProto((List<Fact>) null));
   }
 
+  @Test
+  void testToBinaryProtoFact() {
+    UUID aggId = UUID.randomUUID();
+    Fact probe =
+        Fact.builder()
+            .ns("da-ns")
+            .aggId(aggId)
+            .aggId(UUID.randomUUID())
+            .type("da-type")
+            .version(3)
+            .meta("k1", "v1")
+            .meta("_ser", "42")
+            .meta("_ts", "1234")
+            .build("{\"foo\":\"bär\"}");
+
+    MSG_Fact proto = uut.toBinaryProto(probe);
+
+    assertTrue(proto.hasNativeHeader());
+    assertEquals(42, proto.getNativeHeader().getSerial());
+    assertEquals(1234, proto.getNativeHeader().getTimestamp());
+    assertTrue(proto.getPayload().isEmpty());
+
+    Fact copy = uut.fromProto(proto);
+    assertFactEqualTo(probe, copy);
+    assertEquals(3, copy.version());
+    assertEquals(42, copy.serial());
+    assertEquals(Long.valueOf(1234), copy.timestamp());
+    assertEquals("42", copy.meta("_ser"));
+    assertEquals("v1", copy.meta("k1"));
+    assertEquals(probe.header(), copy.header());
+  }
+
+  @Test
+  void testToBinaryProtoFactWithoutOptionalAttributes() {
+    Fact probe = Fact.builder().ns("da-ns").buildWithoutPayload();
+
+    Fact copy = uut.fromProto(uut.toBinaryProto(probe));
+
+    assertFactEqualTo(probe, copy);
+    assertNull(copy.type());
+    assertNull(copy.timestamp());
+    assertThrows(IllegalStateException.class, copy::serial);
+  }
+
+  @Test
+  void testBinaryFactIsSerializedAsDefaultFact() throws Exception {
+    Fact probe = Fact.builder().ns("da-ns").meta("_ser", "42").build("{}");
+    Fact copy = uut.fromProto(uut.toBinaryProto(probe));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(copy);
+    }
+    Object read;
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      read = in.readObject();
+    }
+
+    assertThat(read).isInstanceOf(DefaultFact.class);
+    assertFactEqualTo(probe, (Fact) read);
+    assertEquals(42, ((Fact) read).serial());
+  }
+
+  @Test
+  void testCreateNotificationForProtoFact() {
+    MSG_Fact fact = uut.toBinaryProto(Fact.builder().ns("da-ns").build("{}"));
+    MSG_Notification n = uut.createNotificationFor(fact);
+    assertEquals(MSG_Notification.Type.Fact, n.getType());
+    assertSame(fact, n.getFact());
+  }
+
   private void assertFactEqualTo(Fact probe, Fact copy) {
     assertEquals(probe.id(), copy.id());
     assertEquals(probe.aggIds(), copy.aggIds());
@@ -189,6 +266,25 @@ void testCreateNotificationForFact() {
     assertEquals(probe.ns(), uut.fromProto(n.getFact()).ns());
   }
 
+  @Test
+  void testCreateNotificationForFacts() {
+    final TestFact probe1 = new TestFact().ns("1");
+    final TestFact probe2 = new TestFact().ns("2");
+    MSG_Notification n = uut.createNotificationFor(uut.toProto(Arrays.asList(probe1, probe2)));
+    assertNotNull(n);
+    assertEquals(MSG_Notification.Type.Facts, n.getType());
+    List<? extends Fact> facts = uut.fromProto(n.getFacts());
+    assertEquals(2, facts.size());
+    assertEquals(probe1.id(), facts.get(0).id());
+    assertEquals(probe2.id(), facts.get(1).id());
+  }
+
+  @Test
+  void testCreateNotificationForFactsNull() {
+    Assertions.assertThrows(
+        NullPointerException.class, () -> uut.createNotificationFor((MSG_Facts) null));
+  }
+
   @Test
   void testCreateNotificationForUUID() {
     final UUID probe = UUID.randomUUID();
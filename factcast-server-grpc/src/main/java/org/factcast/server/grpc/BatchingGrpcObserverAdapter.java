@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.server.grpc;
+
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.observer.FlowControl;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Facts;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
+
+/**
+ * FactObserver implementation, that collects facts into batches and sends each batch as one
+ * notification, in order to save per-message overhead when streaming lots of facts.
+ *
+ * <p>A batch is sent, when it reaches either maxBatchSize facts or maxBatchBytes, when its first
+ * fact waited for maxLatencyMillis, or before any signal (catchup, complete, error) is sent. A fact
+ * that would make the batch exceed maxBatchBytes is only added after the batch was sent, and facts
+ * of maxBatchBytes or more are sent on their own, so that batching never produces a message bigger
+ * than the biggest fact.
+ *
+ * <p>Delayed flushes run on a scheduler shared by all subscriptions, so they never wait for a slow
+ * consumer: If the consumer is not ready, the flush is postponed until it is, and sending does not
+ * block, even if the consumer's queue is full.
+ *
+ * <p>Must only be used for clients that announced to understand notifications of type Facts.
+ */
+@Slf4j
+class BatchingGrpcObserverAdapter implements FactObserver, FlowControl {
+
+  private final ProtoConverter converter = new ProtoConverter();
+
+  // guards the batch
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // keeps the order of the messages sent. Acquired while holding the lock, which is then released
+  // before sending.
+  private final ReentrantLock sendLock = new ReentrantLock();
+
+  private final MSG_Facts.Builder batch = MSG_Facts.newBuilder();
+
+  private final String id;
+
+  private final StreamObserver<MSG_Notification> observer;
+
+  private final Function<Fact, MSG_Fact> encoder;
+
+  private final GrpcObserverAdapter signals;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final int maxBatchSize;
+
+  private final int maxBatchBytes;
+
+  private final long maxLatencyMillis;
+
+  private int batchBytes = 0;
+
+  private ScheduledFuture<?> scheduledFlush;
+
+  private volatile RuntimeException flushFailure;
+
+  BatchingGrpcObserverAdapter(
+      @NonNull String id,
+      @NonNull StreamObserver<MSG_Notification> observer,
+      @NonNull Function<Fact, MSG_Fact> encoder,
+      @NonNull ScheduledExecutorService scheduler,
+      int maxBatchSize,
+      int maxBatchBytes,
+      long maxLatencyMillis) {
+    this.id = id;
+    this.observer = observer;
+    this.encoder = encoder;
+    this.signals = new GrpcObserverAdapter(id, observer, converter::createNotificationFor);
+    this.scheduler = scheduler;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchBytes = maxBatchBytes;
+    this.maxLatencyMillis = maxLatencyMillis;
+  }
+
+  @Override
+  public void onNext(@NonNull Fact element) {
+    RuntimeException failure = flushFailure;
+    if (failure != null) {
+      throw failure;
+    }
+
+    MSG_Fact fact = encoder.apply(element);
+    int factBytes = fact.getSerializedSize();
+    List<MSG_Notification> toSend = new ArrayList<>(2);
+    lock.lock();
+    try {
+      boolean onItsOwn = false;
+      if (batchBytes + factBytes > maxBatchBytes) {
+        takeBatch(toSend);
+        if (factBytes >= maxBatchBytes) {
+          toSend.add(converter.createNotificationFor(fact));
+          onItsOwn = true;
+        }
+      }
+      if (!onItsOwn) {
+        batch.addFact(fact);
+        batchBytes += factBytes;
+        if (batch.getFactCount() >= maxBatchSize || batchBytes >= maxBatchBytes) {
+          takeBatch(toSend);
+        } else if (scheduledFlush == null) {
+          scheduledFlush =
+              scheduler.schedule(this::flushDelayed, maxLatencyMillis, TimeUnit.MILLISECONDS);
+        }
+      }
+      if (toSend.isEmpty()) {
+        return;
+      }
+      sendLock.lock();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      toSend.forEach(observer::onNext);
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  @Override
+  public void onCatchup() {
+    flushAndSignal(signals::onCatchup);
+  }
+
+  @Override
+  public void onComplete() {
+    flushAndSignal(signals::onComplete);
+  }
+
+  @Override
+  public void onError(@NonNull Throwable e) {
+    List<MSG_Notification> toSend = new ArrayList<>(1);
+    lock.lock();
+    try {
+      takeBatch(toSend);
+      sendLock.lock();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      try {
+        toSend.forEach(observer::onNext);
+      } catch (RuntimeException flushFailed) {
+        log.debug("{} could not send pending facts before error: {}", id, flushFailed.getMessage());
+      }
+      signals.onError(e);
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return signals.isReady();
+  }
+
+  @Override
+  public void onReady(@NonNull Runnable callback) {
+    signals.onReady(callback);
+  }
+
+  private void flushAndSignal(Runnable signal) {
+    List<MSG_Notification> toSend = new ArrayList<>(1);
+    lock.lock();
+    try {
+      takeBatch(toSend);
+      sendLock.lock();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      toSend.forEach(observer::onNext);
+      signal.run();
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  // must be called with lock held
+  private void takeBatch(List<MSG_Notification> toSend) {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    if (batch.getFactCount() > 0) {
+      toSend.add(converter.createNotificationFor(batch.build()));
+      batch.clear();
+      batchBytes = 0;
+    }
+  }
+
+  private void flushDelayed() {
+    if (!signals.isReady()) {
+      // rather than waiting on a shared scheduler thread, flush as soon as the consumer is ready
+      signals.onReady(() -> scheduler.execute(this::flushWithoutWaiting));
+      return;
+    }
+    flushWithoutWaiting();
+  }
+
+  private void flushWithoutWaiting() {
+    if (!lock.tryLock()) {
+      // the producer holds the lock and might add to the batch without scheduling another
+      // flush, so try again later rather than blocking a scheduler thread
+      retryFlushLater();
+      return;
+    }
+    List<MSG_Notification> toSend = new ArrayList<>(1);
+    try {
+      if (!sendLock.tryLock()) {
+        // the producer is sending, and might wait for the consumer
+        retryFlushLater();
+        return;
+      }
+      takeBatch(toSend);
+    } finally {
+      lock.unlock();
+    }
+    try {
+      toSend.forEach(this::sendWithoutWaiting);
+    } catch (RuntimeException e) {
+      log.debug("{} delayed flush failed: {}", id, e.getMessage());
+      // let the producer fail on its next attempt to send
+      flushFailure = e;
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  private void retryFlushLater() {
+    scheduler.schedule(this::flushDelayed, maxLatencyMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void sendWithoutWaiting(MSG_Notification n) {
+    if (observer instanceof FlowControlledStreamObserver) {
+      ((FlowControlledStreamObserver<MSG_Notification>) observer).onNextWithoutWaiting(n);
+    } else {
+      observer.onNext(n);
+    }
+  }
+}
@@ -35,6 +35,16 @@ public GrpcCompressionInterceptor grpcCompressionInterceptor() {
     return new GrpcCompressionInterceptor(new CompressionCodecs());
   }
 
+  @Bean
+  public GrpcNotificationBatchInterceptor grpcNotificationBatchInterceptor() {
+    return new GrpcNotificationBatchInterceptor();
+  }
+
+  @Bean
+  public GrpcBinaryFactsInterceptor grpcBinaryFactsInterceptor() {
+    return new GrpcBinaryFactsInterceptor();
+  }
+
   @Bean
   public GrpcExceptionInterceptor grpcExceptionInterceptor() {
     return new GrpcExceptionInterceptor();
@@ -19,6 +19,7 @@
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Bucket4j;
@@ -34,8 +35,11 @@
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -51,6 +55,7 @@
 import org.factcast.core.store.StateToken;
 import org.factcast.core.subscription.Subscription;
 import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.observer.FactObserver;
 import org.factcast.grpc.api.Capabilities;
 import org.factcast.grpc.api.CompressionCodecs;
 import org.factcast.grpc.api.ConditionalPublishRequest;
@@ -63,6 +68,7 @@
 import org.factcast.grpc.api.gen.RemoteFactStoreGrpc.RemoteFactStoreImplBase;
 import org.factcast.server.grpc.auth.FactCastAuthority;
 import org.factcast.server.grpc.auth.FactCastUser;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -78,9 +84,9 @@
 @RequiredArgsConstructor
 @GrpcService
 @SuppressWarnings("all")
-public class FactStoreGrpcService extends RemoteFactStoreImplBase {
+public class FactStoreGrpcService extends RemoteFactStoreImplBase implements DisposableBean {
 
-  static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.of(1, 1, 0);
+  static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.of(1, 2, 0);
 
   static final AtomicLong subscriptionIdStore = new AtomicLong();
 
@@ -92,6 +98,15 @@ public class FactStoreGrpcService extends RemoteFactStoreImplBase {
 
   final ProtoConverter converter = new ProtoConverter();
 
+  // flushes notification batches that did not fill up in time
+  final ScheduledExecutorService notificationBatchFlusher =
+      Executors.newScheduledThreadPool(
+          Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("grpc-notification-flush-%d")
+              .setDaemon(true)
+              .build());
+
   @VisibleForTesting
   protected FactStoreGrpcService(FactStore store) {
     this(store, new GrpcLimitProperties());
@@ -139,26 +154,21 @@ public void subscribe(
         assertCanRead(namespaces);
 
         resetDebugInfo(req);
-        BlockingStreamObserver<MSG_Notification> resp =
-            new BlockingStreamObserver<>(
+        FlowControlledStreamObserver<MSG_Notification> resp =
+            new FlowControlledStreamObserver<>(
                 req.toString(), (ServerCallStreamObserver) responseObserver);
 
-        Subscription sub =
-            store.subscribe(
-                req,
-                new GrpcObserverAdapter(
-                    req.toString(), resp, f -> converter.createNotificationFor(f)));
-
-        ((ServerCallStreamObserver<MSG_Notification>) responseObserver)
-            .setOnCancelHandler(
-                () -> {
-                  try {
-                    log.debug("got onCancel from stream, closing subscription {}", req.debugInfo());
-                    sub.close();
-                  } catch (Exception e) {
-                    log.debug("While closing connection after canel", e);
-                  }
-                });
+        Subscription sub = store.subscribe(req, createObserver(req.toString(), resp));
+
+        resp.setOnCancelHandler(
+            () -> {
+              try {
+                log.debug("got onCancel from stream, closing subscription {}", req.debugInfo());
+                sub.close();
+              } catch (Exception e) {
+                log.debug("While closing connection after canel", e);
+              }
+            });
 
       } catch (StatusException e) {
         responseObserver.onError(e);
@@ -169,6 +179,41 @@ public void subscribe(
     }
   }
 
+  @VisibleForTesting
+  FactObserver createObserver(String id, StreamObserver<MSG_Notification> resp) {
+    Function<Fact, MSG_Fact> encoder;
+    if (GrpcBinaryFactsInterceptor.binaryFactsAccepted()) {
+      log.trace("{} using binary facts", id);
+      encoder = converter::toBinaryProto;
+    } else {
+      encoder = converter::toProto;
+    }
+    if (notificationBatchesEnabled()
+        && GrpcNotificationBatchInterceptor.notificationBatchesAccepted()) {
+      log.trace("{} using batched notifications", id);
+      return new BatchingGrpcObserverAdapter(
+          id,
+          resp,
+          encoder,
+          notificationBatchFlusher,
+          grpcLimitProperties.maxNotificationBatchSize(),
+          grpcLimitProperties.maxNotificationBatchBytes(),
+          grpcLimitProperties.notificationBatchLatencyMillis());
+    } else {
+      return new GrpcObserverAdapter(
+          id, resp, f -> converter.createNotificationFor(encoder.apply(f)));
+    }
+  }
+
+  private boolean notificationBatchesEnabled() {
+    return grpcLimitProperties.maxNotificationBatchSize() > 1;
+  }
+
+  @Override
+  public void destroy() {
+    notificationBatchFlusher.shutdown();
+  }
+
   private final LoadingCache<String, Bucket> subscriptionTrail =
       CacheBuilder.newBuilder()
           .maximumSize(1000000)
@@ -250,6 +295,9 @@ private Map<String, String> collectProperties() {
     HashMap<String, String> properties = new HashMap<>();
     retrieveImplementationVersion(properties);
     properties.put(Capabilities.CODECS.toString(), codecs.available());
+    properties.put(
+        Capabilities.NOTIFICATION_BATCHES.toString(), String.valueOf(notificationBatchesEnabled()));
+    properties.put(Capabilities.PAYLOAD_PREDICATES.toString(), String.valueOf(true));
     log.info("handshake properties: {} ", properties);
     return properties;
   }
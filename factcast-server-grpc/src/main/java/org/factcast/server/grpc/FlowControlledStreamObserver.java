@@ -0,0 +1,311 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.server.grpc;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.MessageLite;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.subscription.observer.FlowControl;
+
+/**
+ * StreamObserver impl that never blocks the producer while the stream to the consumer is writable.
+ * Messages are queued and written by whatever thread finds the stream ready – either the producer
+ * or the transport's onReady callback.
+ *
+ * <p>The producer is expected to ask {@link #isReady()} and to stop producing (registering an
+ * {@link #onReady(Runnable)} callback instead), once HIGH_WATERMARK messages or
+ * HIGH_WATERMARK_BYTES of protobuf messages are queued. In order to protect the heap from producers
+ * that do not cooperate, the producer is blocked when reaching twice that (HARD_LIMIT messages or
+ * HARD_LIMIT_BYTES), so that every subscription holds at most a few hundred messages and a few MB
+ * in memory, and will retry RETRY_COUNT (default 60) times after WAIT_TIME (default 1000) millis,
+ * before failing with a {@link TransportLayerException}.
+ *
+ * <p>Like completion, an error is sent after the messages queued before it, so that the consumer
+ * receives everything produced up to the failure. Messages produced after an error are dropped.
+ *
+ * @param <T>
+ */
+@Slf4j
+public class FlowControlledStreamObserver<T> implements StreamObserver<T>, FlowControl {
+
+  @VisibleForTesting static final int HIGH_WATERMARK = 128;
+
+  @VisibleForTesting static final int HARD_LIMIT = 2 * HIGH_WATERMARK;
+
+  @VisibleForTesting static final long HIGH_WATERMARK_BYTES = 4 * 1024 * 1024;
+
+  @VisibleForTesting static final long HARD_LIMIT_BYTES = 2 * HIGH_WATERMARK_BYTES;
+
+  private static final int RETRY_COUNT = 60;
+
+  private static final int WAIT_TIME = 1000;
+
+  private static final Object COMPLETED = new Object();
+
+  private final ServerCallStreamObserver<T> delegate;
+
+  private final String id;
+
+  private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger queued = new AtomicInteger();
+
+  private final AtomicLong queuedBytes = new AtomicLong();
+
+  private final AtomicInteger wip = new AtomicInteger();
+
+  private final Queue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+
+  private final Object lock = new Object();
+
+  private final AtomicInteger waiting = new AtomicInteger();
+
+  private volatile boolean done;
+
+  private volatile RuntimeException failure;
+
+  // set as soon as an error is queued, in order to drop anything produced afterwards
+  private volatile boolean failed;
+
+  private volatile Runnable onCancel;
+
+  FlowControlledStreamObserver(@NonNull String id, @NonNull ServerCallStreamObserver<T> delegate) {
+    this.id = id;
+    this.delegate = delegate;
+    this.delegate.setOnReadyHandler(this::drain);
+    this.delegate.setOnCancelHandler(this::cancelled);
+  }
+
+  /**
+   * Sets a handler to be called after the stream was cancelled by the consumer. Use this rather
+   * than the delegate's method, as the delegate's handler is needed here.
+   */
+  void setOnCancelHandler(Runnable onCancel) {
+    this.onCancel = onCancel;
+  }
+
+  @Override
+  public void onNext(@NonNull T value) {
+    RuntimeException f = failure;
+    if (f != null) {
+      throw new TransportLayerException("channel failed: " + f.getMessage());
+    }
+    if (delegate.isCancelled() || done || failed) {
+      return;
+    }
+    if (limitReached()) {
+      awaitCapacity();
+    }
+    enqueue(value);
+  }
+
+  /**
+   * Like {@link #onNext(Object)}, but never blocks, even if the hard limit is reached. Only meant
+   * for callers that must not wait, and that make sure themselves not to queue more than a few
+   * messages beyond {@link #isReady()}.
+   */
+  void onNextWithoutWaiting(@NonNull T value) {
+    RuntimeException f = failure;
+    if (f != null) {
+      throw new TransportLayerException("channel failed: " + f.getMessage());
+    }
+    if (delegate.isCancelled() || done || failed) {
+      return;
+    }
+    enqueue(value);
+  }
+
+  @Override
+  public void onError(@NonNull Throwable t) {
+    if (!failed) {
+      failed = true;
+      enqueue(new Failure(t));
+    }
+  }
+
+  @Override
+  public void onCompleted() {
+    if (!failed) {
+      enqueue(COMPLETED);
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return queued.get() < HIGH_WATERMARK
+        && queuedBytes.get() < HIGH_WATERMARK_BYTES
+        && failure == null
+        && !delegate.isCancelled();
+  }
+
+  @Override
+  public void onReady(@NonNull Runnable callback) {
+    callbacks.add(callback);
+    // the stream might have become ready before the callback was added
+    runCallbacksIfReady();
+  }
+
+  private void enqueue(Object o) {
+    queue.add(o);
+    queued.incrementAndGet();
+    queuedBytes.addAndGet(sizeOf(o));
+    drain();
+  }
+
+  private boolean limitReached() {
+    return queued.get() >= HARD_LIMIT || queuedBytes.get() >= HARD_LIMIT_BYTES;
+  }
+
+  private static int sizeOf(Object o) {
+    // the size is memoized by protobuf, so asking again on dequeue is cheap
+    return o instanceof MessageLite ? ((MessageLite) o).getSerializedSize() : 0;
+  }
+
+  @VisibleForTesting
+  void drain() {
+    if (wip.getAndIncrement() != 0) {
+      // some other thread is draining and will pick up what we queued
+      return;
+    }
+    int missed = 1;
+    do {
+      while (true) {
+        if (done || delegate.isCancelled()) {
+          clear();
+          break;
+        }
+        Object next = queue.peek();
+        if (next == null) {
+          break;
+        }
+        if (next != COMPLETED && !(next instanceof Failure) && !delegate.isReady()) {
+          // continued by the onReady handler
+          break;
+        }
+        queue.poll();
+        queued.decrementAndGet();
+        queuedBytes.addAndGet(-sizeOf(next));
+        send(next);
+      }
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+
+    if (waiting.get() > 0) {
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+    runCallbacksIfReady();
+  }
+
+  // must only be called from within drain
+  @SuppressWarnings("unchecked")
+  private void send(Object o) {
+    try {
+      if (o == COMPLETED) {
+        done = true;
+        delegate.onCompleted();
+      } else if (o instanceof Failure) {
+        sendError(((Failure) o).cause);
+      } else {
+        delegate.onNext((T) o);
+      }
+    } catch (RuntimeException e) {
+      log.debug("{} failed to write to channel: {}", id, e.getMessage());
+      // let the producer fail on its next attempt to send
+      failure = e;
+      done = true;
+    }
+  }
+
+  // must only be called from within drain
+  private void sendError(Throwable t) {
+    done = true;
+    try {
+      delegate.onError(t);
+    } catch (RuntimeException e) {
+      log.debug("{} failed to send error to channel: {}", id, e.getMessage());
+    }
+  }
+
+  private void runCallbacksIfReady() {
+    // also resume the producer, if the stream is broken, so that it sees the failure
+    if (isReady() || failure != null || delegate.isCancelled()) {
+      Runnable callback;
+      while ((callback = callbacks.poll()) != null) {
+        try {
+          callback.run();
+        } catch (RuntimeException e) {
+          log.warn("{} onReady callback failed", id, e);
+        }
+      }
+    }
+  }
+
+  private void awaitCapacity() {
+    waiting.incrementAndGet();
+    try {
+      synchronized (lock) {
+        for (int i = 1; i <= RETRY_COUNT && limitReached() && !delegate.isCancelled(); i++) {
+          log.trace("{} channel not ready. Slow client? Attempt: {}/{}", id, i, RETRY_COUNT);
+          try {
+            lock.wait(WAIT_TIME);
+          } catch (InterruptedException meh) {
+            // ignore
+          }
+        }
+      }
+    } finally {
+      waiting.decrementAndGet();
+    }
+    if (limitReached() && !delegate.isCancelled()) {
+      throw new TransportLayerException("channel not coming back.");
+    }
+  }
+
+  private static final class Failure {
+    final Throwable cause;
+
+    Failure(Throwable cause) {
+      this.cause = cause;
+    }
+  }
+
+  private void cancelled() {
+    log.debug("{} stream cancelled, dropping {} queued messages", id, queued.get());
+    drain();
+    Runnable r = onCancel;
+    if (r != null) {
+      r.run();
+    }
+  }
+
+  // must only be called from within drain
+  private void clear() {
+    Object o;
+    while ((o = queue.poll()) != null) {
+      queued.decrementAndGet();
+      queuedBytes.addAndGet(-sizeOf(o));
+    }
+  }
+}
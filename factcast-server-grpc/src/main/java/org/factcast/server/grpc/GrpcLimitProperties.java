@@ -28,4 +28,10 @@ public class GrpcLimitProperties {
   private int initialNumberOfCatchupRequestsAllowedPerClient = 36000;
 
   private int numberOfCatchupRequestsAllowedPerClientPerMinute = 6000;
+
+  private int maxNotificationBatchSize = 1000;
+
+  private int maxNotificationBatchBytes = 512 * 1024;
+
+  private int notificationBatchLatencyMillis = 10;
 }
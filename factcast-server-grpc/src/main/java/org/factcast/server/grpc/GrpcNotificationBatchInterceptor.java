@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.server.grpc;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCall.Listener;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.factcast.grpc.api.Headers;
+
+/** Remembers in the call's context, whether the client is able to receive batched notifications. */
+@GrpcGlobalServerInterceptor
+@Slf4j
+public class GrpcNotificationBatchInterceptor implements ServerInterceptor {
+
+  private static final Context.Key<Boolean> NOTIFICATION_BATCHES =
+      Context.key(Headers.NOTIFICATION_BATCHES.name());
+
+  @Override
+  public <ReqT, RespT> Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    if (Boolean.parseBoolean(headers.get(Headers.NOTIFICATION_BATCHES))) {
+      log.trace("client accepts batched notifications");
+      Context ctx = Context.current().withValue(NOTIFICATION_BATCHES, true);
+      return Contexts.interceptCall(ctx, call, headers, next);
+    }
+    return next.startCall(call, headers);
+  }
+
+  /** @return true, if the client of the current call is able to receive batched notifications */
+  static boolean notificationBatchesAccepted() {
+    return Boolean.TRUE.equals(NOTIFICATION_BATCHES.get());
+  }
+}
@@ -22,17 +22,20 @@
 import lombok.extern.slf4j.Slf4j;
 import org.factcast.core.Fact;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.observer.FlowControl;
 import org.factcast.grpc.api.conv.ProtoConverter;
 import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
 
 /**
  * FactObserver implementation, that translates observer Events to transport layer messages.
  *
+ * <p>Passes the flow control of the underlying observer (if any) on to the fact source.
+ *
  * @author <uwe.schaefer@prisma-capacity.eu>
  */
 @Slf4j
 @RequiredArgsConstructor
-class GrpcObserverAdapter implements FactObserver {
+class GrpcObserverAdapter implements FactObserver, FlowControl {
 
   final ProtoConverter converter = new ProtoConverter();
 
@@ -74,4 +77,18 @@ public void onCatchup() {
   public void onNext(Fact element) {
     observer.onNext(projection.apply(element));
   }
+
+  @Override
+  public boolean isReady() {
+    return !(observer instanceof FlowControl) || ((FlowControl) observer).isReady();
+  }
+
+  @Override
+  public void onReady(@NonNull Runnable callback) {
+    if (observer instanceof FlowControl) {
+      ((FlowControl) observer).onReady(callback);
+    } else {
+      callback.run();
+    }
+  }
 }
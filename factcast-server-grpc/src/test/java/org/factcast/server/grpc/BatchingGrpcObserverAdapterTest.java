@@ -0,0 +1,334 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.server.grpc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.base.Strings;
+import io.grpc.stub.StreamObserver;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.factcast.core.Fact;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+@ExtendWith(MockitoExtension.class)
+public class BatchingGrpcObserverAdapterTest {
+
+  @Mock private StreamObserver<MSG_Notification> observer;
+
+  @Mock private ScheduledExecutorService scheduler;
+
+  @Mock private ScheduledFuture future;
+
+  @Captor private ArgumentCaptor<MSG_Notification> msg;
+
+  private final Function<Fact, MSG_Fact> encoder = new ProtoConverter()::toProto;
+
+  @Test
+  void testNullsOnConstructor() {
+    assertThrows(
+        NullPointerException.class,
+        () -> new BatchingGrpcObserverAdapter(null, observer, encoder, scheduler, 10, 1000, 10));
+    assertThrows(
+        NullPointerException.class,
+        () -> new BatchingGrpcObserverAdapter("id", null, encoder, scheduler, 10, 1000, 10));
+    assertThrows(
+        NullPointerException.class,
+        () -> new BatchingGrpcObserverAdapter("id", observer, encoder, null, 10, 1000, 10));
+    assertThrows(
+        NullPointerException.class,
+        () -> new BatchingGrpcObserverAdapter("id", observer, null, scheduler, 10, 1000, 10));
+  }
+
+  @Test
+  void testUsesEncoder() {
+    BatchingGrpcObserverAdapter uut =
+        new BatchingGrpcObserverAdapter(
+            "id", observer, new ProtoConverter()::toBinaryProto, scheduler, 1, 1000, 10);
+
+    uut.onNext(fact());
+
+    verify(observer).onNext(msg.capture());
+    assertTrue(msg.getValue().getFacts().getFact(0).hasNativeHeader());
+  }
+
+  @Test
+  void testSendsFullBatch() {
+    doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    BatchingGrpcObserverAdapter uut = uut(3, Integer.MAX_VALUE);
+
+    uut.onNext(fact());
+    uut.onNext(fact());
+    verify(observer, never()).onNext(any());
+
+    uut.onNext(fact());
+    verify(observer).onNext(msg.capture());
+    assertEquals(MSG_Notification.Type.Facts, msg.getValue().getType());
+    assertEquals(3, msg.getValue().getFacts().getFactCount());
+    // the pending delayed flush is no longer necessary
+    verify(future).cancel(false);
+  }
+
+  @Test
+  void testSendsFactsOfMaxBytesOnTheirOwn() {
+    BatchingGrpcObserverAdapter uut = uut(1000, 1);
+
+    uut.onNext(fact());
+    uut.onNext(fact());
+
+    verify(observer, times(2)).onNext(msg.capture());
+    msg.getAllValues().forEach(n -> assertEquals(MSG_Notification.Type.Fact, n.getType()));
+    verifyNoInteractions(scheduler);
+  }
+
+  @Test
+  void testSendsBatchBeforeExceedingBytes() {
+    doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    int factBytes = encoder.apply(fact()).getSerializedSize();
+    BatchingGrpcObserverAdapter uut = uut(1000, factBytes * 5 / 2);
+
+    uut.onNext(fact());
+    uut.onNext(fact());
+    verify(observer, never()).onNext(any());
+
+    uut.onNext(fact());
+    verify(observer).onNext(msg.capture());
+    assertEquals(2, msg.getValue().getFacts().getFactCount());
+    assertTrue(msg.getValue().getSerializedSize() < factBytes * 3);
+  }
+
+  @Test
+  void testSendsOversizedFactAfterPendingBatch() {
+    doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    BatchingGrpcObserverAdapter uut = uut(1000, 1000);
+    Fact small = fact();
+    Fact big = Fact.builder().ns("test").build("{\"a\":\"" + Strings.repeat("x", 2000) + "\"}");
+
+    uut.onNext(small);
+    uut.onNext(big);
+
+    verify(observer, times(2)).onNext(msg.capture());
+    List<MSG_Notification> sent = msg.getAllValues();
+    assertEquals(MSG_Notification.Type.Facts, sent.get(0).getType());
+    assertEquals(1, sent.get(0).getFacts().getFactCount());
+    assertTrue(sent.get(0).getFacts().getFact(0).getHeader().contains(small.id().toString()));
+    assertEquals(MSG_Notification.Type.Fact, sent.get(1).getType());
+    assertTrue(sent.get(1).getFact().getHeader().contains(big.id().toString()));
+  }
+
+  @Test
+  void testKeepsOrder() {
+    BatchingGrpcObserverAdapter uut = uut(2, Integer.MAX_VALUE);
+    doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    Fact f1 = fact();
+    Fact f2 = fact();
+
+    uut.onNext(f1);
+    uut.onNext(f2);
+
+    verify(observer).onNext(msg.capture());
+    assertTrue(msg.getValue().getFacts().getFact(0).getHeader().contains(f1.id().toString()));
+    assertTrue(msg.getValue().getFacts().getFact(1).getHeader().contains(f2.id().toString()));
+  }
+
+  @Test
+  void testFlushesBeforeCatchup() {
+    doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    BatchingGrpcObserverAdapter uut = uut(10, Integer.MAX_VALUE);
+
+    uut.onNext(fact());
+    uut.onCatchup();
+
+    verify(observer, times(2)).onNext(msg.capture());
+    List<MSG_Notification> sent = msg.getAllValues();
+    assertEquals(MSG_Notification.Type.Facts, sent.get(0).getType());
+    assertEquals(MSG_Notification.Type.Catchup, sent.get(1).getType());
+  }
+
+  @Test
+  void testFlushesBeforeComplete() {
+    doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    BatchingGrpcObserverAdapter uut = uut(10, Integer.MAX_VALUE);
+
+    uut.onNext(fact());
+    uut.onComplete();
+
+    verify(observer, times(2)).onNext(msg.capture());
+    List<MSG_Notification> sent = msg.getAllValues();
+    assertEquals(MSG_Notification.Type.Facts, sent.get(0).getType());
+    assertEquals(MSG_Notification.Type.Complete, sent.get(1).getType());
+    verify(observer).onCompleted();
+  }
+
+  @Test
+  void testSignalsWithoutPendingFacts() {
+    BatchingGrpcObserverAdapter uut = uut(10, Integer.MAX_VALUE);
+
+    uut.onCatchup();
+
+    verify(observer).onNext(msg.capture());
+    assertEquals(MSG_Notification.Type.Catchup, msg.getValue().getType());
+  }
+
+  @Test
+  void testErrorIsSentEvenIfFlushFails() {
+    doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    BatchingGrpcObserverAdapter uut = uut(10, Integer.MAX_VALUE);
+    doThrow(TransportLayerException.class).when(observer).onNext(any());
+    Exception e = new Exception();
+
+    uut.onNext(fact());
+    uut.onError(e);
+
+    verify(observer).onError(e);
+  }
+
+  @Test
+  void testFlushesAfterLatency() throws Exception {
+    ScheduledExecutorService realScheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      BatchingGrpcObserverAdapter uut =
+          new BatchingGrpcObserverAdapter(
+              "id", observer, encoder, realScheduler, 10, Integer.MAX_VALUE, 10);
+
+      uut.onNext(fact());
+      uut.onNext(fact());
+
+      verify(observer, timeout(5000)).onNext(msg.capture());
+      assertEquals(2, msg.getValue().getFacts().getFactCount());
+    } finally {
+      realScheduler.shutdownNow();
+      realScheduler.awaitTermination(1, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void testFailedDelayedFlushIsRethrownToProducer() throws Exception {
+    ArgumentCaptor<Runnable> delayedFlush = ArgumentCaptor.forClass(Runnable.class);
+    doReturn(future).when(scheduler).schedule(delayedFlush.capture(), anyLong(), any());
+    BatchingGrpcObserverAdapter uut = uut(10, Integer.MAX_VALUE);
+    doThrow(new TransportLayerException("channel not coming back.")).when(observer).onNext(any());
+
+    uut.onNext(fact());
+    delayedFlush.getValue().run();
+
+    assertThrows(TransportLayerException.class, () -> uut.onNext(fact()));
+  }
+
+  @Test
+  void testDelayedFlushWaitsForReadinessWithoutBlocking() {
+    FlowControlledStreamObserver<MSG_Notification> flowControlled =
+        mock(FlowControlledStreamObserver.class);
+    ArgumentCaptor<Runnable> delayedFlush = ArgumentCaptor.forClass(Runnable.class);
+    doReturn(future).when(scheduler).schedule(delayedFlush.capture(), anyLong(), any());
+    BatchingGrpcObserverAdapter uut =
+        new BatchingGrpcObserverAdapter(
+            "id", flowControlled, encoder, scheduler, 10, Integer.MAX_VALUE, 10);
+    uut.onNext(fact());
+    when(flowControlled.isReady()).thenReturn(false);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    doNothing().when(flowControlled).onReady(onReady.capture());
+
+    delayedFlush.getValue().run();
+    verifyNoMoreInteractions(ignoreStubs(flowControlled));
+
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+    doNothing().when(scheduler).execute(flush.capture());
+    onReady.getValue().run();
+    flush.getValue().run();
+
+    verify(flowControlled).onNextWithoutWaiting(msg.capture());
+    assertEquals(1, msg.getValue().getFacts().getFactCount());
+    verify(flowControlled, never()).onNext(any());
+  }
+
+  @Test
+  @Timeout(10)
+  void testDelayedFlushDoesNotWaitForSendingProducer() throws Exception {
+    ArgumentCaptor<Runnable> delayedFlush = ArgumentCaptor.forClass(Runnable.class);
+    doReturn(future).when(scheduler).schedule(delayedFlush.capture(), anyLong(), any());
+    BatchingGrpcObserverAdapter uut = uut(2, Integer.MAX_VALUE);
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch consumerReady = new CountDownLatch(1);
+    doAnswer(
+            i -> {
+              sending.countDown();
+              consumerReady.await();
+              return null;
+            })
+        .when(observer)
+        .onNext(any());
+    // completes a batch and waits for the consumer, while sending it
+    CompletableFuture<Void> producer =
+        CompletableFuture.runAsync(
+            () -> {
+              uut.onNext(fact());
+              uut.onNext(fact());
+            });
+    sending.await();
+    // the batch is free to take more facts in the meantime
+    uut.onNext(fact());
+    verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), any());
+
+    delayedFlush.getValue().run();
+
+    // returned without sending and tries again later
+    verify(scheduler, times(3)).schedule(any(Runnable.class), anyLong(), any());
+    consumerReady.countDown();
+    producer.get();
+    verify(observer).onNext(msg.capture());
+    assertEquals(2, msg.getValue().getFacts().getFactCount());
+  }
+
+  @Test
+  void testFlowControlIsDelegated() {
+    FlowControlledStreamObserver<MSG_Notification> flowControlled =
+        mock(FlowControlledStreamObserver.class);
+    BatchingGrpcObserverAdapter uut =
+        new BatchingGrpcObserverAdapter("id", flowControlled, encoder, scheduler, 10, 1000, 10);
+    when(flowControlled.isReady()).thenReturn(false);
+    assertFalse(uut.isReady());
+    Runnable callback = mock(Runnable.class);
+    uut.onReady(callback);
+    verify(flowControlled).onReady(callback);
+  }
+
+  private BatchingGrpcObserverAdapter uut(int maxBatchSize, int maxBatchBytes) {
+    return new BatchingGrpcObserverAdapter(
+        "id", observer, encoder, scheduler, maxBatchSize, maxBatchBytes, 10);
+  }
+
+  private static Fact fact() {
+    return Fact.builder().ns("test").build("{}");
+  }
+}
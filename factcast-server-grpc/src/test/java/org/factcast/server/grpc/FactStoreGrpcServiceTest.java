@@ -21,6 +21,8 @@
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
 import io.grpc.Status;
 import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
@@ -28,6 +30,7 @@
 import io.grpc.stub.StreamObserver;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.NonNull;
 import lombok.val;
 import org.factcast.core.Fact;
@@ -39,8 +42,10 @@
 import org.factcast.core.subscription.SubscriptionRequest;
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.TransformationException;
+import org.factcast.core.subscription.observer.FactObserver;
 import org.factcast.grpc.api.Capabilities;
 import org.factcast.grpc.api.ConditionalPublishRequest;
+import org.factcast.grpc.api.Headers;
 import org.factcast.grpc.api.StateForRequest;
 import org.factcast.grpc.api.conv.ProtoConverter;
 import org.factcast.grpc.api.gen.FactStoreProto.*;
@@ -426,6 +431,109 @@ public void testHandshake() {
     verify(so).onNext(any(MSG_ServerConfig.class));
   }
 
+  @Test
+  public void testHandshakeAnnouncesNotificationBatches() {
+    StreamObserver<MSG_ServerConfig> so = mock(StreamObserver.class);
+    ArgumentCaptor<MSG_ServerConfig> cfg = ArgumentCaptor.forClass(MSG_ServerConfig.class);
+    uut.handshake(conv.empty(), so);
+
+    verify(so).onNext(cfg.capture());
+    assertEquals(
+        "true",
+        conv.fromProto(cfg.getValue())
+            .properties()
+            .get(Capabilities.NOTIFICATION_BATCHES.toString()));
+  }
+
+  @Test
+  public void testHandshakeAnnouncesPayloadPredicates() {
+    StreamObserver<MSG_ServerConfig> so = mock(StreamObserver.class);
+    ArgumentCaptor<MSG_ServerConfig> cfg = ArgumentCaptor.forClass(MSG_ServerConfig.class);
+    uut.handshake(conv.empty(), so);
+
+    verify(so).onNext(cfg.capture());
+    assertEquals(
+        "true",
+        conv.fromProto(cfg.getValue())
+            .properties()
+            .get(Capabilities.PAYLOAD_PREDICATES.toString()));
+  }
+
+  @Test
+  public void testHandshakeDoesNotAnnounceDisabledNotificationBatches() {
+    uut = new FactStoreGrpcService(backend, new GrpcLimitProperties().maxNotificationBatchSize(1));
+    StreamObserver<MSG_ServerConfig> so = mock(StreamObserver.class);
+    ArgumentCaptor<MSG_ServerConfig> cfg = ArgumentCaptor.forClass(MSG_ServerConfig.class);
+    uut.handshake(conv.empty(), so);
+
+    verify(so).onNext(cfg.capture());
+    assertEquals(
+        "false",
+        conv.fromProto(cfg.getValue())
+            .properties()
+            .get(Capabilities.NOTIFICATION_BATCHES.toString()));
+  }
+
+  @Test
+  public void testCreateObserverWithoutNotificationBatches() {
+    assertTrue(uut.createObserver("id", mock(StreamObserver.class)) instanceof GrpcObserverAdapter);
+  }
+
+  @Test
+  public void testCreateObserverWithNotificationBatches() {
+    assertTrue(createObserverForClientAcceptingBatches() instanceof BatchingGrpcObserverAdapter);
+  }
+
+  @Test
+  public void testCreateObserverWithDisabledNotificationBatches() {
+    uut = new FactStoreGrpcService(backend, new GrpcLimitProperties().maxNotificationBatchSize(1));
+    assertTrue(createObserverForClientAcceptingBatches() instanceof GrpcObserverAdapter);
+  }
+
+  @Test
+  public void testCreateObserverWithBinaryFacts() {
+    StreamObserver<MSG_Notification> so = mock(StreamObserver.class);
+    Metadata headers = new Metadata();
+    headers.put(Headers.BINARY_FACTS, "true");
+    new GrpcBinaryFactsInterceptor()
+        .interceptCall(
+            mock(ServerCall.class),
+            headers,
+            (call, h) -> {
+              uut.createObserver("id", so).onNext(Fact.builder().ns("ns").build("{}"));
+              return mock(ServerCall.Listener.class);
+            });
+
+    ArgumentCaptor<MSG_Notification> n = ArgumentCaptor.forClass(MSG_Notification.class);
+    verify(so).onNext(n.capture());
+    assertTrue(n.getValue().getFact().hasNativeHeader());
+  }
+
+  @Test
+  public void testCreateObserverWithoutBinaryFacts() {
+    StreamObserver<MSG_Notification> so = mock(StreamObserver.class);
+    uut.createObserver("id", so).onNext(Fact.builder().ns("ns").build("{}"));
+
+    ArgumentCaptor<MSG_Notification> n = ArgumentCaptor.forClass(MSG_Notification.class);
+    verify(so).onNext(n.capture());
+    assertFalse(n.getValue().getFact().hasNativeHeader());
+  }
+
+  private FactObserver createObserverForClientAcceptingBatches() {
+    Metadata headers = new Metadata();
+    headers.put(Headers.NOTIFICATION_BATCHES, "true");
+    AtomicReference<FactObserver> observer = new AtomicReference<>();
+    new GrpcNotificationBatchInterceptor()
+        .interceptCall(
+            mock(ServerCall.class),
+            headers,
+            (call, h) -> {
+              observer.set(uut.createObserver("id", mock(StreamObserver.class)));
+              return mock(ServerCall.Listener.class);
+            });
+    return observer.get();
+  }
+
   @Test
   public void testRetrieveImplementationVersion() {
     uut = spy(uut);
@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.server.grpc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.base.Strings;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class FlowControlledStreamObserverTest {
+
+  @Mock private ServerCallStreamObserver<Object> delegate;
+
+  private FlowControlledStreamObserver<Object> uut;
+
+  private final AtomicBoolean ready = new AtomicBoolean(true);
+
+  private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+  private Runnable onReadyHandler;
+
+  private Runnable onCancelHandler;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(delegate.isReady()).thenAnswer(i -> ready.get());
+    lenient().when(delegate.isCancelled()).thenAnswer(i -> cancelled.get());
+    uut = new FlowControlledStreamObserver<>("foo", delegate);
+
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    verify(delegate).setOnReadyHandler(onReady.capture());
+    onReadyHandler = onReady.getValue();
+    ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+    verify(delegate).setOnCancelHandler(onCancel.capture());
+    onCancelHandler = onCancel.getValue();
+  }
+
+  @Test
+  void testNullContract() {
+    assertThrows(
+        NullPointerException.class,
+        () -> new FlowControlledStreamObserver<>(null, mock(ServerCallStreamObserver.class)));
+    assertThrows(
+        NullPointerException.class, () -> new FlowControlledStreamObserver<>("oink", null));
+    assertThrows(NullPointerException.class, () -> uut.onNext(null));
+    assertThrows(NullPointerException.class, () -> uut.onReady(null));
+  }
+
+  @Test
+  void testOnNextWhenReady() {
+    uut.onNext("a");
+    verify(delegate).onNext("a");
+    assertTrue(uut.isReady());
+  }
+
+  @Test
+  void testOnNextQueuesWhileNotReady() {
+    ready.set(false);
+    uut.onNext("a");
+    uut.onNext("b");
+    verify(delegate, never()).onNext(any());
+
+    ready.set(true);
+    onReadyHandler.run();
+
+    InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate).onNext("a");
+    inOrder.verify(delegate).onNext("b");
+  }
+
+  @Test
+  void testNotReadyAtHighWatermark() {
+    ready.set(false);
+    for (int i = 0; i < FlowControlledStreamObserver.HIGH_WATERMARK - 1; i++) {
+      uut.onNext(i);
+    }
+    assertTrue(uut.isReady());
+    uut.onNext("one more");
+    assertFalse(uut.isReady());
+
+    ready.set(true);
+    onReadyHandler.run();
+    assertTrue(uut.isReady());
+  }
+
+  @Test
+  void testOnReadyCallbackRunsImmediatelyWhenReady() {
+    Runnable callback = mock(Runnable.class);
+    uut.onReady(callback);
+    verify(callback).run();
+  }
+
+  @Test
+  void testOnReadyCallbackRunsAfterDrain() {
+    ready.set(false);
+    for (int i = 0; i < FlowControlledStreamObserver.HIGH_WATERMARK; i++) {
+      uut.onNext(i);
+    }
+    Runnable callback = mock(Runnable.class);
+    uut.onReady(callback);
+    verify(callback, never()).run();
+
+    ready.set(true);
+    onReadyHandler.run();
+    verify(callback).run();
+
+    // only once
+    onReadyHandler.run();
+    verify(callback).run();
+  }
+
+  @Test
+  void testOnCompletedIsDeliveredAfterQueuedMessages() {
+    ready.set(false);
+    uut.onNext("a");
+    uut.onCompleted();
+    verify(delegate, never()).onCompleted();
+
+    ready.set(true);
+    onReadyHandler.run();
+
+    InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate).onNext("a");
+    inOrder.verify(delegate).onCompleted();
+  }
+
+  @Test
+  void testOnErrorIsSentAfterQueuedMessages() {
+    ready.set(false);
+    uut.onNext("a");
+    Exception e = new Exception();
+    uut.onError(e);
+    // neither messages nor completion after an error must reach the delegate
+    uut.onNext("b");
+    uut.onCompleted();
+    verify(delegate, never()).onError(any());
+
+    ready.set(true);
+    onReadyHandler.run();
+
+    InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate).onNext("a");
+    inOrder.verify(delegate).onError(e);
+    verify(delegate, never()).onNext("b");
+    verify(delegate, never()).onCompleted();
+  }
+
+  @Test
+  void testOnErrorWithoutQueuedMessages() {
+    Exception e = new Exception();
+    uut.onError(e);
+
+    verify(delegate).onError(e);
+  }
+
+  @Test
+  void testCancelDropsQueuedMessagesAndRunsHandler() {
+    Runnable handler = mock(Runnable.class);
+    uut.setOnCancelHandler(handler);
+    ready.set(false);
+    uut.onNext("a");
+
+    cancelled.set(true);
+    onCancelHandler.run();
+    ready.set(true);
+    onReadyHandler.run();
+
+    verify(handler).run();
+    verify(delegate, never()).onNext(any());
+    assertFalse(uut.isReady());
+
+    // silently ignored, as before
+    uut.onNext("b");
+    verify(delegate, never()).onNext(any());
+  }
+
+  @Test
+  void testFailureIsReportedToProducer() {
+    doThrow(new IllegalStateException("broken")).when(delegate).onNext("a");
+    uut.onNext("a");
+
+    assertFalse(uut.isReady());
+    Runnable callback = mock(Runnable.class);
+    uut.onReady(callback);
+    // the producer needs to resume in order to see the failure
+    verify(callback).run();
+    assertThrows(TransportLayerException.class, () -> uut.onNext("b"));
+  }
+
+  @Test
+  void testNotReadyAtHighWatermarkBytes() {
+    ready.set(false);
+    MSG_Fact big =
+        MSG_Fact.newBuilder()
+            .setPayload(
+                Strings.repeat("x", (int) FlowControlledStreamObserver.HIGH_WATERMARK_BYTES))
+            .build();
+    uut.onNext(big);
+    assertFalse(uut.isReady());
+
+    ready.set(true);
+    onReadyHandler.run();
+    assertTrue(uut.isReady());
+  }
+
+  @Test
+  void testProducerBlocksAtHardLimitBytes() throws Exception {
+    ready.set(false);
+    MSG_Fact big =
+        MSG_Fact.newBuilder()
+            .setPayload(Strings.repeat("x", (int) FlowControlledStreamObserver.HARD_LIMIT_BYTES))
+            .build();
+    uut.onNext(big);
+    CompletableFuture<Void> onNextCall = CompletableFuture.runAsync(() -> uut.onNext("blocked"));
+    Thread.sleep(100);
+    assertFalse(onNextCall.isDone());
+
+    ready.set(true);
+    onReadyHandler.run();
+    onNextCall.get();
+    verify(delegate).onNext("blocked");
+  }
+
+  @Test
+  void testOnNextWithoutWaitingDoesNotBlockAtHardLimit() {
+    ready.set(false);
+    for (int i = 0; i < FlowControlledStreamObserver.HARD_LIMIT; i++) {
+      uut.onNext(i);
+    }
+
+    uut.onNextWithoutWaiting("not blocked");
+
+    ready.set(true);
+    onReadyHandler.run();
+    verify(delegate).onNext("not blocked");
+  }
+
+  @Test
+  void testProducerBlocksAtHardLimit() throws Exception {
+    ready.set(false);
+    for (int i = 0; i < FlowControlledStreamObserver.HARD_LIMIT; i++) {
+      uut.onNext(i);
+    }
+    CompletableFuture<Void> onNextCall = CompletableFuture.runAsync(() -> uut.onNext("blocked"));
+    Thread.sleep(100);
+    assertFalse(onNextCall.isDone());
+
+    ready.set(true);
+    onReadyHandler.run();
+    onNextCall.get();
+    verify(delegate).onNext("blocked");
+  }
+
+  @Test
+  void testProducerBlockedAtHardLimitStopsWhenCancelled() throws Exception {
+    ready.set(false);
+    for (int i = 0; i < FlowControlledStreamObserver.HARD_LIMIT; i++) {
+      uut.onNext(i);
+    }
+    CompletableFuture<Void> onNextCall = CompletableFuture.runAsync(() -> uut.onNext("blocked"));
+    Thread.sleep(100);
+    assertFalse(onNextCall.isDone());
+
+    cancelled.set(true);
+    onCancelHandler.run();
+    onNextCall.get();
+    verify(delegate, never()).onNext(any());
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.server.grpc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.factcast.grpc.api.Headers;
+import org.junit.jupiter.api.*;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+class GrpcNotificationBatchInterceptorTest {
+
+  final GrpcNotificationBatchInterceptor uut = new GrpcNotificationBatchInterceptor();
+
+  @Test
+  void interceptCallWithoutHeader() {
+    ServerCall call = mock(ServerCall.class);
+    Metadata metadata = new Metadata();
+    AtomicBoolean accepted = new AtomicBoolean(true);
+
+    uut.interceptCall(call, metadata, recordingHandler(accepted));
+
+    assertFalse(accepted.get());
+    verifyNoMoreInteractions(call);
+  }
+
+  @Test
+  void interceptCallWithHeader() {
+    ServerCall call = mock(ServerCall.class);
+    Metadata metadata = new Metadata();
+    metadata.put(Headers.NOTIFICATION_BATCHES, "true");
+    AtomicBoolean accepted = new AtomicBoolean(false);
+
+    uut.interceptCall(call, metadata, recordingHandler(accepted));
+
+    assertTrue(accepted.get());
+    // must not leak outside of the call
+    assertFalse(GrpcNotificationBatchInterceptor.notificationBatchesAccepted());
+  }
+
+  @Test
+  void interceptCallWithUnexpectedHeaderValue() {
+    Metadata metadata = new Metadata();
+    metadata.put(Headers.NOTIFICATION_BATCHES, "maybe");
+    AtomicBoolean accepted = new AtomicBoolean(true);
+
+    uut.interceptCall(mock(ServerCall.class), metadata, recordingHandler(accepted));
+
+    assertFalse(accepted.get());
+  }
+
+  private static ServerCallHandler recordingHandler(AtomicBoolean accepted) {
+    return (call, headers) -> {
+      accepted.set(GrpcNotificationBatchInterceptor.notificationBatchesAccepted());
+      return mock(ServerCall.Listener.class);
+    };
+  }
+}
@@ -102,6 +102,28 @@ void testOnNext() {
     assertEquals(f.id(), conv.fromProto(msg.getValue().getFact()).id());
   }
 
+  @Test
+  void testReadyWithoutFlowControl() {
+    GrpcObserverAdapter uut = new GrpcObserverAdapter("foo", observer, projection);
+    assertTrue(uut.isReady());
+    Runnable callback = mock(Runnable.class);
+    uut.onReady(callback);
+    verify(callback).run();
+  }
+
+  @Test
+  void testFlowControlIsDelegated() {
+    FlowControlledStreamObserver<MSG_Notification> flowControlled =
+        mock(FlowControlledStreamObserver.class);
+    GrpcObserverAdapter uut = new GrpcObserverAdapter("foo", flowControlled, projection);
+    when(flowControlled.isReady()).thenReturn(false);
+    assertFalse(uut.isReady());
+    Runnable callback = mock(Runnable.class);
+    uut.onReady(callback);
+    verify(flowControlled).onReady(callback);
+    verify(callback, never()).run();
+  }
+
   public static void expectNPE(Runnable r) {
     expect(r, NullPointerException.class, IllegalArgumentException.class);
   }
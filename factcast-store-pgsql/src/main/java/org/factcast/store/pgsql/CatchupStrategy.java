@@ -21,7 +21,17 @@
  * @author <uwe.schaefer@prisma-capacity.eu>
  */
 public enum CatchupStrategy {
-  PAGED;
+  /** copies matching serials to the catchup table, then pages through them */
+  PAGED,
+  /** streams matching facts from the fact table using a server-side cursor */
+  FETCHING,
+  /** queries pages of matching facts from the fact table, continuing from the last SER seen */
+  KEYSET,
+  /**
+   * fetches pages of matching facts into a bounded queue on a separate thread, while delivering
+   * from that queue
+   */
+  QUEUED;
 
   @SuppressWarnings("SameReturnValue")
   public static CatchupStrategy getDefault() {
@@ -24,6 +24,7 @@
 import lombok.Data;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
+import org.factcast.store.pgsql.registry.validation.FgeFactValidationEngine;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -47,7 +48,11 @@
 
   @Autowired private ApplicationContext appContext;
 
-  /** defines the number of Facts being retrieved with one Page Query for PageStrategy.PAGED */
+  /**
+   * defines the number of Facts being retrieved with one Page Query for PageStrategy.PAGED, or with
+   * one fetch from the cursor for PageStrategy.FETCHING. For PageStrategy.KEYSET, this is the
+   * initial page size, that adapts to the observed latency and size of pages.
+   */
   int pageSize = 1000;
 
   /** The capacity of the queue for PageStrategy.QUEUED */
@@ -56,9 +61,64 @@
   /** Defines the Strategy used for Paging in the Catchup Phase. */
   CatchupStrategy catchupStrategy = CatchupStrategy.getDefault();
 
-  /** Fetch Size used when filling the Queue, defaults to 4 (25% of the queue-size) */
+  /**
+   * Ratio of the queue-size that is fetched with one page query when filling the Queue for
+   * PageStrategy.QUEUED, defaults to 4 (25% of the queue-size)
+   */
   int queueFetchRatio = 4;
 
+  /**
+   * Number of recently published facts kept in memory to serve following subscriptions from,
+   * instead of querying the database. 0 disables the buffer.
+   */
+  int tailBufferSize = 1000;
+
+  /**
+   * Max number of threads used to resume subscriptions, that were paused because their consumer was
+   * not ready for more facts.
+   */
+  int resumeParallelism = Runtime.getRuntime().availableProcessors();
+
+  /** Defines the Strategy used for serializing publishes. */
+  PublishLockStrategy publishLockStrategy = PublishLockStrategy.getDefault();
+
+  /** Number of lock stripes used by PublishLockStrategy.STRIPED */
+  int publishLockStripes = 4096;
+
+  /**
+   * Max number of stripes one publish locks with PublishLockStrategy.STRIPED. Publishes needing
+   * more, lock out all other publishes instead.
+   */
+  int publishLockMaxStripesPerPublish = 32;
+
+  /**
+   * If greater than 0, concurrent publishes (outside of publishIfUnchanged) are collected for up to
+   * this number of microseconds and written within one transaction. 0 disables group commit.
+   */
+  int publishGroupCommitDelayInMicros = 0;
+
+  /** Number of facts in a group commit, after which no more publishes are waited for. */
+  int publishGroupCommitMaxFacts = 1000;
+
+  /**
+   * When the fact table is migrated to a partitioned one (see db.changelog-partitioned.yaml), this
+   * is the number of facts copied to the partitioned table within one transaction.
+   */
+  int partitionCopyChunkSize = 10_000;
+
+  /**
+   * When the fact table is migrated to a partitioned one, this is the max number of chunks copied
+   * per scheduled run.
+   */
+  int partitionCopyChunksPerRun = 100;
+
+  /**
+   * Number of partitions of the fact table kept ready ahead of the current one. If more facts than
+   * fit into these are published between two maintenance runs, they go to the default partition and
+   * are moved out of it on the next run.
+   */
+  int partitionsAhead = 3;
+
   /**
    * Optional URL to a Schema Registry. If this is null, validation will be disabled and a warning
    * will be issued. (Defaults to null) Currently a String type due to the fact that "classpath:" is
@@ -97,6 +157,22 @@
    */
   int inMemTransformationCacheCapacity = 1_000_000;
 
+  /**
+   * when using the inmem impl of the transformation cache, this is the approximate max number of
+   * bytes held by the cache. Whatever limit is hit first, leads to eviction.
+   */
+  long inMemTransformationCacheMaxBytes = 256L * 1024 * 1024;
+
+  /**
+   * If persistentTransformationCache is enabled, this is the max number of transformed facts
+   * additionally kept in memory, in front of postgres. Access times are then written in batches
+   * rather than on every hit. 0 disables the in-memory tier. (Defaults to 0)
+   */
+  int transformationCacheL1Capacity = 0;
+
+  /** Max number of threads used to transform the facts of one catchup page in parallel. */
+  int transformationParallelism = Runtime.getRuntime().availableProcessors();
+
   /**
    * If validation is enabled, this controls if publishing facts, that are not validatable (due to
    * missing meta-data or due to missing schema in the registry) are allowed to be published or
@@ -104,6 +180,15 @@
    */
   boolean allowUnvalidatedPublish = false;
 
+  /**
+   * Name of the FactValidationEngine bean used to validate facts against their schema. Defaults to
+   * the fge json-schema-validator ("fgeFactValidationEngine").
+   */
+  String factValidationEngine = FgeFactValidationEngine.NAME;
+
+  /** Max number of threads used to validate the facts of one publish in parallel. */
+  int factValidationParallelism = Runtime.getRuntime().availableProcessors();
+
   /**
    * If a schema can be replaced by an updated version from the registry (not a good idea in
    * production environments)
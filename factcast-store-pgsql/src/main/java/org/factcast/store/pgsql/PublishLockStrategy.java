@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql;
+
+/** Defines how publishing is serialized, as well as the default, if none is specified. */
+public enum PublishLockStrategy {
+  /** one lock for all publishes, held while checking the state of conditional publishes */
+  GLOBAL,
+  /**
+   * conditional publishes only lock out publishes of facts that might match their conditions, using
+   * locks striped by namespace and aggregate id
+   */
+  STRIPED;
+
+  @SuppressWarnings("SameReturnValue")
+  public static PublishLockStrategy getDefault() {
+    return GLOBAL;
+  }
+}
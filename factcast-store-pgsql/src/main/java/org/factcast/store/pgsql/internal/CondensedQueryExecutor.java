@@ -19,13 +19,17 @@
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgListener.InsertedFactType;
 
 /**
  * Executes a given runnable if triggered, but ignores all subsequent triggers for maxDelayInMillis.
  *
+ * <p>Insertion events carrying only fact types that do not match the given filter are ignored.
+ *
  * @author uwe.schaefer@prisma-capacity.eu
  */
 @SuppressWarnings("UnstableApiUsage")
@@ -38,6 +42,8 @@ class CondensedQueryExecutor {
 
   private final Supplier<Boolean> connectionStateSupplier;
 
+  private final Predicate<InsertedFactType> insertionFilter;
+
   private Timer timer = new Timer(CondensedQueryExecutor.class.getSimpleName() + ".timer", true);
 
   private final AtomicBoolean currentlyScheduled = new AtomicBoolean(false);
@@ -47,9 +53,16 @@ class CondensedQueryExecutor {
       PgSynchronizedQuery target,
       Supplier<Boolean> connectionStateSupplier,
       Timer timer) {
-    this.maxDelayInMillis = maxDelayInMillis;
-    this.target = target;
-    this.connectionStateSupplier = connectionStateSupplier;
+    this(maxDelayInMillis, target, connectionStateSupplier, f -> true, timer);
+  }
+
+  CondensedQueryExecutor(
+      long maxDelayInMillis,
+      PgSynchronizedQuery target,
+      Supplier<Boolean> connectionStateSupplier,
+      Predicate<InsertedFactType> insertionFilter,
+      Timer timer) {
+    this(maxDelayInMillis, target, connectionStateSupplier, insertionFilter);
     this.timer = timer;
   }
 
@@ -57,9 +70,18 @@ public CondensedQueryExecutor(
       long maxDelayInMillis,
       PgSynchronizedQuery target,
       Supplier<Boolean> connectionStateSupplier) {
+    this(maxDelayInMillis, target, connectionStateSupplier, f -> true);
+  }
+
+  public CondensedQueryExecutor(
+      long maxDelayInMillis,
+      PgSynchronizedQuery target,
+      Supplier<Boolean> connectionStateSupplier,
+      Predicate<InsertedFactType> insertionFilter) {
     this.maxDelayInMillis = maxDelayInMillis;
     this.target = target;
     this.connectionStateSupplier = connectionStateSupplier;
+    this.insertionFilter = insertionFilter;
   }
 
   public void trigger() {
@@ -88,7 +110,9 @@ public void run() {
   // called by the EventBus
   @Subscribe
   public void onEvent(FactInsertionEvent ev) {
-    trigger();
+    if (ev.mightMatch(insertionFilter)) {
+      trigger();
+    }
   }
 
   @SuppressWarnings("WeakerAccess")
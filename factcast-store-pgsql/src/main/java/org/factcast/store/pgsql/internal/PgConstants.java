@@ -51,6 +51,10 @@ public class PgConstants {
 
   public static final String COLUMN_CID = "cid";
 
+  public static final String COLUMN_ID = "id";
+
+  public static final String COLUMN_AGGIDS = "aggids";
+
   private static final String COLUMN_STATE = "state";
 
   private static final String COLUMN_NAMESPACE = "ns";
@@ -67,26 +71,55 @@ public class PgConstants {
 
   private static final String ALIAS_VERSION = "version";
 
+  public static final String ALIAS_TIMESTAMP = "_ts";
+
   public static final String PROJECTION_FACT =
       String.join(
           ", ",
           COLUMN_SER,
           COLUMN_HEADER,
           COLUMN_PAYLOAD,
-          fromHeader(ALIAS_ID),
+          COLUMN_ID,
           fromHeader(ALIAS_AGGID),
           fromHeader(ALIAS_NS),
           fromHeader(ALIAS_TYPE),
-          fromHeader(ALIAS_VERSION));
+          fromHeader(ALIAS_VERSION),
+          COLUMN_HEADER + "->'meta'->>'_ts' AS " + ALIAS_TIMESTAMP);
 
+  private static final String SEQUENCE_FACT_SER = "fact_ser_seq";
+
+  /*
+   * the serial is taken from the sequence up front, so that _ser and _ts can be added to the
+   * header within the very same statement, instead of updating every row after insertion.
+   */
   public static final String INSERT_FACT =
       "INSERT INTO "
           + TABLE_FACT
           + "("
+          + COLUMN_SER
+          + ","
           + COLUMN_HEADER
           + ","
           + COLUMN_PAYLOAD
-          + ") VALUES (cast(? as jsonb),cast (? as jsonb))";
+          + ") SELECT f."
+          + COLUMN_SER
+          + ", jsonb_set( f."
+          + COLUMN_HEADER
+          + " , '{meta}' , COALESCE(f."
+          + COLUMN_HEADER
+          + "->'meta','{}') || jsonb_build_object('_ser', f."
+          + COLUMN_SER
+          + ", '_ts', (EXTRACT(EPOCH FROM now()::timestamptz(3))*1000)::bigint) , true), f."
+          + COLUMN_PAYLOAD
+          + " FROM (SELECT nextval('"
+          + SEQUENCE_FACT_SER
+          + "') AS "
+          + COLUMN_SER
+          + ", cast(? as jsonb) AS "
+          + COLUMN_HEADER
+          + ", cast (? as jsonb) AS "
+          + COLUMN_PAYLOAD
+          + ") f";
 
   public static final String INSERT_TOKEN =
       "INSERT INTO "
@@ -98,13 +131,27 @@ public class PgConstants {
   public static final String DELETE_TOKEN = "DELETE FROM " + TABLE_TOKENSTORE + " WHERE token=?";
 
   public static final String SELECT_BY_ID =
+      "SELECT " + PROJECTION_FACT + " FROM " + TABLE_FACT + " WHERE " + COLUMN_ID + "=?";
+
+  public static final String SELECT_FACTS_FROM_SER =
       "SELECT "
           + PROJECTION_FACT
           + " FROM "
           + TABLE_FACT
           + " WHERE "
-          + COLUMN_HEADER
-          + " @> cast (? as jsonb)";
+          + COLUMN_SER
+          + ">=? ORDER BY "
+          + COLUMN_SER
+          + " ASC LIMIT ?";
+
+  public static final String SELECT_LATEST_FACT =
+      "SELECT "
+          + PROJECTION_FACT
+          + " FROM "
+          + TABLE_FACT
+          + " ORDER BY "
+          + COLUMN_SER
+          + " DESC LIMIT 1";
 
   public static final String SELECT_LATEST_SER =
       "SELECT max(" + COLUMN_SER + ") FROM " + TABLE_FACT;
@@ -142,21 +189,18 @@ public class PgConstants {
   public static final //
   String SELECT_LATEST_FACTID_FOR_AGGID = //
       "SELECT "
-          + COLUMN_HEADER
-          + "->>'id' FROM "
+          + COLUMN_ID
+          + " FROM "
           + //
           TABLE_FACT
           + " WHERE "
-          + COLUMN_HEADER
+          + COLUMN_AGGIDS
           + //
-          " @> cast (? as jsonb) ORDER BY ser DESC LIMIT 1";
+          " @> ARRAY[?::uuid] ORDER BY ser DESC LIMIT 1";
 
   public static final String DELETE_CATCH_BY_CID = //
       "DELETE FROM " + TABLE_CATCHUP + " WHERE cid=?";
 
-  public static final String SELECT_BY_HEADER_JSON =
-      "SELECT " + COLUMN_SER + " FROM " + TABLE_FACT + " WHERE " + COLUMN_HEADER + " @> ?::jsonb";
-
   public static final String LISTEN_SQL = "LISTEN " + CHANNEL_NAME;
 
   public static final String ROUNDTRIP_CHANNEL_NAME =
@@ -167,19 +211,6 @@ public class PgConstants {
 
   public static final String LISTEN_ROUNDTRIP_CHANNEL_SQL = "LISTEN " + ROUNDTRIP_CHANNEL_NAME;
 
-  public static final String UPDATE_FACT_SERIALS =
-      "update "
-          + TABLE_FACT
-          + " set "
-          + COLUMN_HEADER
-          + "= jsonb_set( "
-          + COLUMN_HEADER
-          + " , '{meta}' , COALESCE("
-          + COLUMN_HEADER
-          + "->'meta','{}') || concat('{\"_ser\":', "
-          + COLUMN_SER
-          + " ,', \"_ts\":', EXTRACT(EPOCH FROM now()::timestamptz(3))*1000, '}' )::jsonb , true) WHERE header @> ?::jsonb";
-
   public static final String SELECT_DISTINCT_NAMESPACE =
       "SELECT DISTINCT("
           + COLUMN_HEADER
@@ -214,13 +245,7 @@ public class PgConstants {
           + "') IS NOT NULL";
 
   public static final String SELECT_SER_BY_ID =
-      "SELECT "
-          + COLUMN_SER
-          + " FROM "
-          + TABLE_FACT
-          + " WHERE "
-          + COLUMN_HEADER
-          + " @> cast (? as jsonb)";
+      "SELECT " + COLUMN_SER + " FROM " + TABLE_FACT + " WHERE " + COLUMN_ID + "=?";
 
   public static final String SELECT_STATE_FROM_TOKEN =
       "SELECT " + COLUMN_STATE + " FROM " + TABLE_TOKENSTORE + " WHERE " + COLUMN_TOKEN + "=?";
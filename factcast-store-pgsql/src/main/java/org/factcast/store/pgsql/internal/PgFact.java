@@ -30,7 +30,7 @@
  * PG Specific implementation of a Fact.
  *
  * <p>This class is necessary in order to delay parsing of the header until necessary (when
- * accessing meta-data)
+ * accessing meta-data other than serial and timestamp, which are selected as columns)
  *
  * @author uwe.schaefer@prisma-capacity.eu
  */
@@ -52,16 +52,43 @@ public class PgFact implements Fact {
 
   @Getter @NonNull final String jsonPayload;
 
+  // 0 if unknown
+  final long serial;
+
+  final Long timestamp;
+
   @JsonProperty Map<String, String> meta = null;
 
   @Override
   public String meta(String key) {
+    if ("_ser".equals(key) && serial != 0) {
+      return String.valueOf(serial);
+    }
+    if ("_ts".equals(key) && timestamp != null) {
+      return String.valueOf(timestamp);
+    }
     if (meta == null) {
       meta = deserializeMeta();
     }
     return meta.get(key);
   }
 
+  @Override
+  public long serial() {
+    if (serial != 0) {
+      return serial;
+    }
+    return Fact.super.serial();
+  }
+
+  @Override
+  public Long timestamp() {
+    if (timestamp != null) {
+      return timestamp;
+    }
+    return Fact.super.timestamp();
+  }
+
   private transient FactHeader header;
 
   @Override
@@ -91,8 +118,18 @@ public static Fact from(ResultSet resultSet) throws SQLException {
     String jsonHeader = resultSet.getString(PgConstants.COLUMN_HEADER);
     String jsonPayload = resultSet.getString(PgConstants.COLUMN_PAYLOAD);
     int version = resultSet.getInt(PgConstants.COLUMN_VERSION);
+    long serial = resultSet.getLong(PgConstants.COLUMN_SER);
+    String timestamp = resultSet.getString(PgConstants.ALIAS_TIMESTAMP);
     return new PgFact(
-        UUID.fromString(id), ns, type, version, toUUIDArray(aggId), jsonHeader, jsonPayload);
+        UUID.fromString(id),
+        ns,
+        type,
+        version,
+        toUUIDArray(aggId),
+        jsonHeader,
+        jsonPayload,
+        serial,
+        timestamp == null ? null : Long.valueOf(timestamp));
   }
 
   @VisibleForTesting
@@ -36,10 +36,12 @@
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.TransformationException;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
 import org.factcast.store.pgsql.internal.lock.FactTableWriteLock;
 import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
 import org.factcast.store.pgsql.internal.snapcache.PgSnapshotCache;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DuplicateKeyException;
@@ -47,8 +49,11 @@
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * A PostgreSQL based FactStore implementation
@@ -56,7 +61,7 @@
  * @author uwe.schaefer@prisma-capacity.eu
  */
 @Slf4j
-public class PgFactStore extends AbstractFactStore {
+public class PgFactStore extends AbstractFactStore implements DisposableBean {
 
   // is that interesting to configure?
   private static final int BATCH_SIZE = 500;
@@ -73,6 +78,11 @@ public class PgFactStore extends AbstractFactStore {
 
   @NonNull private final PgSnapshotCache snapCache;
 
+  @NonNull private final TransactionTemplate tx;
+
+  // null unless group commit is enabled
+  private final PgPublishCoalescer coalescer;
+
   @Autowired
   public PgFactStore(
       @NonNull JdbcTemplate jdbcTemplate,
@@ -81,7 +91,9 @@ public PgFactStore(
       @NonNull FactTableWriteLock lock,
       @NonNull FactTransformerService factTransformerService,
       @NonNull PgSnapshotCache snapCache,
-      @NonNull PgMetrics metrics) {
+      @NonNull PgMetrics metrics,
+      @NonNull PlatformTransactionManager txManager,
+      @NonNull PgConfigurationProperties props) {
     super(tokenStore);
 
     this.jdbcTemplate = jdbcTemplate;
@@ -90,6 +102,16 @@ public PgFactStore(
     this.snapCache = snapCache;
     this.metrics = metrics;
     this.factTransformerService = factTransformerService;
+    this.tx = new TransactionTemplate(txManager);
+    if (props.getPublishGroupCommitDelayInMicros() > 0) {
+      this.coalescer =
+          new PgPublishCoalescer(
+              facts -> tx.executeWithoutResult(status -> insert(facts)),
+              props.getPublishGroupCommitDelayInMicros(),
+              props.getPublishGroupCommitMaxFacts());
+    } else {
+      this.coalescer = null;
+    }
   }
 
   @Override
@@ -98,10 +120,7 @@ public PgFactStore(
         OP.FETCH_BY_ID,
         () ->
             jdbcTemplate
-                .query(
-                    PgConstants.SELECT_BY_ID,
-                    new Object[] {"{\"id\":\"" + id + "\"}"},
-                    this::extractFactFromResultSet)
+                .query(PgConstants.SELECT_BY_ID, new Object[] {id}, this::extractFactFromResultSet)
                 .stream()
                 .findFirst());
   }
@@ -120,44 +139,52 @@ public PgFactStore(
   }
 
   @Override
-  @Transactional(propagation = Propagation.REQUIRED)
   public void publish(@NonNull List<? extends Fact> factsToPublish) {
     metrics.time(
         OP.PUBLISH,
         () -> {
-          try {
-            lock.aquireExclusiveTXLock();
-
-            List<Fact> copiedListOfFacts = Lists.newArrayList(factsToPublish);
-            final int numberOfFactsToPublish = factsToPublish.size();
-            log.trace(
-                "Inserting {} fact(s){}",
-                numberOfFactsToPublish,
-                numberOfFactsToPublish > BATCH_SIZE ? " in batches of " + BATCH_SIZE : "");
-            jdbcTemplate.batchUpdate(
-                PgConstants.INSERT_FACT,
-                copiedListOfFacts,
-                BATCH_SIZE,
-                (statement, fact) -> {
-                  statement.setString(1, fact.jsonHeader());
-                  statement.setString(2, fact.jsonPayload());
-                });
-            // add serials to headers
-            jdbcTemplate.batchUpdate(
-                PgConstants.UPDATE_FACT_SERIALS,
-                copiedListOfFacts,
-                BATCH_SIZE,
-                (statement, fact) -> {
-                  final String idMatch = "{\"id\":\"" + fact.id() + "\"}";
-                  statement.setString(1, idMatch);
-                });
-
-          } catch (DuplicateKeyException dupkey) {
-            throw new IllegalArgumentException(dupkey.getMessage());
+          // publishes within a transaction (like from publishIfUnchanged) cannot be grouped
+          if (coalescer != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            coalescer.publish(factsToPublish);
+          } else {
+            tx.executeWithoutResult(status -> insert(factsToPublish));
           }
         });
   }
 
+  private void insert(@NonNull List<? extends Fact> factsToPublish) {
+    try {
+      lock.aquireTXLockFor(Collections.emptyList(), factsToPublish);
+      // taken with every strategy, so that the checks done while inserting (like the uniqueness
+      // of ids) never run concurrently
+      lock.aquireExclusiveTXLock();
+
+      List<Fact> copiedListOfFacts = Lists.newArrayList(factsToPublish);
+      final int numberOfFactsToPublish = factsToPublish.size();
+      log.trace(
+          "Inserting {} fact(s){}",
+          numberOfFactsToPublish,
+          numberOfFactsToPublish > BATCH_SIZE ? " in batches of " + BATCH_SIZE : "");
+      jdbcTemplate.batchUpdate(
+          PgConstants.INSERT_FACT,
+          copiedListOfFacts,
+          BATCH_SIZE,
+          (statement, fact) -> {
+            statement.setString(1, fact.jsonHeader());
+            statement.setString(2, fact.jsonPayload());
+          });
+    } catch (DuplicateKeyException dupkey) {
+      throw new IllegalArgumentException(dupkey.getMessage());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (coalescer != null) {
+      coalescer.close();
+    }
+  }
+
   private Fact extractFactFromResultSet(ResultSet resultSet, @SuppressWarnings("unused") int rowNum)
       throws SQLException {
     return PgFact.from(resultSet);
@@ -184,9 +211,7 @@ private String extractStringFromResultSet(
           try {
             Long res =
                 jdbcTemplate.queryForObject(
-                    PgConstants.SELECT_SER_BY_ID,
-                    new Object[] {"{\"id\":\"" + l + "\"}"},
-                    Long.class);
+                    PgConstants.SELECT_SER_BY_ID, new Object[] {l}, Long.class);
 
             if (res != null && res > 0) {
               return OptionalLong.of(res);
@@ -228,7 +253,12 @@ public boolean publishIfUnchanged(
     return metrics.time(
         OP.PUBLISH_IF_UNCHANGED,
         () -> {
-          lock.aquireExclusiveTXLock();
+          List<FactSpec> conditions =
+              optionalToken
+                  .flatMap(tokenStore::get)
+                  .map(State::specs)
+                  .orElse(Collections.emptyList());
+          lock.aquireTXLockFor(conditions, factsToPublish);
           return super.publishIfUnchanged(factsToPublish, optionalToken);
         });
   }
@@ -31,16 +31,22 @@
 import org.factcast.core.subscription.FactTransformersFactory;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.catchup.fetching.PgFetchingCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.keyset.PgKeysetCatchUpFactory;
 import org.factcast.store.pgsql.internal.catchup.paged.PgPagedCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.queued.PgQueuedCatchUpFactory;
 import org.factcast.store.pgsql.internal.listen.PgConnectionSupplier;
 import org.factcast.store.pgsql.internal.listen.PgConnectionTester;
 import org.factcast.store.pgsql.internal.listen.PgListener;
 import org.factcast.store.pgsql.internal.lock.AdvisoryWriteLock;
 import org.factcast.store.pgsql.internal.lock.FactTableWriteLock;
+import org.factcast.store.pgsql.internal.lock.StripedAdvisoryWriteLock;
+import org.factcast.store.pgsql.internal.partition.PgFactTablePartitioning;
 import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
 import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.factcast.store.pgsql.internal.snapcache.PgSnapshotCache;
 import org.factcast.store.pgsql.internal.snapcache.PgSnapshotCacheConfiguration;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer;
 import org.factcast.store.pgsql.registry.SchemaRegistryConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
@@ -74,10 +80,15 @@ public EventBus eventBus() {
   @Bean
   public PgCatchupFactory pgCatchupFactory(
       PgConfigurationProperties props, JdbcTemplate jdbc, PgFactIdToSerialMapper serMapper) {
-    // noinspection SwitchStatementWithTooFewBranches
     switch (props.getCatchupStrategy()) {
       case PAGED:
         return new PgPagedCatchUpFactory(jdbc, props, serMapper);
+      case FETCHING:
+        return new PgFetchingCatchUpFactory(jdbc, props);
+      case KEYSET:
+        return new PgKeysetCatchUpFactory(jdbc, props);
+      case QUEUED:
+        return new PgQueuedCatchUpFactory(jdbc, props);
       default:
         throw new IllegalArgumentException("Unmapped Strategy: " + props.getCatchupStrategy());
     }
@@ -96,7 +107,9 @@ public FactStore factStore(
       FactTableWriteLock lock,
       FactTransformerService factTransformerService,
       PgSnapshotCache snapCache,
-      PgMetrics pgMetrics) {
+      PgMetrics pgMetrics,
+      PlatformTransactionManager txManager,
+      PgConfigurationProperties props) {
     return new PgFactStore(
         jdbcTemplate,
         subscriptionFactory,
@@ -104,24 +117,54 @@ public FactStore factStore(
         lock,
         factTransformerService,
         snapCache,
-        pgMetrics);
+        pgMetrics,
+        txManager,
+        props);
   }
 
   @Bean
   public PgSubscriptionFactory pgSubscriptionFactory(
       JdbcTemplate jdbcTemplate,
-      EventBus eventBus,
       PgFactIdToSerialMapper pgFactIdToSerialMapper,
       PgLatestSerialFetcher pgLatestSerialFetcher,
       PgCatchupFactory pgCatchupFactory,
-      FactTransformersFactory transformerFactory) {
+      FactTransformersFactory transformerFactory,
+      PgFollowerGroups pgFollowerGroups,
+      PgConfigurationProperties props) {
     return new PgSubscriptionFactory(
         jdbcTemplate,
-        eventBus,
         pgFactIdToSerialMapper,
         pgLatestSerialFetcher,
         pgCatchupFactory,
-        transformerFactory);
+        transformerFactory,
+        pgFollowerGroups,
+        props);
+  }
+
+  @Bean
+  public PgFollowerGroups pgFollowerGroups(
+      JdbcTemplate jdbcTemplate,
+      EventBus eventBus,
+      PgLatestSerialFetcher pgLatestSerialFetcher,
+      PgTailBuffer pgTailBuffer) {
+    return new PgFollowerGroups(jdbcTemplate, eventBus, pgLatestSerialFetcher, pgTailBuffer);
+  }
+
+  @Bean
+  public PgTailBuffer pgTailBuffer(JdbcTemplate jdbcTemplate, PgConfigurationProperties props) {
+    return new PgTailBuffer(
+        jdbcTemplate, props.isIntegrationTestMode() ? 0 : props.getTailBufferSize());
+  }
+
+  @Bean
+  public PgFactTablePartitioning pgFactTablePartitioning(
+      JdbcTemplate jdbcTemplate, PgConfigurationProperties props, PgMetrics pgMetrics) {
+    return new PgFactTablePartitioning(
+        jdbcTemplate,
+        pgMetrics,
+        props.getPartitionCopyChunkSize(),
+        props.getPartitionCopyChunksPerRun(),
+        props.getPartitionsAhead());
   }
 
   @Bean
@@ -159,8 +202,16 @@ public PgTokenStore pgTokenStore(JdbcTemplate jdbcTemplate) {
   }
 
   @Bean
-  public FactTableWriteLock factTableWriteLock(JdbcTemplate tpl) {
-    return new AdvisoryWriteLock(tpl);
+  public FactTableWriteLock factTableWriteLock(JdbcTemplate tpl, PgConfigurationProperties props) {
+    switch (props.getPublishLockStrategy()) {
+      case GLOBAL:
+        return new AdvisoryWriteLock(tpl);
+      case STRIPED:
+        return new StripedAdvisoryWriteLock(
+            tpl, props.getPublishLockStripes(), props.getPublishLockMaxStripesPerPublish());
+      default:
+        throw new IllegalArgumentException("Unmapped Strategy: " + props.getPublishLockStrategy());
+    }
   }
 
   @Bean
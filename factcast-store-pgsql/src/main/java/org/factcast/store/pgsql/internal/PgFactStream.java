@@ -15,42 +15,50 @@
  */
 package org.factcast.store.pgsql.internal;
 
-import com.google.common.eventbus.EventBus;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.factcast.core.Fact;
 import org.factcast.core.subscription.SubscriptionImpl;
-import org.factcast.core.subscription.SubscriptionRequest;
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
 import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
 import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
 import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
-import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
 import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.PreparedStatementSetter;
-import org.springframework.jdbc.core.RowCallbackHandler;
 
 /**
  * Creates and maintains a subscription.
  *
+ * <p>If the subscription signals, that its consumer is not ready for more facts, catchup and
+ * following are paused without blocking a thread or holding a connection, and resumed from the last
+ * serial delivered, once the consumer is ready again.
+ *
+ * <p>While following, the facts found by the follower group's query are handed off to a bounded
+ * queue and delivered on a separate thread, so that a slow consumer does not hold up the other
+ * members of its group. A consumer, that lets the queue run full, drops out of the group and
+ * catches up on its own.
+ *
  * @author <uwe.schaefer@prisma-capacity.eu>
  */
-@SuppressWarnings("UnstableApiUsage")
 @Slf4j
 @RequiredArgsConstructor
 public class PgFactStream {
 
-  final JdbcTemplate jdbcTemplate;
+  static final int FOLLOW_HAND_OFF_CAPACITY = 1000;
 
-  final EventBus eventBus;
+  final JdbcTemplate jdbcTemplate;
 
   final PgFactIdToSerialMapper idToSerMapper;
 
@@ -60,11 +68,34 @@ public class PgFactStream {
 
   final AtomicBoolean disconnected = new AtomicBoolean(false);
 
+  // set while following is paused, because the consumer is not ready
+  final AtomicBoolean paused = new AtomicBoolean(false);
+
   final PgLatestSerialFetcher fetcher;
 
   final PgCatchupFactory pgCatchupFactory;
 
-  CondensedQueryExecutor condensedExecutor;
+  final PgFollowerGroups followerGroups;
+
+  // runs resumes, as the consumer's onReady callback must not block
+  final Executor resumeExecutor;
+
+  // delivers the facts handed off by the follower group
+  final Executor followExecutor;
+
+  // facts found by the follower group query, not yet delivered
+  final BlockingQueue<Fact> followed = new ArrayBlockingQueue<>(FOLLOW_HAND_OFF_CAPACITY);
+
+  // set while a delivery of followed facts is scheduled or running
+  final AtomicBoolean delivering = new AtomicBoolean(false);
+
+  // continued on resume, rather than preparing a new catchup
+  final AtomicReference<PgCatchup> pausedCatchup = new AtomicReference<>();
+
+  Runnable leaveFollowerGroup;
+
+  // set once a paused stream delivered everything handed off and leaves its group
+  final AtomicBoolean leaving = new AtomicBoolean(false);
 
   SubscriptionRequestTO request;
 
@@ -74,14 +105,8 @@ void connect(@NonNull SubscriptionRequestTO request) {
     this.request = request;
     log.debug("{} connecting subscription {}", request, request.dump());
     postQueryMatcher = new PgPostQueryMatcher(request);
-    PgQueryBuilder q = new PgQueryBuilder(request.specs());
     initializeSerialToStartAfter();
-    String sql = q.createSQL();
-    PreparedStatementSetter setter = q.createStatementSetter(serial);
-    RowCallbackHandler rsHandler = new FactRowCallbackHandler(subscription, postQueryMatcher);
-    PgSynchronizedQuery query =
-        new PgSynchronizedQuery(jdbcTemplate, sql, setter, rsHandler, serial, fetcher);
-    catchupAndFollow(request, subscription, query);
+    catchupAndFollow(request, subscription);
   }
 
   private void initializeSerialToStartAfter() {
@@ -90,14 +115,18 @@ private void initializeSerialToStartAfter() {
     log.trace("{} setting starting point to SER={}", request, startingSerial);
   }
 
-  private void catchupAndFollow(
-      SubscriptionRequest request, SubscriptionImpl subscription, PgSynchronizedQuery query) {
+  private void catchupAndFollow(SubscriptionRequestTO request, SubscriptionImpl subscription) {
     if (request.ephemeral()) {
       // just fast forward to the latest event publish by now
       this.serial.set(fetcher.retrieveLatestSer());
-    } else {
-      catchup(postQueryMatcher);
+    } else if (!catchup()) {
+      pauseCatchup();
+      return;
     }
+    catchupDone(request, subscription);
+  }
+
+  private void catchupDone(SubscriptionRequestTO request, SubscriptionImpl subscription) {
     // propagate catchup
     if (isConnected()) {
       log.trace("{} signaling catchup", request);
@@ -106,110 +135,235 @@ private void catchupAndFollow(
     if (isConnected())
       if (request.continuous()) {
         log.debug("{} entering follow mode", request);
-        long delayInMs;
-        if (request.maxBatchDelayInMs() < 1) {
-          // ok, instant query after NOTIFY
-          delayInMs = 0;
-        } else {
-          // spread consumers, so that they query at different points
-          // in time, even if they get triggered at the same PIT, and
-          // share the same latency requirements
-          //
-          // ok, that is unlikely to be necessary, but easy to do,
-          // so...
-          delayInMs =
-              ((request.maxBatchDelayInMs() / 4L) * 3L)
-                  + (long) (Math.abs(Math.random() * (request.maxBatchDelayInMs() / 4.0)));
-          log.trace(
-              "{} setting delay to {}, maxDelay was {}",
-              request,
-              delayInMs,
-              request.maxBatchDelayInMs());
-        }
-        condensedExecutor = new CondensedQueryExecutor(delayInMs, query, this::isConnected);
-        eventBus.register(condensedExecutor);
-        // catchup phase 3 – make sure, we did not miss any fact due to
-        // slow registration
-        condensedExecutor.trigger();
+        follow(request);
       } else {
         subscription.notifyComplete();
         log.debug("Completed {}", request);
       }
   }
 
-  private void catchup(PgPostQueryMatcher postQueryMatcher) {
+  private synchronized void follow(SubscriptionRequestTO request) {
+    // close() might have been called in the meantime
+    if (isConnected()) {
+      // joining triggers catchup phase 3 – make sure, we did not miss any
+      // fact due to slow registration
+      leaveFollowerGroup = followerGroups.join(request.specs(), request.maxBatchDelayInMs(), this);
+    }
+  }
+
+  /** @return false, if the catchup was paused, because the subscription is not ready */
+  private boolean catchup() {
     if (isConnected()) {
       log.trace("{} catchup phase1 - historic facts staring with SER={}", request, serial.get());
-      pgCatchupFactory.create(request, postQueryMatcher, subscription, serial).run();
+      if (!runCatchup()) {
+        return false;
+      }
     }
     if (isConnected()) {
       log.trace("{} catchup phase2 - facts since connect (SER={})", request, serial.get());
-      pgCatchupFactory.create(request, postQueryMatcher, subscription, serial).run();
+      return runCatchup();
     }
+    return true;
   }
 
-  private boolean isConnected() {
-    return !disconnected.get();
+  private boolean runCatchup() {
+    PgCatchup catchup = pausedCatchup.getAndSet(null);
+    if (catchup == null) {
+      catchup = pgCatchupFactory.create(request, postQueryMatcher, subscription, serial);
+    }
+    catchup.run();
+    if (!catchup.paused()) {
+      return true;
+    }
+    pausedCatchup.set(catchup);
+    // close() might have been called in the meantime
+    if (!isConnected()) {
+      closePausedCatchup();
+    }
+    return false;
   }
 
-  public synchronized void close() {
-    log.trace("{} disconnecting ", request);
-    disconnected.set(true);
-    if (condensedExecutor != null) {
-      eventBus.unregister(condensedExecutor);
-      condensedExecutor.cancel();
-      condensedExecutor = null;
+  private void closePausedCatchup() {
+    PgCatchup catchup = pausedCatchup.getAndSet(null);
+    if (catchup != null) {
+      catchup.close();
     }
-    log.debug("{} disconnected ", request);
   }
 
-  @RequiredArgsConstructor
-  private class FactRowCallbackHandler implements RowCallbackHandler {
+  private void pauseCatchup() {
+    log.debug("{} pausing catchup at SER={} until the consumer is ready", request, serial.get());
+    subscription.onReady(() -> resumeAsync(this::resumeCatchup));
+  }
+
+  private void resumeAsync(Runnable resume) {
+    runAsync(resume, resumeExecutor);
+  }
+
+  private void runAsync(Runnable task, Executor executor) {
+    CompletableFuture.runAsync(task, executor)
+        .exceptionally(
+            e -> {
+              Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+              log.warn("{} failed to resume: {}", request, cause.getMessage());
+              subscription.notifyError(cause);
+              return null;
+            });
+  }
+
+  private void resumeCatchup() {
+    if (isConnected()) {
+      log.debug("{} resuming catchup at SER={}", request, serial.get());
+      // continues the paused catchup, followed by one for the facts published since
+      if (catchup()) {
+        catchupDone(request, subscription);
+      } else {
+        pauseCatchup();
+      }
+    }
+  }
 
-    final SubscriptionImpl subscription;
+  /**
+   * Stops taking facts from the follower group, so that neither the group's query nor its
+   * connection wait for this consumer. Once the facts handed off are delivered, leaves the group
+   * and catches up from the last serial delivered when the consumer is ready again.
+   */
+  private void pauseFollowing() {
+    if (paused.compareAndSet(false, true)) {
+      log.debug("{} pausing at SER={} until the consumer is ready", request, serial.get());
+      // not leaving on this thread, as it runs the group's query, while members might be
+      // joining concurrently
+      deliverFollowedAsync();
+    }
+  }
 
-    final PgPostQueryMatcher postQueryMatcher;
+  private void deliverFollowedAsync() {
+    if (delivering.compareAndSet(false, true)) {
+      runAsync(this::deliverFollowed, followExecutor);
+    }
+  }
 
-    @SuppressWarnings("NullableProblems")
-    @Override
-    public void processRow(ResultSet rs) throws SQLException {
-      if (isConnected()) {
-        if (rs.isClosed()) {
-          throw new IllegalStateException(
-              "ResultSet already closed. We should not have got here. THIS IS A BUG!");
+  private void deliverFollowed() {
+    do {
+      Fact next;
+      while (isConnected() && (next = followed.peek()) != null) {
+        if (!subscription.isReady()) {
+          // still delivering, so that facts handed off in the meantime do not start another run
+          subscription.onReady(() -> runAsync(this::deliverFollowed, followExecutor));
+          return;
+        }
+        followed.poll();
+        if (!deliver(next)) {
+          followed.clear();
+          return;
         }
-        Fact f = PgFact.from(rs);
-        final UUID factId = f.id();
-        if (postQueryMatcher.test(f)) {
-          try {
-            subscription.notifyElement(f);
-            log.trace("{} notifyElement called with id={}", request, factId);
-          } catch (MissingTransformationInformation | TransformationException e) {
-            log.warn("{} transformation error: {}", request, e.getMessage());
-            subscription.notifyError(e);
-            throw new RuntimeException(e);
-          } catch (Throwable e) {
-            // debug level, because it happens regularly on
-            // disconnecting clients.
-            // TODO add sid
-            log.debug("{} exception from subscription: {}", request, e.getMessage());
-            try {
-              subscription.close();
-            } catch (Exception e1) {
-              // TODO add sid
-              log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
-            }
-            // close result set in order to release DB resources as
-            // early as possible
-            rs.close();
-            throw e;
-          }
-        } else {
+      }
+      delivering.set(false);
+      // facts might have been handed off, after the queue was found empty
+    } while (!followed.isEmpty() && isConnected() && delivering.compareAndSet(false, true));
+
+    if (paused.get() && followed.isEmpty() && leaving.compareAndSet(false, true)) {
+      leaveFollowerGroup();
+      subscription.onReady(() -> resumeAsync(this::resume));
+    }
+  }
+
+  private void resume() {
+    if (isConnected()) {
+      log.debug("{} resuming at SER={}", request, serial.get());
+      if (runCatchup()) {
+        leaving.set(false);
+        paused.set(false);
+        // joining triggers a query for the group, so the gap since the catchup is covered
+        follow(request);
+      } else {
+        subscription.onReady(() -> resumeAsync(this::resume));
+      }
+    }
+  }
+
+  private synchronized void leaveFollowerGroup() {
+    if (leaveFollowerGroup != null) {
+      leaveFollowerGroup.run();
+      leaveFollowerGroup = null;
+    }
+  }
+
+  private boolean isConnected() {
+    return !disconnected.get();
+  }
+
+  long serial() {
+    return serial.get();
+  }
+
+  /** @return true, if this stream does not take facts from its follower group for now */
+  boolean isPaused() {
+    return paused.get();
+  }
+
+  void shiftSerialTo(long ser) {
+    // facts skipped while paused are caught up on resume
+    if (!paused.get()) {
+      serial.accumulateAndGet(ser, Math::max);
+    }
+  }
+
+  /**
+   * Called by the follower group query for every fact this stream has not seen yet. Only hands the
+   * fact off, in order not to hold up the group's query.
+   *
+   * @param f the fact found
+   * @param ser its serial
+   */
+  void notifyFollowed(@NonNull Fact f, long ser) {
+    if (isConnected() && !paused.get()) {
+      if (!followed.offer(f)) {
+        // falling behind the group
+        pauseFollowing();
+        return;
+      }
+      serial.set(ser);
+      deliverFollowedAsync();
+    }
+  }
+
+  /** @return false, if the subscription failed */
+  private boolean deliver(Fact f) {
+    final UUID factId = f.id();
+    if (postQueryMatcher.test(f)) {
+      try {
+        subscription.notifyElement(f);
+        log.trace("{} notifyElement called with id={}", request, factId);
+      } catch (MissingTransformationInformation | TransformationException e) {
+        log.warn("{} transformation error: {}", request, e.getMessage());
+        subscription.notifyError(e);
+        return false;
+      } catch (Throwable e) {
+        // debug level, because it happens regularly on
+        // disconnecting clients.
+        // TODO add sid
+        log.debug("{} exception from subscription: {}", request, e.getMessage());
+        try {
+          subscription.close();
+        } catch (Exception e1) {
           // TODO add sid
-          log.trace("{} filtered id={}", request, factId);
+          log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
         }
-        serial.set(rs.getLong(PgConstants.COLUMN_SER));
+        return false;
       }
+    } else {
+      // TODO add sid
+      log.trace("{} filtered id={}", request, factId);
     }
+    return true;
+  }
+
+  public synchronized void close() {
+    log.trace("{} disconnecting ", request);
+    disconnected.set(true);
+    leaveFollowerGroup();
+    closePausedCatchup();
+    followed.clear();
+    log.debug("{} disconnected ", request);
   }
 }
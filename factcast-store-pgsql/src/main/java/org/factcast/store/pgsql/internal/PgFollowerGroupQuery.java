@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.spec.FactSpecMatcher;
+import org.factcast.store.pgsql.internal.listen.PgListener.InsertedFactType;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer.BufferedFact;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * A query shared by all following subscriptions of a {@link PgFollowerGroups} group.
+ *
+ * <p>The query starts after the lowest serial of all members and hands every fact found to those
+ * members, that have not yet seen it. If that serial is within the window of the {@link
+ * PgTailBuffer}, the facts are taken from there and matched in memory instead.
+ *
+ * <p>Members only take the facts off to their own delivery (see {@link
+ * PgFactStream#notifyFollowed(Fact, long)}), so that a slow one does not hold up the others.
+ */
+@Slf4j
+class PgFollowerGroupQuery extends PgSynchronizedQuery {
+
+  private final List<PgFactStream> members;
+
+  private final AtomicReference<List<PgFactStream>> running;
+
+  private final AtomicLong groupSerial;
+
+  private final PgTailBuffer tailBuffer;
+
+  private final Predicate<Fact> matcher;
+
+  private final List<FactSpec> specs;
+
+  PgFollowerGroupQuery(
+      @NonNull JdbcTemplate jdbcTemplate,
+      @NonNull List<FactSpec> specs,
+      @NonNull PgLatestSerialFetcher fetcher,
+      @NonNull PgTailBuffer tailBuffer) {
+    this(
+        jdbcTemplate,
+        new PgQueryBuilder(specs),
+        fetcher,
+        tailBuffer,
+        specs,
+        new CopyOnWriteArrayList<>(),
+        new AtomicReference<>(Collections.emptyList()),
+        new AtomicLong(0));
+  }
+
+  private PgFollowerGroupQuery(
+      JdbcTemplate jdbcTemplate,
+      PgQueryBuilder queryBuilder,
+      PgLatestSerialFetcher fetcher,
+      PgTailBuffer tailBuffer,
+      List<FactSpec> specs,
+      List<PgFactStream> members,
+      AtomicReference<List<PgFactStream>> running,
+      AtomicLong groupSerial) {
+    super(
+        jdbcTemplate,
+        queryBuilder.createSQL(),
+        queryBuilder.createStatementSetter(groupSerial),
+        new FanOutRowCallbackHandler(running, groupSerial),
+        groupSerial,
+        fetcher);
+    this.members = members;
+    this.running = running;
+    this.groupSerial = groupSerial;
+    this.tailBuffer = tailBuffer;
+    this.specs = specs;
+    this.matcher = createMatcher(specs);
+  }
+
+  /**
+   * matches like the SQL created by {@link PgQueryBuilder}: version and scripts are left to the
+   * members.
+   */
+  private static Predicate<Fact> createMatcher(List<FactSpec> specs) {
+    return FactSpecMatcher.matchesAnyOf(
+        specs.stream()
+            .map(s -> s.copy().version(0).filterScript(null))
+            .collect(Collectors.toList()));
+  }
+
+  void add(@NonNull PgFactStream member) {
+    members.add(member);
+  }
+
+  void remove(@NonNull PgFactStream member) {
+    members.remove(member);
+  }
+
+  /** @return true, if the query might find facts of the given ns/type */
+  boolean matches(@NonNull InsertedFactType t) {
+    return specs.stream()
+        .anyMatch(
+            s ->
+                ("*".equals(s.ns()) || s.ns().equals(t.ns()))
+                    && (s.type() == null || s.type().equals(t.type())));
+  }
+
+  boolean isEmpty() {
+    return members.isEmpty();
+  }
+
+  @Override
+  public synchronized void run(boolean useIndex) {
+    // members joining while running must wait for the next run, as
+    // they might be behind the position of this one. Paused members catch up on their own.
+    List<PgFactStream> current =
+        members.stream().filter(m -> !m.isPaused()).collect(Collectors.toList());
+    if (current.isEmpty()) {
+      return;
+    }
+    long from = current.stream().mapToLong(PgFactStream::serial).min().getAsLong();
+    Optional<Slice> tail = tailBuffer.tailAfter(from);
+    if (tail.isPresent()) {
+      for (BufferedFact bf : tail.get().facts()) {
+        if (matcher.test(bf.fact())) {
+          fanOut(current, bf.fact(), bf.ser());
+        }
+      }
+      long head = tail.get().head();
+      current.forEach(m -> m.shiftSerialTo(head));
+      return;
+    }
+    groupSerial.set(from);
+    running.set(current);
+    try {
+      super.run(useIndex);
+    } finally {
+      running.set(Collections.emptyList());
+    }
+    // every member has seen everything up to here now, matching or not
+    long reached = groupSerial.get();
+    current.forEach(m -> m.shiftSerialTo(reached));
+  }
+
+  @RequiredArgsConstructor
+  private static class FanOutRowCallbackHandler implements RowCallbackHandler {
+
+    final AtomicReference<List<PgFactStream>> running;
+
+    final AtomicLong groupSerial;
+
+    @SuppressWarnings("NullableProblems")
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+      if (rs.isClosed()) {
+        throw new IllegalStateException(
+            "ResultSet already closed. We should not have got here. THIS IS A BUG!");
+      }
+      Fact f = PgFact.from(rs);
+      long ser = rs.getLong(PgConstants.COLUMN_SER);
+      fanOut(running.get(), f, ser);
+      groupSerial.set(ser);
+    }
+  }
+
+  private static void fanOut(List<PgFactStream> members, Fact f, long ser) {
+    for (PgFactStream member : members) {
+      if (member.serial() < ser) {
+        try {
+          member.notifyFollowed(f, ser);
+        } catch (Throwable e) {
+          // the member closed its subscription already, others should not be affected
+          log.debug("follower group member failed: {}", e.getMessage());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import com.google.common.eventbus.EventBus;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Groups following subscriptions by their (order-independent) FactSpecs and maxBatchDelay, so that
+ * a fact insertion triggers one query per group rather than one query per subscription.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@Slf4j
+@RequiredArgsConstructor
+public class PgFollowerGroups {
+
+  @NonNull final JdbcTemplate jdbcTemplate;
+
+  @NonNull final EventBus eventBus;
+
+  @NonNull final PgLatestSerialFetcher fetcher;
+
+  @NonNull final PgTailBuffer tailBuffer;
+
+  private final Map<GroupKey, Group> groups = new HashMap<>();
+
+  /**
+   * Adds the stream to the group matching the given specs and triggers a query for the group, to
+   * make sure the stream did not miss any fact due to slow registration.
+   *
+   * @return a Runnable that removes the stream from its group again
+   */
+  Runnable join(
+      @NonNull List<FactSpec> specs, long maxBatchDelayInMs, @NonNull PgFactStream stream) {
+    GroupKey key = new GroupKey(new HashSet<>(specs), maxBatchDelayInMs);
+    Group group;
+    synchronized (groups) {
+      group = groups.computeIfAbsent(key, k -> createGroup(specs, maxBatchDelayInMs));
+      group.query.add(stream);
+    }
+    log.trace("joined follower group of {}", key);
+    group.executor.trigger();
+    return () -> leave(key, stream);
+  }
+
+  private void leave(GroupKey key, PgFactStream stream) {
+    synchronized (groups) {
+      Group group = groups.get(key);
+      if (group != null) {
+        group.query.remove(stream);
+        if (group.query.isEmpty()) {
+          groups.remove(key);
+          eventBus.unregister(group.executor);
+          group.executor.cancel();
+          log.trace("removed follower group of {}", key);
+        }
+      }
+    }
+  }
+
+  int size() {
+    synchronized (groups) {
+      return groups.size();
+    }
+  }
+
+  private Group createGroup(List<FactSpec> specs, long maxBatchDelayInMs) {
+    PgFollowerGroupQuery query = new PgFollowerGroupQuery(jdbcTemplate, specs, fetcher, tailBuffer);
+    CondensedQueryExecutor executor =
+        new CondensedQueryExecutor(
+            delayFor(maxBatchDelayInMs), query, () -> !query.isEmpty(), query::matches);
+    eventBus.register(executor);
+    return new Group(query, executor);
+  }
+
+  private static long delayFor(long maxBatchDelayInMs) {
+    if (maxBatchDelayInMs < 1) {
+      // ok, instant query after NOTIFY
+      return 0;
+    } else {
+      // spread groups, so that they query at different points
+      // in time, even if they get triggered at the same PIT, and
+      // share the same latency requirements
+      return ((maxBatchDelayInMs / 4L) * 3L)
+          + (long) (Math.abs(Math.random() * (maxBatchDelayInMs / 4.0)));
+    }
+  }
+
+  @Value
+  private static class GroupKey {
+    Set<FactSpec> specs;
+
+    long maxBatchDelayInMs;
+  }
+
+  @RequiredArgsConstructor
+  private static class Group {
+    final PgFollowerGroupQuery query;
+
+    final CondensedQueryExecutor executor;
+  }
+}
@@ -154,9 +154,15 @@ public enum OP {
 
       COMPACT_SNAPSHOT_CACHE("compactSnapshotCache"),
 
+      MAINTAIN_FACT_PARTITIONS("maintainFactPartitions"),
+
       NOTIFY_ROUNDTRIP_LATENCY("notifyRoundTripLatency"),
 
-      MISSED_ROUNDTRIP("missedRoundtrip");
+      MISSED_ROUNDTRIP("missedRoundtrip"),
+
+      NOTIFY_FACT_INSERT("notifyFactInsert"),
+
+      PUBLISH_TO_NOTIFY_LATENCY("publishToNotifyLatency");
 
       @NonNull @Getter final String op;
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+
+/**
+ * Collects concurrent publishes for a short time in order to write them with one transaction (group
+ * commit).
+ *
+ * <p>Publishing blocks until the group containing the facts is written. If writing a group fails,
+ * its publishes are written one by one, so that only the offending publish fails.
+ */
+@Slf4j
+class PgPublishCoalescer implements AutoCloseable {
+
+  private final Consumer<List<Fact>> writer;
+
+  private final long delayInNanos;
+
+  private final int maxFacts;
+
+  private final BlockingQueue<PendingPublish> queue = new LinkedBlockingQueue<>();
+
+  private final Thread worker;
+
+  private volatile boolean closed = false;
+
+  /**
+   * @param writer writes the given facts within one transaction
+   * @param delayInMicros max time to wait for other publishes to join a group
+   * @param maxFacts number of facts in a group, after which no more publishes are waited for
+   */
+  PgPublishCoalescer(@NonNull Consumer<List<Fact>> writer, long delayInMicros, int maxFacts) {
+    this.writer = writer;
+    this.delayInNanos = TimeUnit.MICROSECONDS.toNanos(delayInMicros);
+    this.maxFacts = maxFacts;
+    worker = new Thread(this::run, "pg-publish-group-commit");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  void publish(@NonNull List<? extends Fact> facts) {
+    if (closed) {
+      throw new IllegalStateException("Already closed");
+    }
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    PendingPublish pending = new PendingPublish(new ArrayList<>(facts), result);
+    queue.add(pending);
+    if (closed && queue.remove(pending)) {
+      throw new IllegalStateException("Already closed");
+    }
+    try {
+      result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for facts to be published", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        write(nextGroup());
+      }
+    } catch (InterruptedException e) {
+      // closed
+    }
+    PendingPublish p;
+    while ((p = queue.poll()) != null) {
+      p.result.completeExceptionally(new IllegalStateException("Already closed"));
+    }
+  }
+
+  List<PendingPublish> nextGroup() throws InterruptedException {
+    List<PendingPublish> group = new ArrayList<>();
+    PendingPublish first = queue.take();
+    group.add(first);
+    int facts = first.facts.size();
+    long deadline = System.nanoTime() + delayInNanos;
+    while (facts < maxFacts) {
+      PendingPublish next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      if (next == null) {
+        break;
+      }
+      group.add(next);
+      facts += next.facts.size();
+    }
+    return group;
+  }
+
+  void write(List<PendingPublish> group) {
+    if (group.size() > 1) {
+      List<Fact> facts = new ArrayList<>();
+      group.forEach(p -> facts.addAll(p.facts));
+      try {
+        writer.accept(facts);
+        group.forEach(p -> p.result.complete(null));
+        return;
+      } catch (Exception e) {
+        log.debug("Writing a group of {} publishes failed, retrying one by one", group.size(), e);
+      } catch (Throwable e) {
+        // not worth retrying, but the worker must survive it
+        log.error("Writing a group of {} publishes failed", group.size(), e);
+        group.forEach(p -> p.result.completeExceptionally(e));
+        return;
+      }
+    }
+    group.forEach(this::write);
+  }
+
+  private void write(PendingPublish p) {
+    try {
+      writer.accept(p.facts);
+      p.result.complete(null);
+    } catch (Throwable e) {
+      p.result.completeExceptionally(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    worker.interrupt();
+  }
+
+  static class PendingPublish {
+    final List<Fact> facts;
+
+    final CompletableFuture<Void> result;
+
+    PendingPublish(List<Fact> facts, CompletableFuture<Void> result) {
+      this.facts = facts;
+      this.result = result;
+    }
+  }
+}
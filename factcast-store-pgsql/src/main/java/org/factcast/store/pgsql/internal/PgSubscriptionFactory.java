@@ -15,28 +15,27 @@
  */
 package org.factcast.store.pgsql.internal;
 
-import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.concurrent.CompletableFuture;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.factcast.core.subscription.FactTransformersFactory;
 import org.factcast.core.subscription.Subscription;
 import org.factcast.core.subscription.SubscriptionImpl;
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
 import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
 import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 // TODO integrate with PGQuery
-@SuppressWarnings("UnstableApiUsage")
-@RequiredArgsConstructor
-class PgSubscriptionFactory {
+class PgSubscriptionFactory implements DisposableBean {
 
   final JdbcTemplate jdbcTemplate;
 
-  final EventBus eventBus;
-
   final PgFactIdToSerialMapper idToSerialMapper;
 
   final PgLatestSerialFetcher fetcher;
@@ -45,13 +44,56 @@ class PgSubscriptionFactory {
 
   final FactTransformersFactory transformersFactory;
 
+  final PgFollowerGroups followerGroups;
+
+  // shared by all subscriptions for resuming after their consumer became ready again
+  final ExecutorService resumeExecutor;
+
+  // delivers the facts found by follower groups, one thread per member currently delivering
+  final ExecutorService followExecutor =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setNameFormat("pg-follow-%d").setDaemon(true).build());
+
+  PgSubscriptionFactory(
+      JdbcTemplate jdbcTemplate,
+      PgFactIdToSerialMapper idToSerialMapper,
+      PgLatestSerialFetcher fetcher,
+      PgCatchupFactory catchupFactory,
+      FactTransformersFactory transformersFactory,
+      PgFollowerGroups followerGroups,
+      PgConfigurationProperties props) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.idToSerialMapper = idToSerialMapper;
+    this.fetcher = fetcher;
+    this.catchupFactory = catchupFactory;
+    this.transformersFactory = transformersFactory;
+    this.followerGroups = followerGroups;
+    this.resumeExecutor =
+        Executors.newFixedThreadPool(
+            props.getResumeParallelism(),
+            new ThreadFactoryBuilder().setNameFormat("pg-resume-%d").setDaemon(true).build());
+  }
+
   public Subscription subscribe(SubscriptionRequestTO req, FactObserver observer) {
     final SubscriptionImpl subscription =
         SubscriptionImpl.on(observer, transformersFactory.createFor(req));
     PgFactStream pgsub =
         new PgFactStream(
-            jdbcTemplate, eventBus, idToSerialMapper, subscription, fetcher, catchupFactory);
+            jdbcTemplate,
+            idToSerialMapper,
+            subscription,
+            fetcher,
+            catchupFactory,
+            followerGroups,
+            resumeExecutor,
+            followExecutor);
     CompletableFuture.runAsync(() -> pgsub.connect(req));
     return subscription.onClose(pgsub::close);
   }
+
+  @Override
+  public void destroy() {
+    resumeExecutor.shutdown();
+    followExecutor.shutdown();
+  }
 }
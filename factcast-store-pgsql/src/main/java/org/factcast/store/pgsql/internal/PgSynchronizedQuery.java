@@ -35,7 +35,7 @@
  * is way more efficient to scan the table. In that case call <code>query(false)</code>.
  *
  * <p>DO NOT use an instance as a singleton/Spring bean. This class is meant be instantiated by each
- * subscription.
+ * subscription or group of followers (see {@link PgFollowerGroupQuery}).
  *
  * @author uwe.schaefer@prisma-capacity.eu
  */
@@ -15,4 +15,19 @@
  */
 package org.factcast.store.pgsql.internal.catchup;
 
-public interface PgCatchup extends Runnable {}
+public interface PgCatchup extends Runnable {
+
+  /**
+   * @return true, if the last run stopped before reaching the end, because the subscription was not
+   *     ready for more facts
+   */
+  default boolean paused() {
+    return false;
+  }
+
+  /**
+   * Releases whatever a paused catchup keeps for being continued by the next run. Called, if the
+   * subscription is closed while the catchup is paused.
+   */
+  default void close() {}
+}
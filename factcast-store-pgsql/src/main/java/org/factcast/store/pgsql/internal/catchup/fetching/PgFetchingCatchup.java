@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.fetching;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgFact;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams the matching facts directly from the fact table, using a server-side cursor within a
+ * read-only transaction.
+ *
+ * <p>In contrast to {@link org.factcast.store.pgsql.internal.catchup.paged.PgPagedCatchup}, no
+ * serials are copied to the catchup table upfront, so that the first fact can be delivered as soon
+ * as the first fetch returns. The downside is a transaction that stays open for the whole catchup.
+ *
+ * <p>If the subscription is not ready for more facts, the cursor is closed and the next run streams
+ * again, starting after the last fact notified.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PgFetchingCatchup implements PgCatchup {
+
+  @NonNull final JdbcTemplate jdbc;
+
+  @NonNull final PgConfigurationProperties props;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  private boolean paused = false;
+
+  @Override
+  public boolean paused() {
+    return paused;
+  }
+
+  @Override
+  public void run() {
+    paused = false;
+    PgQueryBuilder b = new PgQueryBuilder(request.specs());
+    String sql = b.createSQL();
+    // noinspection ConstantConditions
+    JdbcTemplate cursorTemplate = new JdbcTemplate(jdbc.getDataSource());
+    // the pg driver only uses a cursor if autocommit is off and a fetchSize is set
+    cursorTemplate.setFetchSize(props.getPageSize());
+    TransactionTemplate transactionTemplate =
+        new TransactionTemplate(new DataSourceTransactionManager(jdbc.getDataSource()));
+    transactionTemplate.setReadOnly(true);
+    try {
+      log.debug("{} streaming matches after {}", request, serial.get());
+      transactionTemplate.execute(
+          status -> {
+            cursorTemplate.query(
+                sql,
+                b.createStatementSetter(serial),
+                createResultSetExtractor(createRowCallbackHandler()));
+            return null;
+          });
+    } catch (Exception e) {
+      log.error("While fetching ", e);
+    }
+  }
+
+  ResultSetExtractor<Void> createResultSetExtractor(RowCallbackHandler handler) {
+    return rs -> {
+      while (rs.next()) {
+        handler.processRow(rs);
+        if (!subscription.isReady()) {
+          log.debug("{} subscription not ready, pausing catchup at SER={}", request, serial.get());
+          paused = true;
+          break;
+        }
+      }
+      return null;
+    };
+  }
+
+  RowCallbackHandler createRowCallbackHandler() {
+    return new RowCallbackHandler() {
+      @SuppressWarnings("NullableProblems")
+      @Override
+      public void processRow(ResultSet rs) throws SQLException {
+        Fact f = PgFact.from(rs);
+        UUID factId = f.id();
+        if (postQueryMatcher.test(f)) {
+          try {
+            subscription.notifyElement(f);
+            log.trace("{} notifyElement called with id={}", request, factId);
+          } catch (MissingTransformationInformation | TransformationException e) {
+            log.warn("{} transformation error: {}", request, e.getMessage());
+            subscription.notifyError(e);
+            throw new RuntimeException(e);
+          } catch (Throwable e) {
+            // debug level, because it happens regularly on
+            // disconnecting clients.
+            log.debug("{} exception from subscription: {}", request, e.getMessage());
+            try {
+              subscription.close();
+            } catch (Exception e1) {
+              log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+            }
+            throw e;
+          }
+        } else {
+          log.trace("{} filtered id={}", request, factId);
+        }
+        serial.set(rs.getLong(PgConstants.COLUMN_SER));
+      }
+    };
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.keyset;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Adapts the number of facts fetched per page to the observed latency and size of the previous
+ * page.
+ *
+ * <p>The page size doubles while pages come back fast and small, and halves as soon as a page
+ * either takes longer than {@link #TARGET_LATENCY_IN_MILLIS} or exceeds {@link #TARGET_BYTES}. It
+ * never leaves the range of [{@link #MIN_PAGE_SIZE}, 10 x initial page size].
+ */
+@Slf4j
+class AdaptivePageSize {
+
+  static final int MIN_PAGE_SIZE = 10;
+
+  static final long TARGET_LATENCY_IN_MILLIS = 200;
+
+  static final long TARGET_BYTES = 8 * 1024 * 1024;
+
+  private final int maxPageSize;
+
+  @Getter private int current;
+
+  AdaptivePageSize(int initialPageSize) {
+    current = Math.max(MIN_PAGE_SIZE, initialPageSize);
+    maxPageSize = current * 10;
+  }
+
+  void observe(int rows, long bytes, long latencyInMillis) {
+    int before = current;
+    if (latencyInMillis > TARGET_LATENCY_IN_MILLIS || bytes > TARGET_BYTES) {
+      current = Math.max(MIN_PAGE_SIZE, current / 2);
+    } else if (rows >= current
+        && latencyInMillis < TARGET_LATENCY_IN_MILLIS / 2
+        && bytes < TARGET_BYTES / 2) {
+      current = Math.min(maxPageSize, current * 2);
+    }
+    if (before != current) {
+      log.trace(
+          "adapting page size from {} to {} ({} rows, {} bytes, {}ms)",
+          before,
+          current,
+          rows,
+          bytes,
+          latencyInMillis);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.keyset;
+
+import com.google.common.base.Stopwatch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Pages through the fact table directly, using the SER of the last fact of a page as the lower
+ * bound of the next one.
+ *
+ * <p>Every page is a short, separate query, so that neither a long running transaction (see {@link
+ * org.factcast.store.pgsql.internal.catchup.fetching.PgFetchingCatchup}) nor inserts into the
+ * catchup table (see {@link org.factcast.store.pgsql.internal.catchup.paged.PgPagedCatchup}) are
+ * necessary. The page size adapts to the observed size and latency of the pages.
+ */
+@Slf4j
+public class PgKeysetCatchup implements PgCatchup {
+
+  @NonNull final JdbcTemplate jdbc;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  @NonNull final AdaptivePageSize pageSize;
+
+  private boolean paused = false;
+
+  // facts of the current page not notified yet, because the subscription was not ready
+  private List<Fact> pending = Collections.emptyList();
+
+  public PgKeysetCatchup(
+      @NonNull JdbcTemplate jdbc,
+      @NonNull PgConfigurationProperties props,
+      @NonNull SubscriptionRequestTO request,
+      @NonNull PgPostQueryMatcher postQueryMatcher,
+      @NonNull SubscriptionImpl subscription,
+      @NonNull AtomicLong serial) {
+    this.jdbc = jdbc;
+    this.request = request;
+    this.postQueryMatcher = postQueryMatcher;
+    this.subscription = subscription;
+    this.serial = serial;
+    pageSize = new AdaptivePageSize(props.getPageSize());
+  }
+
+  @Override
+  public void run() {
+    paused = false;
+    PgQueryBuilder b = new PgQueryBuilder(request.specs());
+    String sql = b.createPagedSQL();
+    try {
+      // the rest of the page the last run paused within
+      if (!notifyWhileReady(pending)) {
+        return;
+      }
+      while (true) {
+        int limit = pageSize.current();
+        LinkedList<Fact> facts = fetchPage(b, sql, limit);
+        int fetched = facts.size();
+        List<Fact> matching = new ArrayList<>(facts.size());
+        while (!facts.isEmpty()) {
+          Fact f = facts.removeFirst();
+          if (postQueryMatcher.test(f)) {
+            matching.add(f);
+          } else {
+            log.trace("{} filtered id={}", request, f.id());
+          }
+        }
+        if (!notifyWhileReady(matching) || fetched < limit) {
+          // paused or reached the end
+          break;
+        }
+        if (!subscription.isReady()) {
+          pause();
+          break;
+        }
+      }
+    } catch (Exception e) {
+      log.error("While fetching ", e);
+    }
+  }
+
+  /**
+   * @return false, if the subscription was not ready for all of the given facts. Facts not notified
+   *     are kept for the next run.
+   */
+  private boolean notifyWhileReady(List<Fact> matching) throws TransformationException {
+    try {
+      // transforms the page as a batch, if necessary
+      pending = subscription.notifyElementsWhileReady(matching);
+      log.trace(
+          "{} notifyElements called with {} facts, {} pending",
+          request,
+          matching.size(),
+          pending.size());
+    } catch (MissingTransformationInformation | TransformationException e) {
+      log.warn("{} transformation error: {}", request, e.getMessage());
+      subscription.notifyError(e);
+      throw e;
+    } catch (Throwable e) {
+      // debug level, because it happens regularly on
+      // disconnecting clients.
+      log.debug("{} exception from subscription: {}", request, e.getMessage());
+      try {
+        subscription.close();
+      } catch (Exception e1) {
+        log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+      }
+      throw e;
+    }
+    if (!pending.isEmpty()) {
+      pause();
+      return false;
+    }
+    return true;
+  }
+
+  private void pause() {
+    // the facts are out of the database already, so nothing is held while waiting
+    log.debug("{} subscription not ready, pausing catchup at SER={}", request, serial.get());
+    paused = true;
+  }
+
+  @Override
+  public void close() {
+    pending = Collections.emptyList();
+  }
+
+  @Override
+  public boolean paused() {
+    return paused;
+  }
+
+  // use LinkedLists so that we can use remove() rather than iteration, in
+  // order to release Facts for GC asap.
+  private LinkedList<Fact> fetchPage(PgQueryBuilder b, String sql, int limit) {
+    Stopwatch sw = Stopwatch.createStarted();
+    long after = serial.get();
+    LinkedList<Fact> list =
+        new LinkedList<>(
+            jdbc.query(sql, b.createStatementSetter(serial, limit), new PgFactExtractor(serial)));
+    sw.stop();
+    long elapsed = sw.elapsed(TimeUnit.MILLISECONDS);
+    long bytes =
+        list.stream().mapToLong(f -> f.jsonHeader().length() + f.jsonPayload().length()).sum();
+    log.trace(
+        "{} fetched next page of Facts, limit={}, ser>{} in {}ms", request, limit, after, elapsed);
+    pageSize.observe(list.size(), bytes, elapsed);
+    return list;
+  }
+}
@@ -15,8 +15,10 @@
  */
 package org.factcast.store.pgsql.internal.catchup.paged;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
-import java.util.UUID;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -50,60 +52,106 @@ public class PgPagedCatchup implements PgCatchup {
 
   @NonNull final AtomicLong serial;
 
-  @SuppressWarnings("FieldCanBeLocal")
+  // kept while paused, so that the next run continues with the serials prepared
   private long clientId = 0;
 
+  private boolean paused = false;
+
+  // facts of the current page not notified yet, because the subscription was not ready
+  private List<Fact> pending = Collections.emptyList();
+
   private LinkedList<Fact> doFetch(PgCatchUpFetchPage fetch) {
     return fetch.fetchFacts(serial);
   }
 
+  @Override
+  public boolean paused() {
+    return paused;
+  }
+
+  @Override
+  public void close() {
+    if (clientId > 0) {
+      jdbc.update(PgConstants.DELETE_CATCH_BY_CID, clientId);
+      clientId = 0;
+    }
+    pending = Collections.emptyList();
+  }
+
   @Override
   public void run() {
-    PgCatchUpPrepare prep = new PgCatchUpPrepare(jdbc, request);
-    clientId = prep.prepareCatchup(serial);
+    if (!paused) {
+      PgCatchUpPrepare prep = new PgCatchUpPrepare(jdbc, request);
+      clientId = prep.prepareCatchup(serial);
+    }
+    paused = false;
     if (clientId > 0) {
       try {
         PgCatchUpFetchPage fetch =
             new PgCatchUpFetchPage(jdbc, props.getPageSize(), request, clientId);
+        // the rest of the page the last run paused within
+        List<Fact> matching = pending;
         while (true) {
+          if (!notifyWhileReady(matching)) {
+            // the remaining serials are kept for the next run
+            log.debug(
+                "{} subscription not ready, pausing catchup at SER={}", request, serial.get());
+            paused = true;
+            break;
+          }
           LinkedList<Fact> facts = doFetch(fetch);
           if (facts.isEmpty()) {
             // we have reached the end
             break;
           }
+          matching = new ArrayList<>(facts.size());
           while (!facts.isEmpty()) {
             Fact f = facts.removeFirst();
-            UUID factId = f.id();
             if (postQueryMatcher.test(f)) {
-              try {
-                subscription.notifyElement(f);
-                log.trace("{} notifyElement called with id={}", request, factId);
-              } catch (MissingTransformationInformation | TransformationException e) {
-                log.warn("{} transformation error: {}", request, e.getMessage());
-                subscription.notifyError(e);
-                throw e;
-              } catch (Throwable e) {
-                // debug level, because it happens regularly
-                // on
-                // disconnecting clients.
-                log.debug("{} exception from subscription: {}", request, e.getMessage());
-                try {
-                  subscription.close();
-                } catch (Exception e1) {
-                  log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
-                }
-                throw e;
-              }
+              matching.add(f);
             } else {
-              log.trace("{} filtered id={}", request, factId);
+              log.trace("{} filtered id={}", request, f.id());
             }
           }
         }
       } catch (Exception e) {
         log.error("While fetching ", e);
       } finally {
-        jdbc.update(PgConstants.DELETE_CATCH_BY_CID, clientId);
+        if (!paused) {
+          close();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return false, if the subscription is not ready for more facts. Facts not notified are kept for
+   *     the next run.
+   */
+  private boolean notifyWhileReady(List<Fact> matching) throws TransformationException {
+    try {
+      // transforms the page as a batch, if necessary
+      pending = subscription.notifyElementsWhileReady(matching);
+      log.trace(
+          "{} notifyElements called with {} facts, {} pending",
+          request,
+          matching.size(),
+          pending.size());
+    } catch (MissingTransformationInformation | TransformationException e) {
+      log.warn("{} transformation error: {}", request, e.getMessage());
+      subscription.notifyError(e);
+      throw e;
+    } catch (Throwable e) {
+      // debug level, because it happens regularly on
+      // disconnecting clients.
+      log.debug("{} exception from subscription: {}", request, e.getMessage());
+      try {
+        subscription.close();
+      } catch (Exception e1) {
+        log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
       }
+      throw e;
     }
+    return pending.isEmpty() && subscription.isReady();
   }
 }
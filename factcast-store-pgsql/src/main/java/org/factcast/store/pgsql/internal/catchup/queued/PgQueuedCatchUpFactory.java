@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.queued;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class PgQueuedCatchUpFactory implements PgCatchupFactory, DisposableBean {
+
+  @NonNull final JdbcTemplate jdbc;
+
+  @NonNull final PgConfigurationProperties props;
+
+  // not the common pool, as fetching threads block on the queue as well as on the database
+  final ExecutorService fetchExecutor =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setNameFormat("pg-catchup-fetch-%d").setDaemon(true).build());
+
+  public PgQueuedCatchUpFactory(
+      @NonNull JdbcTemplate jdbc, @NonNull PgConfigurationProperties props) {
+    this.jdbc = jdbc;
+    this.props = props;
+  }
+
+  @Override
+  public PgQueuedCatchup create(
+      @NonNull SubscriptionRequestTO request,
+      @NonNull PgPostQueryMatcher postQueryMatcher,
+      @NonNull SubscriptionImpl subscription,
+      @NonNull AtomicLong serial) {
+    return new PgQueuedCatchup(
+        jdbc, props, request, postQueryMatcher, subscription, serial, fetchExecutor);
+  }
+
+  @Override
+  public void destroy() {
+    fetchExecutor.shutdown();
+  }
+}
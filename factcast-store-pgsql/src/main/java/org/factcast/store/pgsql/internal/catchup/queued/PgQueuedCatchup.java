@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.queued;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Fetches pages of facts on a separate thread into a bounded queue, while the calling thread
+ * delivers from that queue to the subscription.
+ *
+ * <p>That way, the next page is fetched from the database while the current one is being
+ * transformed and sent. If the consumer is slower than the database, the fetching thread blocks as
+ * soon as {@link PgConfigurationProperties#getQueueSize()} facts are waiting to be delivered. Pages
+ * are of {@link PgConfigurationProperties#getFetchSize()} facts and are selected the same way
+ * {@link org.factcast.store.pgsql.internal.catchup.keyset.PgKeysetCatchup} does it.
+ *
+ * <p>If the subscription is not ready for more facts, delivery pauses and the queue is kept for the
+ * next run. The fetching thread then blocks on the full queue, without holding a connection.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PgQueuedCatchup implements PgCatchup {
+
+  // marks the end of the queue
+  private static final Fact EOQ = Fact.builder().ns("EOQ").buildWithoutPayload();
+
+  @NonNull final JdbcTemplate jdbc;
+
+  @NonNull final PgConfigurationProperties props;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  @NonNull final Executor fetchExecutor;
+
+  // kept while paused, so that the next run continues delivering from it
+  private BlockingQueue<Fact> queue;
+
+  private AtomicLong fetchSerial;
+
+  private AtomicBoolean cancelled;
+
+  private AtomicReference<Exception> fetchException;
+
+  private boolean paused = false;
+
+  @Override
+  public boolean paused() {
+    return paused;
+  }
+
+  @Override
+  public void run() {
+    if (!paused) {
+      queue = new ArrayBlockingQueue<>(props.getQueueSize());
+      fetchSerial = new AtomicLong(serial.get());
+      cancelled = new AtomicBoolean(false);
+      fetchException = new AtomicReference<>();
+      fetchExecutor.execute(() -> fetch(queue, fetchSerial, cancelled, fetchException));
+    }
+    paused = false;
+    try {
+      Fact f;
+      while ((f = queue.take()) != EOQ) {
+        deliver(f);
+        if (!subscription.isReady()) {
+          log.debug("{} subscription not ready, pausing catchup", request);
+          paused = true;
+          return;
+        }
+      }
+      if (fetchException.get() != null) {
+        throw fetchException.get();
+      }
+      serial.set(fetchSerial.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.error("Interrupted while waiting for facts to be fetched", e);
+    } catch (Exception e) {
+      log.error("While fetching ", e);
+    } finally {
+      if (!paused) {
+        close();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (cancelled != null) {
+      cancelled.set(true);
+      // unblocks the fetching thread, in case it waits for space in the queue
+      queue.clear();
+    }
+  }
+
+  private void fetch(
+      BlockingQueue<Fact> queue,
+      AtomicLong fetchSerial,
+      AtomicBoolean cancelled,
+      AtomicReference<Exception> fetchException) {
+    PgQueryBuilder b = new PgQueryBuilder(request.specs());
+    String sql = b.createPagedSQL();
+    int fetchSize = Math.max(1, props.getFetchSize());
+    try {
+      while (!cancelled.get()) {
+        List<Fact> page =
+            jdbc.query(
+                sql,
+                b.createStatementSetter(fetchSerial, fetchSize),
+                new PgFactExtractor(fetchSerial));
+        log.trace("{} fetched {} facts, up to ser={}", request, page.size(), fetchSerial.get());
+        for (Fact f : page) {
+          if (cancelled.get()) {
+            return;
+          }
+          queue.put(f);
+        }
+        if (page.size() < fetchSize) {
+          // we have reached the end
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fetchException.set(new IllegalStateException("Interrupted while fetching", e));
+    } catch (Exception e) {
+      fetchException.set(e);
+    } finally {
+      if (!cancelled.get()) {
+        try {
+          queue.put(EOQ);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  private void deliver(Fact f) throws TransformationException {
+    UUID factId = f.id();
+    if (postQueryMatcher.test(f)) {
+      try {
+        subscription.notifyElement(f);
+        log.trace("{} notifyElement called with id={}", request, factId);
+      } catch (MissingTransformationInformation | TransformationException e) {
+        log.warn("{} transformation error: {}", request, e.getMessage());
+        subscription.notifyError(e);
+        throw e;
+      } catch (Throwable e) {
+        // debug level, because it happens regularly on
+        // disconnecting clients.
+        log.debug("{} exception from subscription: {}", request, e.getMessage());
+        try {
+          subscription.close();
+        } catch (Exception e1) {
+          log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+        }
+        throw e;
+      }
+    } else {
+      log.trace("{} filtered id={}", request, factId);
+    }
+  }
+}
@@ -15,18 +15,28 @@
  */
 package org.factcast.store.pgsql.internal.listen;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.eventbus.EventBus;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.util.FactCastJson;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgConstants;
 import org.factcast.store.pgsql.internal.PgMetrics;
@@ -40,7 +50,8 @@
  * Listens (sql LISTEN command) to a channel on Postgresql and passes a trigger on an EventBus.
  *
  * <p>This trigger then is supposed to "encourage" active subscriptions to query for new Facts from
- * PG.
+ * PG. It carries ns/type of the inserted facts (if known), so that subscriptions can skip the
+ * query, if none of them matches.
  *
  * @author uwe.schaefer@prisma-capacity.eu
  */
@@ -126,12 +137,58 @@ protected void informSubscribersAboutFreshConnection() {
 
   @VisibleForTesting
   protected void informSubscriberOfChannelNotifications(PGNotification[] notifications) {
-    if (Arrays.stream(notifications).anyMatch(n -> PgConstants.CHANNEL_NAME.equals(n.getName()))) {
+    List<PGNotification> inserts =
+        Arrays.stream(notifications)
+            .filter(n -> PgConstants.CHANNEL_NAME.equals(n.getName()))
+            .collect(Collectors.toList());
+    if (!inserts.isEmpty()) {
+      pgMetrics.counter(OP.NOTIFY_FACT_INSERT).increment(inserts.size());
       log.trace("notifying consumers for '{}'", PgConstants.CHANNEL_NAME);
-      postEvent(PgConstants.CHANNEL_NAME);
+      postEvent(PgConstants.CHANNEL_NAME, parseInsertedFactTypes(inserts));
     }
   }
 
+  /**
+   * Extracts ns/type of the inserted facts from the notification payloads, as sent by the
+   * notifyFactInsertStatement() trigger (or the full header, as sent by the former per-row
+   * trigger), and records the latency from the start of the publishing transaction.
+   *
+   * @return the distinct ns/type pairs, or an empty list if any of the payloads cannot be parsed
+   */
+  @VisibleForTesting
+  List<InsertedFactType> parseInsertedFactTypes(List<PGNotification> inserts) {
+    long now = System.currentTimeMillis();
+    Set<InsertedFactType> types = new LinkedHashSet<>();
+    boolean complete = true;
+    for (PGNotification n : inserts) {
+      try {
+        JsonNode payload = FactCastJson.readTree(n.getParameter());
+        JsonNode source = payload.has("header") ? payload.get("header") : payload;
+        if (!source.isObject()) {
+          complete = false;
+          continue;
+        }
+        types.add(new InsertedFactType(textOf(source.get("ns")), textOf(source.get("type"))));
+        JsonNode ts = payload.get("ts");
+        if (ts != null && ts.canConvertToLong()) {
+          // ts is the start of the publishing transaction, so this includes the time it took,
+          // as well as clock skew
+          pgMetrics
+              .timer(OP.PUBLISH_TO_NOTIFY_LATENCY)
+              .record(Math.max(0, now - ts.asLong()), TimeUnit.MILLISECONDS);
+        }
+      } catch (Exception e) {
+        log.debug("Cannot parse notification payload, ignoring it: {}", e.getMessage());
+        complete = false;
+      }
+    }
+    return complete ? new ArrayList<>(types) : Collections.emptyList();
+  }
+
+  private static String textOf(JsonNode node) {
+    return node == null || node.isNull() ? null : node.asText();
+  }
+
   // try to receive Postgres notifications until timeout is over. In case we
   // didn't receive any notification we
   // check if the database connection is still healthy
@@ -184,8 +241,12 @@ protected void sleep() {
 
   @VisibleForTesting
   protected void postEvent(final String name) {
+    postEvent(name, Collections.emptyList());
+  }
+
+  private void postEvent(final String name, List<InsertedFactType> inserted) {
     if (running.get()) {
-      eventBus.post(new FactInsertionEvent(name));
+      eventBus.post(new FactInsertionEvent(name, inserted));
     }
   }
 
@@ -195,6 +256,27 @@ public static class FactInsertionEvent {
     @SuppressWarnings("unused")
     @Getter
     final String name;
+
+    /** ns/type of the facts that were inserted, empty if unknown */
+    @NonNull final List<InsertedFactType> inserted;
+
+    public FactInsertionEvent(String name) {
+      this(name, Collections.emptyList());
+    }
+
+    /**
+     * @return false, if the inserted facts are known and none of them matches the given predicate
+     */
+    public boolean mightMatch(@NonNull Predicate<InsertedFactType> predicate) {
+      return inserted.isEmpty() || inserted.stream().anyMatch(predicate);
+    }
+  }
+
+  @Value
+  public static class InsertedFactType {
+    String ns;
+
+    String type;
   }
 
   @Override
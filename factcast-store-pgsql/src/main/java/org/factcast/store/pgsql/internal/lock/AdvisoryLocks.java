@@ -18,11 +18,12 @@
 import lombok.Getter;
 
 public enum AdvisoryLocks {
-  PUBLISH();
+  PUBLISH(128),
+  PUBLISH_STRIPE(129);
 
   @Getter private final int code;
 
-  AdvisoryLocks() {
-    this.code = 128;
+  AdvisoryLocks(int code) {
+    this.code = code;
   }
 }
@@ -15,7 +15,28 @@
  */
 package org.factcast.store.pgsql.internal.lock;
 
+import java.util.List;
+import lombok.NonNull;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+
 public interface FactTableWriteLock {
 
+  /**
+   * serializes the insertion of facts, so that facts become visible in the order of their serials
+   * (which the following subscriptions rely on).
+   */
   void aquireExclusiveTXLock();
+
+  /**
+   * makes sure, that no facts matching any of the given conditions are published concurrently until
+   * the end of the transaction, so that the state the conditions refer to can be checked before the
+   * facts are published. Must be called before {@link #aquireExclusiveTXLock()}.
+   */
+  default void aquireTXLockFor(
+      @NonNull List<FactSpec> conditions, @NonNull List<? extends Fact> factsToPublish) {
+    if (!conditions.isEmpty()) {
+      aquireExclusiveTXLock();
+    }
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.lock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import lombok.NonNull;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Only serializes conditional publishes against publishes of facts that might match their
+ * conditions, by means of advisory locks striped by namespace and by namespace and aggregate id.
+ *
+ * <p>Publishing a fact takes shared locks on the stripes of its namespace and of all its aggIds,
+ * while a condition takes an exclusive lock on the stripe of its namespace, or (if it refers to an
+ * aggId) a shared lock on the namespace and an exclusive lock on the aggId. Types and other
+ * criteria are ignored, which is coarser, but safe.
+ *
+ * <p>Locks are always taken in the order of their keys, so that transactions cannot deadlock. If
+ * more than maxStripes would be necessary, an exclusive lock on a dedicated stripe is taken
+ * instead, that all other callers hold a shared lock on. The same goes for conditions on the
+ * namespace "*", as they might match facts of any namespace.
+ *
+ * <p>The insertion itself is still serialized by {@link #aquireExclusiveTXLock()}, but this lock is
+ * no longer held while checking the state of a conditional publish. Uniqueness of fact ids does not
+ * depend on it either, as it is enforced by constraints, also on a partitioned fact table.
+ */
+public class StripedAdvisoryWriteLock extends AdvisoryWriteLock {
+
+  static final int ALL_STRIPES = 0;
+
+  private final JdbcTemplate tpl;
+
+  private final int stripes;
+
+  private final int maxStripes;
+
+  public StripedAdvisoryWriteLock(@NonNull JdbcTemplate tpl, int stripes, int maxStripes) {
+    super(tpl);
+    if (stripes < 1) {
+      throw new IllegalArgumentException("stripes must be > 0");
+    }
+    this.tpl = tpl;
+    this.stripes = stripes;
+    this.maxStripes = maxStripes;
+  }
+
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void aquireTXLockFor(
+      @NonNull List<FactSpec> conditions, @NonNull List<? extends Fact> factsToPublish) {
+    tpl.execute(createLockStatement(stripesFor(conditions, factsToPublish)));
+  }
+
+  /** @return the stripes to lock, mapped to whether they need to be locked exclusively */
+  Map<Integer, Boolean> stripesFor(List<FactSpec> conditions, List<? extends Fact> facts) {
+    Map<Integer, Boolean> locks = new TreeMap<>();
+    boolean anyNamespace = false;
+    for (FactSpec spec : conditions) {
+      if ("*".equals(spec.ns())) {
+        anyNamespace = true;
+      } else if (spec.aggId() == null) {
+        locks.put(stripe(spec.ns()), true);
+      } else {
+        locks.putIfAbsent(stripe(spec.ns()), false);
+        locks.put(stripe(spec.ns(), spec.aggId()), true);
+      }
+    }
+    for (Fact fact : facts) {
+      locks.putIfAbsent(stripe(fact.ns()), false);
+      fact.aggIds().forEach(aggId -> locks.putIfAbsent(stripe(fact.ns(), aggId), false));
+    }
+
+    Map<Integer, Boolean> ret = new TreeMap<>();
+    if (anyNamespace || locks.size() > maxStripes) {
+      ret.put(ALL_STRIPES, true);
+    } else {
+      ret.put(ALL_STRIPES, false);
+      ret.putAll(locks);
+    }
+    return ret;
+  }
+
+  int stripe(Object... key) {
+    // 0 is reserved for ALL_STRIPES
+    return 1 + Math.floorMod(Objects.hash(key), stripes);
+  }
+
+  static String createLockStatement(Map<Integer, Boolean> stripes) {
+    StringBuilder sb = new StringBuilder("SELECT ");
+    // the select list is evaluated in order
+    stripes.forEach(
+        (stripe, exclusive) ->
+            sb.append(exclusive ? "pg_advisory_xact_lock(" : "pg_advisory_xact_lock_shared(")
+                .append(AdvisoryLocks.PUBLISH_STRIPE.code())
+                .append(',')
+                .append(stripe)
+                .append("),"));
+    sb.setLength(sb.length() - 1);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.partition;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.SchedulerLock;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Drives the migration of the fact table to a table partitioned by ser and creates new partitions
+ * ahead of the sequence afterwards.
+ *
+ * <p>Does nothing unless the partitioning changesets (see db.changelog-partitioned.yaml) have been
+ * applied. Otherwise, every run copies a number of chunks of existing facts to the partitioned
+ * table, each in its own short transaction, and swaps the tables once everything is copied. New
+ * facts are mirrored to the partitioned table by a trigger in the meantime. The former table is
+ * kept as fact_unpartitioned, to be dropped manually.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class PgFactTablePartitioning {
+
+  static final String IS_PREPARED = "SELECT to_regclass('fact_partitioning') IS NOT NULL";
+
+  static final String COPY_CHUNK = "SELECT factcast_copy_fact_chunk(?)";
+
+  static final String SWAP = "SELECT factcast_swap_fact_table()";
+
+  static final String ENSURE_PARTITIONS = "SELECT factcast_ensure_fact_partitions(?)";
+
+  @NonNull final JdbcTemplate jdbcTemplate;
+
+  @NonNull final PgMetrics pgMetrics;
+
+  final int chunkSize;
+
+  final int chunksPerRun;
+
+  final int partitionsAhead;
+
+  @Scheduled(
+      initialDelayString = "${factcast.store.pgsql.partitionMaintenanceDelay:60000}",
+      fixedDelayString = "${factcast.store.pgsql.partitionMaintenanceDelay:60000}")
+  @SchedulerLock(name = "factTablePartitioning", lockAtMostFor = 1000 * 60 * 60)
+  public void maintain() {
+    if (isPrepared()) {
+      pgMetrics.time(OP.MAINTAIN_FACT_PARTITIONS, this::migrateAndEnsurePartitions);
+    }
+  }
+
+  boolean isPrepared() {
+    return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PREPARED, Boolean.class));
+  }
+
+  void migrateAndEnsurePartitions() {
+    long remaining = copyChunks();
+    if (remaining == 0 && Boolean.TRUE.equals(jdbcTemplate.queryForObject(SWAP, Boolean.class))) {
+      log.info(
+          "Swapped fact table for its partitioned copy, fact_unpartitioned can be dropped now");
+    }
+    Integer created =
+        jdbcTemplate.queryForObject(ENSURE_PARTITIONS, Integer.class, partitionsAhead);
+    if (created != null && created > 0) {
+      log.info("Created {} new partition(s) of the fact table", created);
+    }
+  }
+
+  /** @return the number of facts left to copy */
+  long copyChunks() {
+    long remaining = 0;
+    for (int i = 0; i < chunksPerRun; i++) {
+      Long r = jdbcTemplate.queryForObject(COPY_CHUNK, Long.class, chunkSize);
+      remaining = r == null ? 0 : r;
+      if (remaining == 0) {
+        break;
+      }
+    }
+    if (remaining > 0) {
+      log.info("{} facts left to copy to the partitioned fact table", remaining);
+    }
+    return remaining;
+  }
+}
@@ -43,9 +43,7 @@ public long retrieve(UUID id) {
         // throws EmptyResultDataAccessException if is not found!
         // noinspection ConstantConditions
         return jdbcTemplate.queryForObject(
-            PgConstants.SELECT_BY_HEADER_JSON,
-            new Object[] {"{\"id\":\"" + id + "\"}"},
-            Long.class);
+            PgConstants.SELECT_SER_BY_ID, new Object[] {id}, Long.class);
       } catch (EmptyResultDataAccessException ignored) {
       }
     }
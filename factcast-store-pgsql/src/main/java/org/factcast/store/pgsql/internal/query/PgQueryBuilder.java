@@ -15,15 +15,20 @@
  */
 package org.factcast.store.pgsql.internal.query;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.factcast.core.spec.FactSpec;
+import org.factcast.core.spec.PayloadPredicate;
+import org.factcast.core.util.FactCastJson;
 import org.factcast.store.pgsql.internal.PgConstants;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 
@@ -43,32 +48,48 @@ public PgQueryBuilder(@NonNull List<FactSpec> specs) {
   }
 
   public PreparedStatementSetter createStatementSetter(@NonNull AtomicLong serial) {
+    return p -> setParameters(p, serial);
+  }
+
+  /** @return a setter to be used with {@link #createPagedSQL()} */
+  public PreparedStatementSetter createStatementSetter(@NonNull AtomicLong serial, int limit) {
     return p -> {
-      // TODO vulnerable of json injection attack
-      int count = 0;
-      for (FactSpec spec : factSpecs) {
+      int count = setParameters(p, serial);
+      p.setInt(++count, limit);
+    };
+  }
 
-        String ns = spec.ns();
-        if (ns != null && !"*".equals(ns)) {
-          p.setString(++count, "{\"ns\": \"" + spec.ns() + "\" }");
-        }
+  private int setParameters(PreparedStatement p, AtomicLong serial) throws SQLException {
+    // TODO vulnerable of json injection attack
+    int count = 0;
+    for (FactSpec spec : factSpecs) {
 
-        String type = spec.type();
-        if (type != null) {
-          p.setString(++count, "{\"type\": \"" + type + "\" }");
-        }
-        // version is intentionally not used here
-        UUID agg = spec.aggId();
-        if (agg != null) {
-          p.setString(++count, "{\"aggIds\": [\"" + agg + "\"]}");
-        }
-        Map<String, String> meta = spec.meta();
-        for (Entry<String, String> e : meta.entrySet()) {
-          p.setString(++count, "{\"meta\":{\"" + e.getKey() + "\":\"" + e.getValue() + "\" }}");
+      String ns = spec.ns();
+      if (ns != null && !"*".equals(ns)) {
+        p.setString(++count, "{\"ns\": \"" + spec.ns() + "\" }");
+      }
+
+      String type = spec.type();
+      if (type != null) {
+        p.setString(++count, "{\"type\": \"" + type + "\" }");
+      }
+      // version is intentionally not used here
+      UUID agg = spec.aggId();
+      if (agg != null) {
+        p.setString(++count, agg.toString());
+      }
+      Map<String, String> meta = spec.meta();
+      for (Entry<String, String> e : meta.entrySet()) {
+        p.setString(++count, "{\"meta\":{\"" + e.getKey() + "\":\"" + e.getValue() + "\" }}");
+      }
+      for (PayloadPredicate pp : spec.payloadPredicates()) {
+        for (Object value : pp.anyOf()) {
+          p.setString(++count, FactCastJson.writeValueAsString(pp.toContainedObject(value)));
         }
       }
-      p.setLong(++count, serial.get());
-    };
+    }
+    p.setLong(++count, serial.get());
+    return count;
   }
 
   private String createWhereClause() {
@@ -90,16 +111,26 @@ private String createWhereClause() {
 
           UUID agg = spec.aggId();
           if (agg != null) {
-            sb.append("AND ").append(PgConstants.COLUMN_HEADER).append(" @> ?::jsonb ");
+            sb.append("AND ").append(PgConstants.COLUMN_AGGIDS).append(" @> ARRAY[?::uuid] ");
           }
           Map<String, String> meta = spec.meta();
           meta.forEach(
               (key, value) ->
                   sb.append("AND ").append(PgConstants.COLUMN_HEADER).append(" @> ?::jsonb "));
+          for (PayloadPredicate pp : spec.payloadPredicates()) {
+            sb.append("AND ( ");
+            sb.append(
+                pp.anyOf().stream()
+                    .map(v -> PgConstants.COLUMN_PAYLOAD + " @> ?::jsonb")
+                    .collect(Collectors.joining(" OR ")));
+            sb.append(" ) ");
+          }
           sb.append(") ");
           predicates.add(sb.toString());
         });
     String predicatesAsString = String.join(" OR ", predicates);
+    // ser is bounded at the top level, so that a partitioned fact table is pruned to the
+    // partitions after it
     return "( " + predicatesAsString + " ) AND " + PgConstants.COLUMN_SER + ">?";
   }
 
@@ -118,6 +149,16 @@ public String createSQL() {
     return sql;
   }
 
+  /**
+   * @return the same query as {@link #createSQL()}, limited to a page of facts. Parameters are to
+   *     be set by {@link #createStatementSetter(AtomicLong, int)}.
+   */
+  public String createPagedSQL() {
+    final String sql = createSQL() + " LIMIT ?";
+    log.trace("{} createPagedSQL={}", factSpecs, sql);
+    return sql;
+  }
+
   public String createStateSQL() {
     final String sql =
         "SELECT "
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.tail;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgFact;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Bounded, in-memory window of the most recently published facts, so that following subscriptions
+ * close to the head can be served without querying the fact table for their specs.
+ *
+ * <p>The window is complete, i.e. it contains every fact with a serial in (tail, head]. It is
+ * extended by fetching all facts after the known head, starting with the head fact itself to make
+ * sure the fact table was not wiped or restored in between (publishing is serialized by the {@link
+ * org.factcast.store.pgsql.internal.lock.FactTableWriteLock}, so there are no late commits).
+ * Whenever that fails, or when more facts than the capacity were published since the last refresh,
+ * the window is reset to start at the latest fact.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PgTailBuffer {
+
+  @NonNull final JdbcTemplate jdbcTemplate;
+
+  /** maximum number of facts kept, 0 disables the buffer */
+  final int capacity;
+
+  private final Deque<BufferedFact> facts = new ArrayDeque<>();
+
+  private boolean initialized;
+
+  /** the serial after which the window is complete */
+  private long tail;
+
+  private long head;
+
+  /** id of the fact at head, null if the fact table was empty */
+  private UUID headId;
+
+  /**
+   * Refreshes the window and returns all buffered facts after the given serial, if the window
+   * covers it.
+   *
+   * @return empty, if the serial is outside of the window (or the buffer is disabled) and the
+   *     caller needs to query the database
+   */
+  public synchronized Optional<Slice> tailAfter(long serial) {
+    if (capacity < 1) {
+      return Optional.empty();
+    }
+    refresh();
+    if (serial < tail) {
+      return Optional.empty();
+    }
+    List<BufferedFact> after =
+        facts.stream().filter(f -> f.ser() > serial).collect(Collectors.toList());
+    return Optional.of(new Slice(Math.max(head, serial), after));
+  }
+
+  private void refresh() {
+    if (!initialized) {
+      reset();
+      return;
+    }
+    List<BufferedFact> rows =
+        jdbcTemplate.query(
+            PgConstants.SELECT_FACTS_FROM_SER,
+            ps -> {
+              ps.setLong(1, head);
+              ps.setInt(2, capacity + 1);
+            },
+            ROW_MAPPER);
+    int skip = 0;
+    if (headId != null) {
+      if (rows.isEmpty() || rows.get(0).ser() != head || !headId.equals(rows.get(0).fact().id())) {
+        log.debug("fact table changed underneath the tail buffer, resetting");
+        reset();
+        return;
+      }
+      skip = 1;
+    }
+    if (rows.size() > capacity) {
+      // might have missed some, start over from the latest fact
+      log.debug("more than {} facts published since last refresh, resetting", capacity);
+      reset();
+      return;
+    }
+    rows.stream().skip(skip).forEach(this::append);
+  }
+
+  private void append(BufferedFact f) {
+    facts.addLast(f);
+    head = f.ser();
+    headId = f.fact().id();
+    while (facts.size() > capacity) {
+      tail = facts.removeFirst().ser();
+    }
+  }
+
+  private void reset() {
+    facts.clear();
+    List<BufferedFact> latest = jdbcTemplate.query(PgConstants.SELECT_LATEST_FACT, ROW_MAPPER);
+    if (latest.isEmpty()) {
+      head = 0;
+      headId = null;
+    } else {
+      head = latest.get(0).ser();
+      headId = latest.get(0).fact().id();
+    }
+    tail = head;
+    initialized = true;
+  }
+
+  private static final RowMapper<BufferedFact> ROW_MAPPER =
+      (rs, i) -> new BufferedFact(rs.getLong(PgConstants.COLUMN_SER), PgFact.from(rs));
+
+  @Value
+  public static class BufferedFact {
+    long ser;
+
+    Fact fact;
+  }
+
+  @Value
+  public static class Slice {
+    /** the serial up to which the window is complete */
+    long head;
+
+    List<BufferedFact> facts;
+  }
+}
@@ -18,18 +18,22 @@
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.main.JsonSchema;
 import com.google.common.base.Stopwatch;
-import com.google.common.cache.AbstractLoadingCache;
-import com.google.common.cache.LoadingCache;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.checkerframework.checker.nullness.qual.Nullable;
 import org.factcast.store.pgsql.registry.http.ValidationConstants;
+import org.factcast.store.pgsql.registry.metrics.MetricEvent;
 import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
 import org.factcast.store.pgsql.registry.metrics.TimedOperation;
 import org.factcast.store.pgsql.registry.transformation.*;
@@ -41,6 +45,8 @@
 @RequiredArgsConstructor
 @Slf4j
 public abstract class AbstractSchemaRegistry implements SchemaRegistry {
+  static final int MAX_CACHED_SCHEMAS = 10_000;
+
   @NonNull protected final IndexFetcher indexFetcher;
 
   @NonNull protected final RegistryFileFetcher registryFileFetcher;
@@ -55,31 +61,15 @@ public abstract class AbstractSchemaRegistry implements SchemaRegistry {
 
   protected final Object mutex = new Object();
 
-  private final LoadingCache<SchemaKey, JsonSchema> cache =
-      new AbstractLoadingCache<SchemaKey, JsonSchema>() {
-
-        @Override
-        public JsonSchema get(@NonNull SchemaKey key) {
-          return schemaStore.get(key).map(createSchema()).orElse(null);
-        }
-
-        private Function<? super String, ? extends JsonSchema> createSchema() {
-          return s -> {
-            try {
-              return ValidationConstants.JSON_SCHEMA_FACTORY.getJsonSchema(
-                  ValidationConstants.JACKSON.readTree(s));
-            } catch (ProcessingException | IOException e) {
-              throw new IllegalArgumentException("Cannot create schema from : \n " + s, e);
-            }
-          };
-        }
-
-        @Override
-        public @Nullable JsonSchema getIfPresent(@NonNull Object k) {
-          SchemaKey key = (SchemaKey) k;
-          return schemaStore.get(key).map(createSchema()).orElse(null);
-        }
-      };
+  /**
+   * compiled schemas (or the lack of a schema), so that neither the store needs to be asked, nor
+   * the schema compiled for every fact validated.
+   */
+  private final Cache<SchemaKey, Optional<JsonSchema>> cache =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SCHEMAS).build();
+
+  /** counts invalidations, to detect those happening while a schema is loaded */
+  private final AtomicLong invalidations = new AtomicLong();
 
   @Override
   public void fetchInitial() {
@@ -131,6 +121,10 @@ private void updateSchemes(RegistryIndex index) {
                     } else {
                       throw e;
                     }
+                  } finally {
+                    // might have been registered or replaced by another node as well
+                    invalidations.incrementAndGet();
+                    cache.invalidate(source.toKey());
                   }
                 } catch (IOException e) {
                   throw new SchemaRegistryUnavailableException(e);
@@ -178,7 +172,41 @@ private void updateTransformations(RegistryIndex index) {
 
   @Override
   public Optional<JsonSchema> get(@NonNull SchemaKey key) {
-    return Optional.ofNullable(cache.getIfPresent(key));
+    long invalidationsBefore = invalidations.get();
+    AtomicBoolean loaded = new AtomicBoolean(false);
+    Optional<JsonSchema> schema;
+    try {
+      schema =
+          cache.get(
+              key,
+              () -> {
+                loaded.set(true);
+                return schemaStore.get(key).map(this::createSchema);
+              });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+
+    if (loaded.get()) {
+      registryMetrics.count(MetricEvent.SCHEMA_CACHE_MISS);
+      // invalidating an entry, that is still loading, has no effect
+      if (invalidations.get() != invalidationsBefore) {
+        cache.invalidate(key);
+      }
+    } else {
+      registryMetrics.count(MetricEvent.SCHEMA_CACHE_HIT);
+    }
+    return schema;
+  }
+
+  private JsonSchema createSchema(String s) {
+    try {
+      return ValidationConstants.JSON_SCHEMA_FACTORY.getJsonSchema(
+          ValidationConstants.JACKSON.readTree(s));
+    } catch (ProcessingException | IOException e) {
+      throw new IllegalArgumentException("Cannot create schema from : \n " + s, e);
+    }
   }
 
   @Override
@@ -21,6 +21,7 @@
 public enum MetricEvent {
   TRANSFORMATION_CACHE_HIT("transformation_cache_hit"),
   TRANSFORMATION_CACHE_MISS("transformation_cache_miss"),
+  TRANSFORMATION_CACHE_EVICTION("transformation_cache_eviction"),
   MISSING_TRANSFORMATION_INFO("missing_transformation_information"),
   TRANSFORMATION_CONFLICT("transformation_conflict"),
   REGISTRY_FILE_FETCH_FAILED("registry_file_fetch_failed"),
@@ -28,7 +29,9 @@ public enum MetricEvent {
   TRANSFORMATION_FAILED("transformation_failed"),
   SCHEMA_CONFLICT("schema_conflict"),
   FACT_VALIDATION_FAILED("fact_validation_failed"),
-  SCHEMA_MISSING("schema_missing");
+  SCHEMA_MISSING("schema_missing"),
+  SCHEMA_CACHE_HIT("schema_cache_hit"),
+  SCHEMA_CACHE_MISS("schema_cache_miss");
 
   @NonNull @Getter final String event;
 
@@ -18,14 +18,22 @@
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Throwables;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import org.factcast.core.Fact;
 import org.factcast.core.subscription.FactTransformerService;
 import org.factcast.core.subscription.TransformationException;
+import org.factcast.core.subscription.TransformationRequest;
 import org.factcast.core.util.FactCastJson;
 import org.factcast.store.pgsql.registry.metrics.MetricEvent;
 import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
@@ -33,9 +41,11 @@
 import org.factcast.store.pgsql.registry.transformation.chains.TransformationChain;
 import org.factcast.store.pgsql.registry.transformation.chains.TransformationChains;
 import org.factcast.store.pgsql.registry.transformation.chains.Transformer;
+import org.springframework.beans.factory.DisposableBean;
 
-@RequiredArgsConstructor
-public class FactTransformerServiceImpl implements FactTransformerService {
+public class FactTransformerServiceImpl implements FactTransformerService, DisposableBean {
+
+  static final int MIN_FACTS_TO_TRANSFORM_IN_PARALLEL = 16;
 
   @NonNull private final TransformationChains chains;
 
@@ -45,38 +55,167 @@ public class FactTransformerServiceImpl implements FactTransformerService {
 
   @NonNull private final RegistryMetrics registryMetrics;
 
+  private final ForkJoinPool pool;
+
+  public FactTransformerServiceImpl(
+      @NonNull TransformationChains chains,
+      @NonNull Transformer trans,
+      @NonNull TransformationCache cache,
+      @NonNull RegistryMetrics registryMetrics) {
+    this(chains, trans, cache, registryMetrics, Runtime.getRuntime().availableProcessors());
+  }
+
+  public FactTransformerServiceImpl(
+      @NonNull TransformationChains chains,
+      @NonNull Transformer trans,
+      @NonNull TransformationCache cache,
+      @NonNull RegistryMetrics registryMetrics,
+      int parallelism) {
+    this.chains = chains;
+    this.trans = trans;
+    this.cache = cache;
+    this.registryMetrics = registryMetrics;
+    this.pool = new ForkJoinPool(parallelism);
+  }
+
   @Override
   public Fact transformIfNecessary(Fact e, int targetVersion) throws TransformationException {
 
     int sourceVersion = e.version();
     if (sourceVersion == targetVersion || targetVersion == 0) return e;
 
-    TransformationKey key = TransformationKey.of(e.ns(), e.type());
-    TransformationChain chain = chains.get(key, sourceVersion, targetVersion);
+    TransformationChain chain = chains.get(TransformationKey.from(e), sourceVersion, targetVersion);
 
     String chainId = chain.id();
 
     Optional<Fact> cached = cache.find(e.id(), targetVersion, chainId);
     if (cached.isPresent()) return cached.get();
     else {
-      try {
-        JsonNode input = FactCastJson.readTree(e.jsonPayload());
-        JsonNode header = FactCastJson.readTree(e.jsonHeader());
-        ((ObjectNode) header).put("version", targetVersion);
-        JsonNode transformedPayload = trans.transform(chain, input);
-        Fact transformed = Fact.of(header, transformedPayload);
-        // can be optimized by passing jsonnode?
-        cache.put(transformed, chainId);
-        return transformed;
-      } catch (JsonProcessingException e1) {
-        registryMetrics.count(
-            MetricEvent.TRANSFORMATION_FAILED,
-            Tags.of(
-                Tag.of(RegistryMetrics.TAG_IDENTITY_KEY, key.toString()),
-                Tag.of("version", String.valueOf(targetVersion))));
-
-        throw new TransformationException(e1);
+      Fact transformed = transform(e, chain, targetVersion);
+      // can be optimized by passing jsonnode?
+      cache.put(transformed, chainId);
+      return transformed;
+    }
+  }
+
+  /**
+   * Looks up all facts of the batch in the cache at once, transforms the missing ones (in parallel
+   * if there are enough of them) and puts the results into the cache at once.
+   */
+  @Override
+  public List<Fact> transformIfNecessary(@NonNull List<TransformationRequest> requests)
+      throws TransformationException {
+
+    List<Fact> result = new ArrayList<>(requests.size());
+    List<Pending> pending = new ArrayList<>();
+
+    for (TransformationRequest r : requests) {
+      Fact e = r.toTransform();
+      int targetVersion = r.targetVersion();
+      if (e.version() == targetVersion || targetVersion == 0) {
+        result.add(e);
+      } else {
+        TransformationChain chain =
+            chains.get(TransformationKey.from(e), e.version(), targetVersion);
+        pending.add(
+            new Pending(
+                result.size(),
+                e,
+                chain,
+                TransformationCache.Key.of(e.id(), targetVersion, chain.id())));
+        // placeholder, replaced below
+        result.add(null);
       }
     }
+
+    if (!pending.isEmpty()) {
+      Map<TransformationCache.Key, Fact> cached =
+          cache.findAll(pending.stream().map(Pending::cacheKey).collect(Collectors.toList()));
+
+      List<Pending> toTransform = new ArrayList<>();
+      for (Pending p : pending) {
+        Fact hit = cached.get(p.cacheKey());
+        if (hit != null) {
+          result.set(p.index(), hit);
+        } else {
+          toTransform.add(p);
+        }
+      }
+
+      Map<TransformationCache.Key, Fact> transformed = transform(toTransform);
+      toTransform.forEach(p -> result.set(p.index(), transformed.get(p.cacheKey())));
+      cache.putAll(transformed);
+    }
+
+    return result;
+  }
+
+  private Map<TransformationCache.Key, Fact> transform(List<Pending> toTransform)
+      throws TransformationException {
+    try {
+      if (toTransform.size() < MIN_FACTS_TO_TRANSFORM_IN_PARALLEL) {
+        return transform(toTransform.stream());
+      } else {
+        // the pool bounds the parallelism, and keeps script execution off the common pool
+        return pool.submit(() -> transform(toTransform.parallelStream())).join();
+      }
+    } catch (RuntimeException e) {
+      for (Throwable t : Throwables.getCausalChain(e)) {
+        if (t instanceof TransformationException) {
+          throw (TransformationException) t;
+        }
+      }
+      throw e;
+    }
+  }
+
+  private Map<TransformationCache.Key, Fact> transform(Stream<Pending> toTransform) {
+    return toTransform.collect(
+        Collectors.toMap(
+            Pending::cacheKey,
+            p -> {
+              try {
+                return transform(p.toTransform(), p.chain(), p.cacheKey().version());
+              } catch (TransformationException e) {
+                throw new IllegalStateException(e);
+              }
+            },
+            // the same fact requested twice
+            (a, b) -> a));
+  }
+
+  private Fact transform(Fact e, TransformationChain chain, int targetVersion)
+      throws TransformationException {
+    try {
+      JsonNode input = FactCastJson.readTree(e.jsonPayload());
+      JsonNode header = FactCastJson.readTree(e.jsonHeader());
+      ((ObjectNode) header).put("version", targetVersion);
+      JsonNode transformedPayload = trans.transform(chain, input);
+      return Fact.of(header, transformedPayload);
+    } catch (JsonProcessingException e1) {
+      registryMetrics.count(
+          MetricEvent.TRANSFORMATION_FAILED,
+          Tags.of(
+              Tag.of(RegistryMetrics.TAG_IDENTITY_KEY, TransformationKey.from(e).toString()),
+              Tag.of("version", String.valueOf(targetVersion))));
+
+      throw new TransformationException(e1);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    pool.shutdown();
+  }
+
+  @Value
+  private static class Pending {
+    int index;
+
+    Fact toTransform;
+
+    TransformationChain chain;
+
+    TransformationCache.Key cacheKey;
   }
 }
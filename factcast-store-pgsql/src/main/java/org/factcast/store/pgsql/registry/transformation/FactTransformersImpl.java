@@ -15,6 +15,9 @@
  */
 package org.factcast.store.pgsql.registry.transformation;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.OptionalInt;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +25,7 @@
 import org.factcast.core.subscription.FactTransformerService;
 import org.factcast.core.subscription.FactTransformers;
 import org.factcast.core.subscription.TransformationException;
+import org.factcast.core.subscription.TransformationRequest;
 import org.factcast.store.pgsql.internal.RequestedVersions;
 import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
 import org.factcast.store.pgsql.registry.metrics.TimedOperation;
@@ -38,18 +42,10 @@ public class FactTransformersImpl implements FactTransformers {
   @Override
   public @NonNull Fact transformIfNecessary(@NonNull Fact e) throws TransformationException {
 
-    String ns = e.ns();
-    String type = e.type();
-
-    if (type == null
-        || requested.dontCare(ns, type)
-        || requested.exactVersion(ns, type, e.version())) {
+    if (!needsTransformation(e)) {
       return e;
     } else {
-      OptionalInt max = requested.get(ns, type).stream().mapToInt(v -> v).max();
-      int targetVersion =
-          max.orElseThrow(
-              () -> new IllegalArgumentException("No requested Version !? This must not happen."));
+      int targetVersion = targetVersion(e);
 
       return registryMetrics.timed(
           TimedOperation.TRANSFORMATION,
@@ -57,4 +53,50 @@ public class FactTransformersImpl implements FactTransformers {
           () -> trans.transformIfNecessary(e, targetVersion));
     }
   }
+
+  @Override
+  public @NonNull List<Fact> transformIfNecessary(@NonNull List<Fact> facts)
+      throws TransformationException {
+
+    List<TransformationRequest> requests = new ArrayList<>();
+    for (Fact e : facts) {
+      if (needsTransformation(e)) {
+        requests.add(TransformationRequest.of(e, targetVersion(e)));
+      }
+    }
+
+    if (requests.isEmpty()) {
+      return facts;
+    }
+
+    Iterator<Fact> transformed =
+        registryMetrics
+            .timed(
+                TimedOperation.TRANSFORMATION,
+                TransformationException.class,
+                () -> trans.transformIfNecessary(requests))
+            .iterator();
+
+    // merge back in order
+    List<Fact> result = new ArrayList<>(facts.size());
+    for (Fact e : facts) {
+      result.add(needsTransformation(e) ? transformed.next() : e);
+    }
+    return result;
+  }
+
+  private boolean needsTransformation(Fact e) {
+    String ns = e.ns();
+    String type = e.type();
+
+    return !(type == null
+        || requested.dontCare(ns, type)
+        || requested.exactVersion(ns, type, e.version()));
+  }
+
+  private int targetVersion(Fact e) {
+    OptionalInt max = requested.get(e.ns(), e.type()).stream().mapToInt(v -> v).max();
+    return max.orElseThrow(
+        () -> new IllegalArgumentException("No requested Version !? This must not happen."));
+  }
 }
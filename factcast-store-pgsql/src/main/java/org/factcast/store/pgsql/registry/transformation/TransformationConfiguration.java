@@ -24,6 +24,7 @@
 import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
 import org.factcast.store.pgsql.registry.transformation.cache.InMemTransformationCache;
 import org.factcast.store.pgsql.registry.transformation.cache.PgTransformationCache;
+import org.factcast.store.pgsql.registry.transformation.cache.TieredTransformationCache;
 import org.factcast.store.pgsql.registry.transformation.cache.TransformationCache;
 import org.factcast.store.pgsql.registry.transformation.chains.NashornTransformer;
 import org.factcast.store.pgsql.registry.transformation.chains.TransformationChains;
@@ -56,12 +57,19 @@ public TransformationCache transformationCache(
       @NonNull PgConfigurationProperties props,
       @NonNull RegistryMetrics registryMetrics,
       @Autowired(required = false) SpringLiquibase unused) {
-    if (props.isValidationEnabled() && props.isPersistentTransformationCache())
-      return new PgTransformationCache(jdbcTemplate, registryMetrics);
+    if (props.isValidationEnabled() && props.isPersistentTransformationCache()) {
+      PgTransformationCache pgCache = new PgTransformationCache(jdbcTemplate, registryMetrics);
+      if (props.getTransformationCacheL1Capacity() > 0)
+        return new TieredTransformationCache(
+            pgCache, registryMetrics, props.getTransformationCacheL1Capacity());
+      return pgCache;
+    }
 
     // otherwise
     return new InMemTransformationCache(
-        props.getInMemTransformationCacheCapacity(), registryMetrics);
+        props.getInMemTransformationCacheCapacity(),
+        props.getInMemTransformationCacheMaxBytes(),
+        registryMetrics);
   }
 
   @Bean
@@ -87,8 +95,10 @@ public FactTransformerService factTransformerService(
       TransformationChains chains,
       Transformer trans,
       TransformationCache cache,
-      RegistryMetrics registryMetrics) {
-    return new FactTransformerServiceImpl(chains, trans, cache, registryMetrics);
+      RegistryMetrics registryMetrics,
+      PgConfigurationProperties props) {
+    return new FactTransformerServiceImpl(
+        chains, trans, cache, registryMetrics, props.getTransformationParallelism());
   }
 
   @Bean
@@ -15,54 +15,91 @@
  */
 package org.factcast.store.pgsql.registry.transformation.cache;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
 import java.util.Optional;
 import java.util.UUID;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NonNull;
-import org.apache.commons.collections4.map.LRUMap;
 import org.factcast.core.Fact;
 import org.factcast.store.pgsql.registry.metrics.MetricEvent;
 import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
 import org.factcast.store.pgsql.registry.metrics.TimedOperation;
 import org.joda.time.DateTime;
 
+/**
+ * Concurrent in-memory transformation cache, bounded by the approximate number of bytes held.
+ *
+ * <p>Every entry weighs at least maxBytes/capacity, so that the number of entries is bounded by
+ * capacity as well.
+ *
+ * <p>The cache has a single segment, as Guava splits the max weight evenly across segments, which
+ * would evict big entries early and bound the cache per segment rather than as a whole. Reads do
+ * not lock anyway.
+ */
 public class InMemTransformationCache implements TransformationCache {
   private final RegistryMetrics registryMetrics;
 
   // very low, but ok for tests
   private static final int DEFAULT_CAPACITY = 1000;
 
-  private final Map<String, FactAndAccessTime> cache;
+  static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  // rough guess of key, fact and cache entry, on top of the json strings
+  static final int ENTRY_OVERHEAD_IN_BYTES = 256;
+
+  private final Cache<String, FactAndAccessTime> cache;
 
   public InMemTransformationCache(RegistryMetrics registryMetrics) {
     this(DEFAULT_CAPACITY, registryMetrics);
   }
 
   public InMemTransformationCache(int capacity, RegistryMetrics registryMetrics) {
-    cache = new LRUMap<>(Math.max(capacity, DEFAULT_CAPACITY));
+    this(capacity, DEFAULT_MAX_BYTES, registryMetrics);
+  }
+
+  public InMemTransformationCache(
+      int capacity, long maxBytes, @NonNull RegistryMetrics registryMetrics) {
     this.registryMetrics = registryMetrics;
+    long minWeight = Math.max(1, maxBytes / Math.max(capacity, DEFAULT_CAPACITY));
+    cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(maxBytes)
+            .<String, FactAndAccessTime>weigher(
+                (k, v) ->
+                    (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, weigh(k, v.fact()))))
+            .removalListener(this::onRemoval)
+            .build();
+  }
+
+  @VisibleForTesting
+  static long weigh(String key, Fact f) {
+    // chars are two bytes
+    return 2L * (key.length() + f.jsonHeader().length() + f.jsonPayload().length())
+        + ENTRY_OVERHEAD_IN_BYTES;
+  }
+
+  private void onRemoval(RemovalNotification<String, FactAndAccessTime> n) {
+    if (n.wasEvicted()) {
+      registryMetrics.count(MetricEvent.TRANSFORMATION_CACHE_EVICTION);
+    }
   }
 
   @Override
   public void put(@NonNull Fact f, @NonNull String transformationChainId) {
     String key = CacheKey.of(f, transformationChainId);
-    synchronized (cache) {
-      cache.put(key, new FactAndAccessTime(f, System.currentTimeMillis()));
-    }
+    cache.put(key, new FactAndAccessTime(f, System.currentTimeMillis()));
   }
 
   @Override
   public Optional<Fact> find(
       @NonNull UUID eventId, int version, @NonNull String transformationChainId) {
     String key = CacheKey.of(eventId, version, transformationChainId);
-    Optional<FactAndAccessTime> cached;
-    synchronized (cache) {
-      cached = Optional.ofNullable(cache.get(key));
-    }
+    Optional<FactAndAccessTime> cached = Optional.ofNullable(cache.getIfPresent(key));
     cached.ifPresent(faat -> faat.accessTime(System.currentTimeMillis()));
     registryMetrics.count(
         cached.isPresent()
@@ -76,24 +113,22 @@ public void compact(@NonNull DateTime thresholdDate) {
     registryMetrics.timed(
         TimedOperation.COMPACT_TRANSFORMATION_CACHE,
         () -> {
-          HashSet<Entry<String, FactAndAccessTime>> copyOfEntries;
-          synchronized (cache) {
-            copyOfEntries = new HashSet<>(cache.entrySet());
-          }
-
-          copyOfEntries.forEach(
-              e -> {
-                FactAndAccessTime faat = e.getValue();
-                if (thresholdDate.isAfter(faat.accessTime)) cache.remove(e.getKey());
-              });
+          // weakly consistent, so no need to copy or lock
+          cache.asMap().entrySet().removeIf(e -> thresholdDate.isAfter(e.getValue().accessTime()));
         });
   }
 
+  @VisibleForTesting
+  long size() {
+    cache.cleanUp();
+    return cache.size();
+  }
+
   @Data
   @AllArgsConstructor
   private static class FactAndAccessTime {
     Fact fact;
 
-    long accessTime;
+    volatile long accessTime;
   }
 }
@@ -15,9 +15,15 @@
  */
 package org.factcast.store.pgsql.registry.transformation.cache;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.factcast.core.Fact;
@@ -74,6 +80,72 @@ public Optional<Fact> find(
     return Optional.of(facts.get(0));
   }
 
+  @Override
+  public Map<Key, Fact> findAll(@NonNull Collection<Key> keys) {
+    Map<Key, Fact> found = lookup(keys);
+    touch(found.keySet());
+
+    for (int i = 0; i < found.size(); i++) {
+      registryMetrics.count(MetricEvent.TRANSFORMATION_CACHE_HIT);
+    }
+    for (int i = found.size(); i < new HashSet<>(keys).size(); i++) {
+      registryMetrics.count(MetricEvent.TRANSFORMATION_CACHE_MISS);
+    }
+
+    return found;
+  }
+
+  /** Bulk lookup, neither counting metrics nor updating last_access. */
+  Map<Key, Fact> lookup(@NonNull Collection<Key> keys) {
+    if (keys.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, Key> keysByCacheKey = new HashMap<>();
+    keys.forEach(k -> keysByCacheKey.put(CacheKey.of(k), k));
+    String[] cacheKeys = keysByCacheKey.keySet().toArray(new String[0]);
+
+    Map<Key, Fact> found = new HashMap<>();
+    jdbcTemplate.query(
+        "SELECT cache_key, header, payload FROM transformationcache WHERE cache_key = ANY(?)",
+        ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", cacheKeys)),
+        rs -> {
+          found.put(
+              keysByCacheKey.get(rs.getString("cache_key")),
+              Fact.of(rs.getString("header"), rs.getString("payload")));
+        });
+    return found;
+  }
+
+  /** Updates last_access of the given entries with one statement. */
+  void touch(@NonNull Collection<Key> keys) {
+    if (!keys.isEmpty()) {
+      String[] cacheKeys = keys.stream().map(CacheKey::of).toArray(String[]::new);
+      jdbcTemplate.update(
+          "UPDATE transformationcache SET last_access=now() WHERE cache_key = ANY(?)",
+          ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", cacheKeys)));
+    }
+  }
+
+  @Override
+  public void putAll(@NonNull Map<Key, Fact> facts) {
+    if (facts.isEmpty()) {
+      return;
+    }
+
+    // concurrent catchups might race for the same facts, the first one wins
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO transformationcache (cache_key, header, payload) VALUES (?, ?, ?) "
+            + "ON CONFLICT DO NOTHING",
+        facts.entrySet().stream()
+            .map(
+                e ->
+                    new Object[] {
+                      CacheKey.of(e.getKey()), e.getValue().jsonHeader(), e.getValue().jsonPayload()
+                    })
+            .collect(Collectors.toList()));
+  }
+
   @Override
   public void compact(@NonNull DateTime thresholdDate) {
     registryMetrics.timed(
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.registry.transformation.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.registry.metrics.MetricEvent;
+import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Keeps the most recently used transformations in memory (L1), in front of the persistent
+ * PgTransformationCache (L2).
+ *
+ * <p>Rather than updating last_access for every hit, accessed entries are collected and touched in
+ * one statement on a fixed delay, as well as before compaction and on shutdown.
+ */
+@Slf4j
+public class TieredTransformationCache implements TransformationCache, DisposableBean {
+
+  private final PgTransformationCache l2;
+
+  private final RegistryMetrics registryMetrics;
+
+  private final Cache<Key, Fact> l1;
+
+  private final Set<Key> accessed = ConcurrentHashMap.newKeySet();
+
+  public TieredTransformationCache(
+      @NonNull PgTransformationCache l2, @NonNull RegistryMetrics registryMetrics, int capacity) {
+    this.l2 = l2;
+    this.registryMetrics = registryMetrics;
+    this.l1 = CacheBuilder.newBuilder().maximumSize(capacity).build();
+  }
+
+  @Override
+  public void put(@NonNull Fact f, @NonNull String transformationChainId) {
+    putAll(Collections.singletonMap(Key.of(f, transformationChainId), f));
+  }
+
+  @Override
+  public void putAll(@NonNull Map<Key, Fact> facts) {
+    l2.putAll(facts);
+    l1.putAll(facts);
+  }
+
+  @Override
+  public Optional<Fact> find(
+      @NonNull UUID eventId, int version, @NonNull String transformationChainId) {
+    Key key = Key.of(eventId, version, transformationChainId);
+    return Optional.ofNullable(findAll(Collections.singletonList(key)).get(key));
+  }
+
+  @Override
+  public Map<Key, Fact> findAll(@NonNull Collection<Key> keys) {
+    Set<Key> requested = new HashSet<>(keys);
+    Map<Key, Fact> found = new HashMap<>(l1.getAllPresent(requested));
+
+    if (found.size() < requested.size()) {
+      List<Key> missing = new ArrayList<>(requested.size() - found.size());
+      requested.forEach(
+          k -> {
+            if (!found.containsKey(k)) missing.add(k);
+          });
+
+      Map<Key, Fact> fromL2 = l2.lookup(missing);
+      l1.putAll(fromL2);
+      found.putAll(fromL2);
+    }
+
+    accessed.addAll(found.keySet());
+
+    for (int i = 0; i < found.size(); i++) {
+      registryMetrics.count(MetricEvent.TRANSFORMATION_CACHE_HIT);
+    }
+    for (int i = found.size(); i < requested.size(); i++) {
+      registryMetrics.count(MetricEvent.TRANSFORMATION_CACHE_MISS);
+    }
+
+    return found;
+  }
+
+  @Scheduled(
+      initialDelayString = "${factcast.store.pgsql.transformationCacheAccessFlushDelay:10000}",
+      fixedDelayString = "${factcast.store.pgsql.transformationCacheAccessFlushDelay:10000}")
+  public void flushAccessTimes() {
+    if (!accessed.isEmpty()) {
+      List<Key> keys = new ArrayList<>(accessed);
+      // keys accessed concurrently stay for the next flush
+      accessed.removeAll(keys);
+      l2.touch(keys);
+      log.trace("Updated last_access of {} transformation cache entries", keys.size());
+    }
+  }
+
+  @Override
+  public void compact(@NonNull DateTime thresholdDate) {
+    flushAccessTimes();
+    l2.compact(thresholdDate);
+    // as compaction is rare, rather re-warm L1 than tracking access times in memory
+    l1.invalidateAll();
+  }
+
+  @Override
+  public void destroy() {
+    flushAccessTimes();
+  }
+
+  @VisibleForTesting
+  long l1Size() {
+    return l1.size();
+  }
+
+  @VisibleForTesting
+  int pendingAccesses() {
+    return accessed.size();
+  }
+}
@@ -15,8 +15,13 @@
  */
 package org.factcast.store.pgsql.registry.transformation.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import lombok.NonNull;
+import lombok.Value;
 import org.factcast.core.Fact;
 import org.joda.time.DateTime;
 
@@ -29,4 +34,30 @@ public interface TransformationCache {
   Optional<Fact> find(UUID eventId, int version, String transformationChainId);
 
   void compact(DateTime thresholdDate);
+
+  /** Bulk variant of {@link #find(UUID, int, String)}, only contains the keys found. */
+  default Map<Key, Fact> findAll(@NonNull Collection<Key> keys) {
+    Map<Key, Fact> found = new HashMap<>();
+    keys.forEach(
+        k -> find(k.id(), k.version(), k.transformationChainId()).ifPresent(f -> found.put(k, f)));
+    return found;
+  }
+
+  /** Bulk variant of {@link #put(Fact, String)}. */
+  default void putAll(@NonNull Map<Key, Fact> facts) {
+    facts.forEach((k, f) -> put(f, k.transformationChainId()));
+  }
+
+  @Value(staticConstructor = "of")
+  class Key {
+    @NonNull UUID id;
+
+    int version;
+
+    @NonNull String transformationChainId;
+
+    public static Key of(@NonNull Fact transformed, @NonNull String transformationChainId) {
+      return of(transformed.id(), transformed.version(), transformationChainId);
+    }
+  }
 }
@@ -16,25 +16,51 @@
 package org.factcast.store.pgsql.registry.transformation.chains;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Deque;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.script.Compilable;
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
-import org.apache.commons.collections4.map.LRUMap;
+import lombok.NonNull;
 import org.factcast.core.subscription.TransformationException;
 import org.factcast.core.util.FactCastJson;
 import org.factcast.store.pgsql.registry.transformation.Transformation;
 
+/**
+ * Transformer executing the transformation code on Nashorn.
+ *
+ * <p>A Nashorn engine must not be used by more than one thread at a time, so every script gets a
+ * small pool of warm engines that are borrowed for the duration of a single transformation.
+ *
+ * <p>The payload is handed over as a Java Map, rather than being parsed within the engine, as
+ * JavaScript numbers would lose precision for big integers and change existing results.
+ */
 public class NashornTransformer implements Transformer {
 
   private static final int ENGINE_CACHE_CAPACITY = 128;
 
-  private static final ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
+  private static final NashornScriptEngineFactory engineFactory = new NashornScriptEngineFactory();
+
+  private final Cache<String, EnginePool> warmEngines =
+      CacheBuilder.newBuilder().maximumSize(ENGINE_CACHE_CAPACITY).build();
+
+  private final int maxIdleEnginesPerScript;
 
-  private static final LRUMap<String, Invocable> warmEngines = new LRUMap<>(ENGINE_CACHE_CAPACITY);
+  public NashornTransformer() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public NashornTransformer(int maxIdleEnginesPerScript) {
+    this.maxIdleEnginesPerScript = maxIdleEnginesPerScript;
+  }
 
   @Override
   public JsonNode transform(Transformation t, JsonNode input) throws TransformationException {
@@ -43,27 +69,8 @@ public JsonNode transform(Transformation t, JsonNode input) throws Transformatio
       return input;
     } else {
       String js = t.transformationCode().get();
-
-      Invocable invocable = warmEngines.get(js);
-      if (invocable == null) {
-        ScriptEngine engine = null;
-        synchronized (scriptEngineManager) {
-          // no guarantee is found anywhere, that creating a
-          // scriptEngine was
-          // supposed to be threadsafe, so...
-          engine =
-              new NashornScriptEngineFactory().getScriptEngine(ClassLoader.getSystemClassLoader());
-        }
-        try {
-          Compilable compilable = (Compilable) engine;
-          compilable.compile(js).eval();
-          invocable = (Invocable) engine;
-          warmEngines.put(js, invocable);
-        } catch (ScriptException e) {
-          throw new TransformationException(e);
-        }
-      }
-
+      EnginePool pool = pool(js);
+      Invocable invocable = pool.borrow();
       try {
         @SuppressWarnings("unchecked")
         Map<String, Object> jsonAsMap = FactCastJson.convertValue(input, Map.class);
@@ -71,6 +78,70 @@ public JsonNode transform(Transformation t, JsonNode input) throws Transformatio
         return FactCastJson.toJsonNode(jsonAsMap);
       } catch (NoSuchMethodException | ScriptException e) {
         throw new TransformationException(e);
+      } finally {
+        pool.release(invocable);
+      }
+    }
+  }
+
+  private EnginePool pool(String js) throws TransformationException {
+    try {
+      return warmEngines.get(js, () -> new EnginePool(js));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof TransformationException) {
+        throw (TransformationException) e.getCause();
+      }
+      throw new TransformationException((Exception) e.getCause());
+    }
+  }
+
+  @VisibleForTesting
+  int idleEngines(@NonNull String js) {
+    EnginePool pool = warmEngines.getIfPresent(js);
+    return pool == null ? 0 : pool.idle.get();
+  }
+
+  private class EnginePool {
+
+    private final String js;
+
+    private final Deque<Invocable> engines = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger idle = new AtomicInteger();
+
+    EnginePool(String js) throws TransformationException {
+      this.js = js;
+      // compile eagerly, so that broken code fails before it is cached
+      engines.push(createEngine());
+      idle.incrementAndGet();
+    }
+
+    Invocable borrow() throws TransformationException {
+      Invocable invocable = engines.poll();
+      if (invocable == null) {
+        return createEngine();
+      }
+      idle.decrementAndGet();
+      return invocable;
+    }
+
+    void release(Invocable invocable) {
+      // engines exceeding the limit are left to the GC
+      if (idle.incrementAndGet() <= maxIdleEnginesPerScript) {
+        engines.push(invocable);
+      } else {
+        idle.decrementAndGet();
+      }
+    }
+
+    private Invocable createEngine() throws TransformationException {
+      ScriptEngine engine = engineFactory.getScriptEngine(ClassLoader.getSystemClassLoader());
+      try {
+        Compilable compilable = (Compilable) engine;
+        compilable.compile(js).eval();
+        return (Invocable) engine;
+      } catch (ScriptException e) {
+        throw new TransformationException(e);
       }
     }
   }
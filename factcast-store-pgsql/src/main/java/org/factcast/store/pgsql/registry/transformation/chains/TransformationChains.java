@@ -15,6 +15,8 @@
  */
 package org.factcast.store.pgsql.registry.transformation.chains;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import es.usc.citius.hipster.algorithm.AStar;
 import es.usc.citius.hipster.algorithm.Algorithm;
@@ -26,9 +28,12 @@
 import es.usc.citius.hipster.model.impl.WeightedNode;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.Value;
@@ -39,6 +44,13 @@
 import org.factcast.store.pgsql.registry.transformation.TransformationKey;
 import org.factcast.store.pgsql.registry.transformation.TransformationStoreListener;
 
+/**
+ * Creates the chains of transformations necessary to get from one version of a fact to another.
+ *
+ * <p>Whenever the transformations for a key change, the chains between all known versions of that
+ * key are precomputed and published as an immutable map, so that lookups neither lock nor search.
+ * Precomputing is done outside of that map, so that it never blocks lookups of other keys.
+ */
 public class TransformationChains implements TransformationStoreListener {
 
   private static final double BASE_COST = 1_000_000d;
@@ -47,8 +59,11 @@ public class TransformationChains implements TransformationStoreListener {
 
   private final RegistryMetrics registryMetrics;
 
-  private final Map<TransformationKey, Map<VersionPath, TransformationChain>> cache =
-      new HashMap<>();
+  private final ConcurrentHashMap<TransformationKey, Map<VersionPath, TransformationChain>> cache =
+      new ConcurrentHashMap<>();
+
+  // serializes precomputations per key, so that a stale one cannot overwrite a newer one
+  private final ConcurrentHashMap<TransformationKey, Object> locks = new ConcurrentHashMap<>();
 
   @Value
   static class VersionPath {
@@ -79,27 +94,54 @@ public static Edge from(Transformation t) {
   public TransformationChain get(TransformationKey key, int from, int to)
       throws MissingTransformationInformation {
 
-    final Map<VersionPath, TransformationChain> chainsPerKey;
+    Map<VersionPath, TransformationChain> chainsPerKey = cache.get(key);
+    if (chainsPerKey == null) {
+      // not notified about this key (yet), for instance because the transformations were stored
+      // before startup
+      synchronized (lock(key)) {
+        chainsPerKey = cache.get(key);
+        if (chainsPerKey == null) {
+          chainsPerKey = precompute(key);
+          cache.put(key, chainsPerKey);
+        }
+      }
+    }
 
-    synchronized (cache) {
-      // sync is necessary, because we don't want to end up with two
-      // different maps we're locking the whole cache, but creating a
-      // hashmap should not take too much time
-      chainsPerKey = cache.computeIfAbsent(key, k -> new HashMap<>());
+    TransformationChain chain = chainsPerKey.get(new VersionPath(from, to));
+    if (chain != null) {
+      return chain;
     }
-    synchronized (chainsPerKey) {
-      // we're locking the map for this particular key. contention should
-      // be limited and the gain of not creating unnecessary chains should
-      // be on the plus side.
-      return chainsPerKey.computeIfAbsent(new VersionPath(from, to), p -> build(key, from, to));
+
+    // either unreachable, or the registry changed and we're not notified yet
+    return build(key, from, to);
+  }
+
+  @VisibleForTesting
+  Map<VersionPath, TransformationChain> precompute(TransformationKey key) {
+    List<Transformation> all = registry.get(key);
+    HipsterDirectedGraph<Integer, Edge> g = graph(all);
+
+    Set<Integer> versions = new TreeSet<>();
+    all.forEach(
+        t -> {
+          versions.add(t.fromVersion());
+          versions.add(t.toVersion());
+        });
+
+    ImmutableMap.Builder<VersionPath, TransformationChain> chains = ImmutableMap.builder();
+    for (int from : versions) {
+      for (int to : versions) {
+        if (from != to) {
+          search(key, g, from, to).ifPresent(c -> chains.put(new VersionPath(from, to), c));
+        }
+      }
     }
+    return chains.build();
   }
 
-  @SuppressWarnings("unchecked")
   private TransformationChain build(TransformationKey key, int from, int to)
       throws MissingTransformationInformation {
 
-    GraphBuilder<Integer, Edge> builder = GraphBuilder.create();
     List<Transformation> all = registry.get(key);
     if (all.isEmpty()) {
       registryMetrics.count(
@@ -112,11 +154,32 @@ private TransformationChain build(TransformationKey key, int from, int to)
       throw new MissingTransformationInformation("No Transformations for " + key);
     }
 
-    // populate graph
+    Optional<TransformationChain> chain = search(key, graph(all), from, to);
+    if (!chain.isPresent()) {
+      registryMetrics.count(
+          MetricEvent.MISSING_TRANSFORMATION_INFO,
+          Tags.of(
+              Tag.of(RegistryMetrics.TAG_IDENTITY_KEY, key.toString()),
+              Tag.of("from", String.valueOf(from)),
+              Tag.of("to", String.valueOf(to))));
+
+      throw new MissingTransformationInformation(
+          "Cannot reach version " + to + " from version " + from + " for " + key);
+    }
+    return chain.get();
+  }
+
+  private static HipsterDirectedGraph<Integer, Edge> graph(List<Transformation> all) {
+    GraphBuilder<Integer, Edge> builder = GraphBuilder.create();
     for (Transformation t : all) {
       builder.connect(t.fromVersion()).to(t.toVersion()).withEdge(Edge.from(t));
     }
-    HipsterDirectedGraph<Integer, Edge> g = builder.createDirectedGraph();
+    return builder.createDirectedGraph();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Optional<TransformationChain> search(
+      TransformationKey key, HipsterDirectedGraph<Integer, Edge> g, int from, int to) {
 
     // create problem
     AStar<Edge, Integer, Double, WeightedNode<Edge, Integer, Double>> problem =
@@ -135,18 +198,10 @@ private TransformationChain build(TransformationKey key, int from, int to)
     if (path.isEmpty()
         || Iterables.getLast(path).toVersion() != to
         || Iterables.getFirst(path, null).fromVersion() != from) {
-      registryMetrics.count(
-          MetricEvent.MISSING_TRANSFORMATION_INFO,
-          Tags.of(
-              Tag.of(RegistryMetrics.TAG_IDENTITY_KEY, key.toString()),
-              Tag.of("from", String.valueOf(from)),
-              Tag.of("to", String.valueOf(to))));
-
-      throw new MissingTransformationInformation(
-          "Cannot reach version " + to + " from version " + from + " for " + key);
+      return Optional.empty();
     }
     List<Transformation> steps = map(path, Edge::transformation);
-    return TransformationChain.of(key, steps, r.getOptimalPaths().get(0).toString());
+    return Optional.of(TransformationChain.of(key, steps, r.getOptimalPaths().get(0).toString()));
 
     // sad: in retrospective, Hipster might not have been the greatest
     // choice due to lack of proper Generics.
@@ -156,9 +211,14 @@ private static <N, E> List<E> map(List<N> list, Function<N, E> f) {
     return list.stream().map(f).collect(Collectors.toList());
   }
 
+  private Object lock(TransformationKey key) {
+    return locks.computeIfAbsent(key, k -> new Object());
+  }
+
   @Override
   public void notifyFor(TransformationKey key) {
-    // invalidate cache for key
-    cache.remove(key);
+    synchronized (lock(key)) {
+      cache.put(key, precompute(key));
+    }
   }
 }
@@ -15,24 +15,45 @@
  */
 package org.factcast.store.pgsql.registry.validation;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
-import lombok.RequiredArgsConstructor;
+import java.util.stream.Stream;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.factcast.core.Fact;
 import org.factcast.core.FactValidationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 
+/**
+ * Validates facts before they are published. Runs before the transaction is started (and the
+ * publish lock is taken), and validates bigger batches in parallel.
+ */
 @Aspect
 @Slf4j
-@RequiredArgsConstructor
-public class FactValidationAspect {
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class FactValidationAspect implements DisposableBean {
+
+  static final int MIN_FACTS_TO_VALIDATE_IN_PARALLEL = 16;
 
   private final FactValidator validator;
 
+  private final ForkJoinPool pool;
+
+  public FactValidationAspect(@NonNull FactValidator validator) {
+    this(validator, Runtime.getRuntime().availableProcessors());
+  }
+
+  public FactValidationAspect(@NonNull FactValidator validator, int parallelism) {
+    this.validator = validator;
+    this.pool = new ForkJoinPool(parallelism);
+  }
+
   @SuppressWarnings("unchecked")
   @Around("execution(public void org.factcast.core.store.FactStore.publish(*))")
   public Object interceptPublish(ProceedingJoinPoint joinPoint) throws Throwable {
@@ -47,15 +68,23 @@ public Object interceptPublish(ProceedingJoinPoint joinPoint) throws Throwable {
 
   private void validate(List<? extends Fact> facts) {
 
-    List<FactValidationError> errors = new LinkedList<>();
-
-    facts.forEach(f -> errors.addAll(validator.validate(f)));
+    List<FactValidationError> errors;
+    if (facts.size() < MIN_FACTS_TO_VALIDATE_IN_PARALLEL) {
+      errors = collectErrors(facts.stream());
+    } else {
+      // the pool bounds the parallelism, and keeps validation off the common pool
+      errors = pool.submit(() -> collectErrors(facts.parallelStream())).join();
+    }
 
     if (!errors.isEmpty())
       throw new FactValidationException(
           errors.stream().map(FactValidationError::toString).collect(Collectors.toList()));
   }
 
+  private List<FactValidationError> collectErrors(Stream<? extends Fact> facts) {
+    return facts.flatMap(f -> validator.validate(f).stream()).collect(Collectors.toList());
+  }
+
   @SuppressWarnings("unchecked")
   @Around("execution(public boolean org.factcast.core.store.FactStore.publishIfUnchanged(..))")
   public Object interceptPublishIfUnchanged(ProceedingJoinPoint joinPoint) throws Throwable {
@@ -66,4 +95,9 @@ public Object interceptPublishIfUnchanged(ProceedingJoinPoint joinPoint) throws
 
     return joinPoint.proceed();
   }
+
+  @Override
+  public void destroy() {
+    pool.shutdown();
+  }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.registry.validation;
+
+import java.util.List;
+import java.util.Optional;
+import lombok.NonNull;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.registry.validation.schema.SchemaKey;
+
+/**
+ * Validates the payload of a fact against the schema registered for it. Implementations are
+ * registered as beans and selected by their bean name (see
+ * PgConfigurationProperties.factValidationEngine). They must be thread-safe.
+ */
+public interface FactValidationEngine {
+
+  /**
+   * @return empty, if there is no schema for the given key, otherwise the errors found (which is an
+   *     empty list for a valid fact)
+   */
+  Optional<List<FactValidationError>> validate(@NonNull SchemaKey key, @NonNull Fact fact);
+}
@@ -15,23 +15,16 @@
  */
 package org.factcast.store.pgsql.registry.validation;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.github.fge.jsonschema.core.exceptions.ProcessingException;
-import com.github.fge.jsonschema.core.report.ProcessingReport;
-import com.github.fge.jsonschema.main.JsonSchema;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import io.micrometer.core.instrument.Tags;
-import java.io.IOException;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import org.factcast.core.Fact;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.registry.SchemaRegistry;
-import org.factcast.store.pgsql.registry.http.ValidationConstants;
 import org.factcast.store.pgsql.registry.metrics.MetricEvent;
 import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
 import org.factcast.store.pgsql.registry.validation.schema.SchemaKey;
@@ -43,10 +36,15 @@ public class FactValidator {
 
   private final PgConfigurationProperties props;
 
-  private final SchemaRegistry registry;
+  private final FactValidationEngine engine;
 
   private final RegistryMetrics registryMetrics;
 
+  public FactValidator(
+      PgConfigurationProperties props, SchemaRegistry registry, RegistryMetrics registryMetrics) {
+    this(props, new FgeFactValidationEngine(registry), registryMetrics);
+  }
+
   public List<FactValidationError> validate(Fact fact) {
     if (props.isValidationEnabled())
       if (isValidateable(fact)) {
@@ -68,33 +66,14 @@ public List<FactValidationError> validate(Fact fact) {
 
   private List<FactValidationError> doValidate(Fact fact) {
     SchemaKey key = SchemaKey.from(fact);
-    Optional<JsonSchema> optSchema = registry.get(key);
-    if (optSchema.isPresent()) {
-
-      JsonSchema jsonSchema = optSchema.get();
-      ProcessingReport report;
-      try {
-        JsonNode toValidate = ValidationConstants.JACKSON.readTree(fact.jsonPayload());
-        report = jsonSchema.validate(toValidate);
-        if (report.isSuccess()) return VALIDATION_OK;
-        else {
-          List<FactValidationError> ret = new LinkedList<>();
-
-          report.forEach(
-              m -> {
-                ret.add(new FactValidationError(m.getLogLevel().toString(), m.getMessage()));
-              });
-
-          registryMetrics.count(
-              MetricEvent.FACT_VALIDATION_FAILED,
-              Tags.of(RegistryMetrics.TAG_IDENTITY_KEY, key.toString()));
-
-          return ret;
-        } // validateJson(Node) ends
-      } catch (IOException | ProcessingException e) {
-        return Lists.newArrayList(
-            new FactValidationError("Fact is not parseable. " + e.getMessage()));
+    Optional<List<FactValidationError>> errors = engine.validate(key, fact);
+    if (errors.isPresent()) {
+      if (!errors.get().isEmpty()) {
+        registryMetrics.count(
+            MetricEvent.FACT_VALIDATION_FAILED,
+            Tags.of(RegistryMetrics.TAG_IDENTITY_KEY, key.toString()));
       }
+      return errors.get();
     } else {
       if (!props.isAllowUnvalidatedPublish()) {
         registryMetrics.count(
@@ -15,6 +15,7 @@
  */
 package org.factcast.store.pgsql.registry.validation;
 
+import java.util.Map;
 import liquibase.integration.spring.SpringLiquibase;
 import lombok.NonNull;
 import org.factcast.store.pgsql.PgConfigurationProperties;
@@ -44,19 +45,33 @@ public SchemaStore schemaStore(
     return new InMemSchemaStoreImpl(registryMetrics);
   }
 
+  @Bean(FgeFactValidationEngine.NAME)
+  public FactValidationEngine fgeFactValidationEngine(SchemaRegistry registry) {
+    return new FgeFactValidationEngine(registry);
+  }
+
   @Bean
   public FactValidator factValidator(
       PgConfigurationProperties props,
-      SchemaRegistry registry,
+      Map<String, FactValidationEngine> engines,
       @NonNull RegistryMetrics registryMetrics) {
-    if (props.isValidationEnabled()) return new FactValidator(props, registry, registryMetrics);
-    else return null;
+    if (props.isValidationEnabled()) {
+      FactValidationEngine engine = engines.get(props.getFactValidationEngine());
+      if (engine == null) {
+        throw new IllegalArgumentException(
+            "Unknown FactValidationEngine '"
+                + props.getFactValidationEngine()
+                + "', available: "
+                + engines.keySet());
+      }
+      return new FactValidator(props, engine, registryMetrics);
+    } else return null;
   }
 
   @Bean
   @ConditionalOnProperty(name = "factcast.store.pgsql.schemaRegistryUrl")
   public FactValidationAspect factValidationAspect(
       PgConfigurationProperties props, FactValidator v) {
-    return new FactValidationAspect(v);
+    return new FactValidationAspect(v, props.getFactValidationParallelism());
   }
 }
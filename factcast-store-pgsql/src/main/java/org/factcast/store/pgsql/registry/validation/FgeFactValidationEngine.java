@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.registry.validation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.registry.SchemaRegistry;
+import org.factcast.store.pgsql.registry.http.ValidationConstants;
+import org.factcast.store.pgsql.registry.validation.schema.SchemaKey;
+
+/** validates using the schemas compiled by the registry with fge json-schema-validator */
+@RequiredArgsConstructor
+public class FgeFactValidationEngine implements FactValidationEngine {
+
+  public static final String NAME = "fgeFactValidationEngine";
+
+  @NonNull private final SchemaRegistry registry;
+
+  @Override
+  public Optional<List<FactValidationError>> validate(@NonNull SchemaKey key, @NonNull Fact fact) {
+    return registry.get(key).map(schema -> validate(schema, fact));
+  }
+
+  private List<FactValidationError> validate(JsonSchema jsonSchema, Fact fact) {
+    try {
+      JsonNode toValidate = ValidationConstants.JACKSON.readTree(fact.jsonPayload());
+      ProcessingReport report = jsonSchema.validate(toValidate);
+      if (report.isSuccess()) {
+        return Collections.emptyList();
+      }
+
+      List<FactValidationError> ret = new LinkedList<>();
+      report.forEach(
+          m -> ret.add(new FactValidationError(m.getLogLevel().toString(), m.getMessage())));
+      return ret;
+    } catch (IOException | ProcessingException e) {
+      return Lists.newArrayList(
+          new FactValidationError("Fact is not parseable. " + e.getMessage()));
+    }
+  }
+}
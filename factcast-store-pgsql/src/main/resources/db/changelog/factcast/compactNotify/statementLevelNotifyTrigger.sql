@@ -0,0 +1,30 @@
+--liquibase formatted sql
+
+--- replaces the per-row notification (carrying ser and the full header) by one notification per
+--- statement and distinct ns/type. The payload is identical for all statements of a transaction
+--- publishing the same ns/type (ts is the start of the transaction), so that postgres delivers it
+--- only once per transaction.
+---
+--- ser and aggIds are left out on purpose: the serial would make every payload unique, and the
+--- aggIds of a large publish exceed the 8000 bytes a payload may have. Without them, listeners can
+--- only skip queries by ns/type, which lets through more, but never less.
+
+--changeset usr:compactNotify-1 splitStatements:false
+CREATE OR REPLACE FUNCTION notifyFactInsertStatement() RETURNS trigger AS $$
+DECLARE
+  r RECORD;
+BEGIN
+  FOR r IN SELECT DISTINCT header->>'ns' AS ns, header->>'type' AS type FROM inserted LOOP
+    PERFORM pg_notify('fact_insert', json_build_object(
+      'ns', r.ns,
+      'type', r.type,
+      'ts', (EXTRACT(EPOCH FROM now()) * 1000)::bigint
+    )::text);
+  END LOOP;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:compactNotify-2
+DROP TRIGGER IF EXISTS tr_deferred_fact_insert ON fact;
+CREATE TRIGGER tr_fact_insert_notify AFTER INSERT ON fact REFERENCING NEW TABLE AS inserted FOR EACH STATEMENT EXECUTE PROCEDURE notifyFactInsertStatement();
@@ -0,0 +1,66 @@
+--liquibase formatted sql
+
+--- materializes id and aggIds from the header into real columns, so that point lookups by id
+--- and lookups by aggregate id can use btree/array indexes rather than the (big) jsonb_path_ops
+--- GIN index on header.
+---
+--- generated columns are not available on PG11, so the columns are filled by a trigger.
+
+--changeset usr:factIdColumns-1
+ALTER TABLE fact ADD COLUMN IF NOT EXISTS id UUID;
+ALTER TABLE fact ADD COLUMN IF NOT EXISTS aggids UUID[];
+
+--changeset usr:factIdColumns-2 splitStatements:false
+CREATE OR REPLACE FUNCTION extractFactIds() RETURNS trigger AS $$
+BEGIN
+  NEW.id := (NEW.header->>'id')::uuid;
+  IF jsonb_typeof(NEW.header->'aggIds') = 'array' THEN
+    NEW.aggids := ARRAY(SELECT jsonb_array_elements_text(NEW.header->'aggIds')::uuid);
+  ELSE
+    NEW.aggids := '{}';
+  END IF;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:factIdColumns-3
+DROP TRIGGER IF EXISTS tr_fact_extract_ids ON fact;
+CREATE TRIGGER tr_fact_extract_ids BEFORE INSERT ON fact FOR EACH ROW EXECUTE PROCEDURE extractFactIds();
+
+--- backfill existing facts in chunks of ser, committing after each chunk, so that the table is
+--- neither locked nor rewritten within one huge transaction. Facts inserted meanwhile are covered
+--- by the trigger above.
+
+--changeset usr:factIdColumns-4 runInTransaction:false splitStatements:false
+DO $$
+DECLARE
+  lower_ser BIGINT;
+  upper_ser BIGINT;
+BEGIN
+  SELECT COALESCE(min(ser), 0), COALESCE(max(ser), 0) INTO lower_ser, upper_ser FROM fact;
+  WHILE lower_ser <= upper_ser LOOP
+    UPDATE fact SET
+      id = (header->>'id')::uuid,
+      aggids = CASE WHEN jsonb_typeof(header->'aggIds') = 'array'
+        THEN ARRAY(SELECT jsonb_array_elements_text(header->'aggIds')::uuid)
+        ELSE '{}' END
+    WHERE ser >= lower_ser AND ser < lower_ser + 10000 AND id IS NULL;
+    COMMIT;
+    lower_ser := lower_ser + 10000;
+  END LOOP;
+END;
+$$;
+
+--- indexes are built concurrently, so publishing can go on meanwhile. If building one fails, an
+--- invalid index is left behind that needs to be dropped manually before the changeset is retried.
+
+--changeset usr:factIdColumns-5 runInTransaction:false
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS idx_fact_id ON fact(id);
+
+--changeset usr:factIdColumns-6 runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_fact_aggids ON fact USING GIN(aggids);
+
+--- uniqueness of the id is now guaranteed by idx_fact_id
+
+--changeset usr:factIdColumns-7 runInTransaction:false
+DROP INDEX CONCURRENTLY IF EXISTS idx_fact_unique_id;
@@ -0,0 +1,199 @@
+--liquibase formatted sql
+
+--- opt-in: range partitioning of fact by ser (see db.changelog-partitioned.yaml).
+---
+--- The existing table is migrated online: a partitioned copy (fact_partitioned) is created and
+--- kept up to date by a trigger on fact, while the existing facts are copied over in chunks by
+--- factcast_copy_fact_chunk(). Once everything is copied, factcast_swap_fact_table() replaces fact
+--- by the partitioned table within a short exclusive lock. Both are driven by the store (see
+--- PgFactTablePartitioning), as is the creation of new partitions ahead of the sequence.
+---
+--- Several partitions are kept ready ahead of the current one, to leave enough room for bursts
+--- between two maintenance runs. Should the sequence pass them anyway, facts go to the default
+--- partition (fact_pdefault), and are moved out of it when their partition is created.
+---
+--- The former table is kept as fact_unpartitioned after the swap, so that it can be checked
+--- against the new one. It is not used anymore and should be dropped manually
+--- (DROP TABLE fact_unpartitioned) to free its storage.
+---
+--- The unique index on id cannot be kept on the partitioned table (it would need to include ser),
+--- so the trigger on the partitions registers every id in fact_id, whose primary key enforces
+--- uniqueness independently of how publishing is locked.
+---
+--- every changeset contains exactly one statement.
+
+--changeset usr:partitioning-1 splitStatements:false
+CREATE TABLE IF NOT EXISTS fact_partitioning (
+  partition_size BIGINT NOT NULL,
+  mirrored_from BIGINT NOT NULL,
+  copied_up_to BIGINT NOT NULL,
+  swapped BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+--changeset usr:partitioning-2 splitStatements:false
+CREATE OR REPLACE FUNCTION extractFactIdsPartitioned() RETURNS trigger AS $$
+BEGIN
+  NEW.id := (NEW.header->>'id')::uuid;
+  IF jsonb_typeof(NEW.header->'aggIds') = 'array' THEN
+    NEW.aggids := ARRAY(SELECT jsonb_array_elements_text(NEW.header->'aggIds')::uuid);
+  ELSE
+    NEW.aggids := '{}';
+  END IF;
+  INSERT INTO fact_id(id, ser) VALUES (NEW.id, NEW.ser) ON CONFLICT (id) DO NOTHING;
+  -- the same fact might be copied and mirrored
+  IF NOT FOUND AND NOT EXISTS (SELECT 1 FROM fact_id WHERE id = NEW.id AND ser = NEW.ser) THEN
+    RAISE EXCEPTION 'duplicate key value violates unique constraint "idx_fact_id"'
+      USING ERRCODE = 'unique_violation', DETAIL = format('Key (id)=(%s) already exists.', NEW.id);
+  END IF;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:partitioning-3 splitStatements:false
+CREATE OR REPLACE FUNCTION factcast_create_fact_partition(parent regclass, from_ser BIGINT, to_ser BIGINT) RETURNS BOOLEAN AS $$
+DECLARE
+  partition_name TEXT := 'fact_p' || from_ser;
+BEGIN
+  IF to_regclass(partition_name) IS NOT NULL THEN
+    RETURN FALSE;
+  END IF;
+  IF EXISTS (SELECT 1 FROM fact_pdefault WHERE ser >= from_ser AND ser < to_ser) THEN
+    -- the sequence passed the partitions kept ready. The default partition must not contain facts
+    -- of a partition attached, so they are moved while it is detached.
+    EXECUTE format('ALTER TABLE %s DETACH PARTITION fact_pdefault', parent);
+    EXECUTE format('CREATE TABLE %I PARTITION OF %s FOR VALUES FROM (%s) TO (%s)', partition_name, parent, from_ser, to_ser);
+    EXECUTE format('INSERT INTO %I(ser, header, payload, id, aggids) SELECT ser, header, payload, id, aggids FROM fact_pdefault WHERE ser >= %s AND ser < %s', partition_name, from_ser, to_ser);
+    DELETE FROM fact_pdefault WHERE ser >= from_ser AND ser < to_ser;
+    EXECUTE format('ALTER TABLE %s ATTACH PARTITION fact_pdefault DEFAULT', parent);
+  ELSE
+    EXECUTE format('CREATE TABLE %I PARTITION OF %s FOR VALUES FROM (%s) TO (%s)', partition_name, parent, from_ser, to_ser);
+  END IF;
+  -- created after moving facts, as their ids are registered already
+  EXECUTE format('CREATE TRIGGER tr_fact_extract_ids BEFORE INSERT ON %I FOR EACH ROW EXECUTE PROCEDURE extractFactIdsPartitioned()', partition_name);
+  RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:partitioning-4 splitStatements:false
+CREATE OR REPLACE FUNCTION factcast_ensure_fact_partitions(partitions_ahead INTEGER DEFAULT 3) RETURNS INTEGER AS $$
+DECLARE
+  st fact_partitioning;
+  parent regclass;
+  head BIGINT;
+  k BIGINT;
+  created INTEGER := 0;
+BEGIN
+  SELECT * INTO st FROM fact_partitioning;
+  IF st IS NULL THEN
+    RETURN 0;
+  END IF;
+  parent := to_regclass(CASE WHEN st.swapped THEN 'fact' ELSE 'fact_partitioned' END);
+  SELECT last_value INTO head FROM fact_ser_seq;
+  -- always have the partitions after the current one ready
+  FOR k IN 0 .. (head / st.partition_size) + GREATEST(partitions_ahead, 1) LOOP
+    IF factcast_create_fact_partition(parent, k * st.partition_size, (k + 1) * st.partition_size) THEN
+      created := created + 1;
+    END IF;
+  END LOOP;
+  RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:partitioning-5 splitStatements:false
+CREATE OR REPLACE FUNCTION factcast_mirror_fact_insert() RETURNS trigger AS $$
+BEGIN
+  INSERT INTO fact_partitioned(ser, header, payload) VALUES (NEW.ser, NEW.header, NEW.payload);
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:partitioning-6 splitStatements:false
+CREATE OR REPLACE FUNCTION factcast_prepare_fact_partitioning(partition_size BIGINT) RETURNS BOOLEAN AS $$
+DECLARE
+  head BIGINT;
+BEGIN
+  IF EXISTS (SELECT 1 FROM fact_partitioning) THEN
+    RETURN FALSE;
+  END IF;
+  CREATE TABLE fact_partitioned (
+    ser BIGINT NOT NULL,
+    header JSONB NOT NULL,
+    payload JSONB NOT NULL,
+    id UUID,
+    aggids UUID[],
+    PRIMARY KEY (ser)
+  ) PARTITION BY RANGE (ser);
+  CREATE INDEX idx_fact_partitioned_header ON fact_partitioned USING GIN (header jsonb_path_ops);
+  CREATE INDEX idx_fact_partitioned_id ON fact_partitioned (id);
+  CREATE INDEX idx_fact_partitioned_aggids ON fact_partitioned USING GIN (aggids);
+  CREATE INDEX idx_fact_partitioned_enum ON fact_partitioned ((header ->> 'ns'), (header -> 'type'));
+  CREATE TABLE fact_pdefault PARTITION OF fact_partitioned DEFAULT;
+  CREATE TRIGGER tr_fact_extract_ids BEFORE INSERT ON fact_pdefault FOR EACH ROW EXECUTE PROCEDURE extractFactIdsPartitioned();
+  CREATE TABLE IF NOT EXISTS fact_id (
+    id UUID PRIMARY KEY,
+    ser BIGINT NOT NULL
+  );
+  -- block publishing for a moment, to get a consistent starting point for mirroring
+  LOCK TABLE fact IN EXCLUSIVE MODE;
+  SELECT COALESCE(max(ser), 0) INTO head FROM fact;
+  INSERT INTO fact_partitioning(partition_size, mirrored_from, copied_up_to) VALUES (partition_size, head, 0);
+  PERFORM factcast_ensure_fact_partitions();
+  CREATE TRIGGER tr_fact_mirror AFTER INSERT ON fact FOR EACH ROW EXECUTE PROCEDURE factcast_mirror_fact_insert();
+  RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:partitioning-7 splitStatements:false
+CREATE OR REPLACE FUNCTION factcast_copy_fact_chunk(chunk_size BIGINT) RETURNS BIGINT AS $$
+DECLARE
+  st fact_partitioning;
+  upper_ser BIGINT;
+BEGIN
+  SELECT * INTO st FROM fact_partitioning FOR UPDATE;
+  IF st IS NULL OR st.swapped OR st.copied_up_to >= st.mirrored_from THEN
+    RETURN 0;
+  END IF;
+  upper_ser := LEAST(st.copied_up_to + chunk_size, st.mirrored_from);
+  INSERT INTO fact_partitioned(ser, header, payload)
+    SELECT ser, header, payload FROM fact WHERE ser > st.copied_up_to AND ser <= upper_ser ORDER BY ser
+    ON CONFLICT DO NOTHING;
+  UPDATE fact_partitioning SET copied_up_to = upper_ser;
+  RETURN st.mirrored_from - upper_ser;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:partitioning-8 splitStatements:false
+CREATE OR REPLACE FUNCTION factcast_swap_fact_table() RETURNS BOOLEAN AS $$
+DECLARE
+  st fact_partitioning;
+  seq_value BIGINT;
+BEGIN
+  SELECT * INTO st FROM fact_partitioning FOR UPDATE;
+  IF st IS NULL OR st.swapped OR st.copied_up_to < st.mirrored_from THEN
+    RETURN FALSE;
+  END IF;
+  LOCK TABLE fact IN ACCESS EXCLUSIVE MODE;
+  SELECT last_value INTO seq_value FROM fact_ser_seq;
+  DROP TRIGGER tr_fact_mirror ON fact;
+  DROP TRIGGER IF EXISTS tr_fact_insert_notify ON fact;
+  ALTER TABLE fact RENAME TO fact_unpartitioned;
+  COMMENT ON TABLE fact_unpartitioned IS 'fact table before partitioning, not used anymore and safe to drop';
+  -- detach the sequence from the former table (and drop it, if it was an identity)
+  IF EXISTS (SELECT 1 FROM pg_attribute WHERE attrelid = 'fact_unpartitioned'::regclass AND attname = 'ser' AND attidentity <> '') THEN
+    ALTER TABLE fact_unpartitioned ALTER COLUMN ser DROP IDENTITY;
+  ELSE
+    ALTER TABLE fact_unpartitioned ALTER COLUMN ser DROP DEFAULT;
+  END IF;
+  ALTER TABLE fact_partitioned RENAME TO fact;
+  CREATE SEQUENCE IF NOT EXISTS fact_ser_seq;
+  ALTER SEQUENCE fact_ser_seq OWNED BY fact.ser;
+  PERFORM setval('fact_ser_seq', seq_value);
+  ALTER TABLE fact ALTER COLUMN ser SET DEFAULT nextval('fact_ser_seq');
+  CREATE TRIGGER tr_fact_insert_notify AFTER INSERT ON fact REFERENCING NEW TABLE AS inserted FOR EACH STATEMENT EXECUTE PROCEDURE notifyFactInsertStatement();
+  UPDATE fact_partitioning SET swapped = TRUE;
+  RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:partitioning-9 splitStatements:false
+SELECT factcast_prepare_fact_partitioning(${factcastPartitionSize});
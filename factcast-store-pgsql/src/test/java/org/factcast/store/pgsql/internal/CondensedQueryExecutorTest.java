@@ -25,8 +25,11 @@
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import com.google.common.collect.Lists;
 import java.util.Timer;
 import java.util.TimerTask;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgListener.InsertedFactType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -97,4 +100,33 @@ void testDelayedCondensedExecution() {
     // no change: second call is scheduled
     verify(mockTimer, times(2)).schedule(any(), eq(104L));
   }
+
+  @Test
+  void testIgnoresNonMatchingInsertions() {
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(
+            1, callback, () -> true, f -> "matching".equals(f.ns()), mockTimer);
+
+    uut.onEvent(
+        new FactInsertionEvent(
+            "fact_insert", Lists.newArrayList(new InsertedFactType("other", "type"))));
+    verify(mockTimer, never()).schedule(any(), anyLong());
+
+    uut.onEvent(
+        new FactInsertionEvent(
+            "fact_insert",
+            Lists.newArrayList(
+                new InsertedFactType("other", "type"), new InsertedFactType("matching", "type"))));
+    verify(mockTimer).schedule(any(), eq(1L));
+  }
+
+  @Test
+  void testUnknownInsertionsTrigger() {
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(1, callback, () -> true, f -> false, mockTimer);
+
+    uut.onEvent(new FactInsertionEvent("scheduled-poll"));
+
+    verify(mockTimer).schedule(any(), eq(1L));
+  }
 }
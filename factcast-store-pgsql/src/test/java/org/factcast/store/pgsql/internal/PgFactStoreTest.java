@@ -19,10 +19,12 @@
 import static org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Collections;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Supplier;
 import lombok.val;
+import org.factcast.core.Fact;
 import org.factcast.core.snap.Snapshot;
 import org.factcast.core.snap.SnapshotId;
 import org.factcast.core.store.FactStore;
@@ -74,4 +76,14 @@ void testSetSnapshotMetered() {
 
     verify(metrics).time(same(SET_SNAPSHOT), any(Runnable.class));
   }
+
+  @Test
+  void testPublishAddsSerialAndTimestampToHeader() {
+    UUID id = UUID.randomUUID();
+    store.publish(Collections.singletonList(Fact.builder().ns("ns").id(id).build("{}")));
+
+    Fact fact = store.fetchById(id).get();
+    assertThat(fact.serial()).isEqualTo(store.serialOf(id).getAsLong());
+    assertThat(fact.timestamp()).isNotNull().isPositive();
+  }
 }
@@ -16,16 +16,211 @@
 package org.factcast.store.pgsql.internal;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.junit.jupiter.api.*;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+@ExtendWith(MockitoExtension.class)
 public class PgFactStreamTest {
 
-  @InjectMocks PgFactStream uut;
+  @Mock JdbcTemplate jdbcTemplate;
+
+  @Mock PgFactIdToSerialMapper idToSerMapper;
+
+  @Mock SubscriptionImpl subscription;
+
+  @Mock PgLatestSerialFetcher fetcher;
+
+  @Mock PgCatchupFactory catchupFactory;
+
+  @Mock PgFollowerGroups followerGroups;
+
+  @Mock PgCatchup catchup;
+
+  final ExecutorService resumeExecutor = Executors.newSingleThreadExecutor();
+
+  final ExecutorService followExecutor = Executors.newSingleThreadExecutor();
+
+  PgFactStream uut;
+
+  @BeforeEach
+  void setup() {
+    uut =
+        new PgFactStream(
+            jdbcTemplate,
+            idToSerMapper,
+            subscription,
+            fetcher,
+            catchupFactory,
+            followerGroups,
+            resumeExecutor,
+            followExecutor);
+  }
+
+  @AfterEach
+  void tearDown() {
+    resumeExecutor.shutdownNow();
+    followExecutor.shutdownNow();
+  }
 
   @Test
   public void testConnectNullParameter() {
     assertThrows(NullPointerException.class, () -> uut.connect(null));
   }
+
+  @Test
+  public void testPausesCatchupUntilReady() {
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(catchup);
+    when(catchup.paused()).thenReturn(true, false);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    doNothing().when(subscription).onReady(onReady.capture());
+
+    uut.connect(catchupRequest());
+
+    // paused during phase 1
+    verify(catchup, times(1)).run();
+    verify(subscription, never()).notifyCatchup();
+
+    onReady.getValue().run();
+
+    verify(subscription, timeout(5000)).notifyComplete();
+    verify(subscription).notifyCatchup();
+    // continues the paused one, then catches up with what was published since
+    verify(catchup, times(3)).run();
+    verify(catchupFactory, times(2)).create(any(), any(), any(), any());
+  }
+
+  @Test
+  public void testForwardsResumeFailure() {
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(catchup);
+    when(catchup.paused()).thenReturn(true);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    doNothing().when(subscription).onReady(onReady.capture());
+    uut.connect(catchupRequest());
+    IllegalStateException e = new IllegalStateException();
+    doThrow(e).when(catchup).run();
+
+    onReady.getValue().run();
+
+    verify(subscription, timeout(5000)).notifyError(e);
+  }
+
+  @Test
+  public void testClosesPausedCatchup() {
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(catchup);
+    when(catchup.paused()).thenReturn(true);
+    uut.connect(catchupRequest());
+
+    uut.close();
+
+    verify(catchup).close();
+  }
+
+  @Test
+  public void testCompletesWithoutPause() {
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(catchup);
+
+    uut.connect(catchupRequest());
+
+    verify(catchup, times(2)).run();
+    verify(subscription).notifyCatchup();
+    verify(subscription).notifyComplete();
+    verify(subscription, never()).onReady(any());
+  }
+
+  @Test
+  public void testDeliversFollowedFactsWhenReady() throws Exception {
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(catchup);
+    when(followerGroups.join(any(), anyLong(), same(uut))).thenReturn(mock(Runnable.class));
+    AtomicBoolean ready = new AtomicBoolean(false);
+    when(subscription.isReady()).thenAnswer(i -> ready.get());
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    doNothing().when(subscription).onReady(onReady.capture());
+    uut.connect(followRequest());
+
+    Fact f = Fact.builder().ns("ns").build("{}");
+    uut.notifyFollowed(f, 10);
+    uut.notifyFollowed(f, 11);
+
+    // handed off, but waiting for the consumer
+    verify(subscription, timeout(5000)).onReady(any());
+    verify(subscription, never()).notifyElement(any());
+    assertEquals(11, uut.serial());
+    assertFalse(uut.isPaused());
+
+    ready.set(true);
+    onReady.getValue().run();
+
+    verify(subscription, timeout(5000).times(2)).notifyElement(f);
+  }
+
+  @Test
+  public void testPausesFollowingWhenFallingBehind() throws Exception {
+    Runnable leave = mock(Runnable.class);
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(catchup);
+    when(followerGroups.join(any(), anyLong(), same(uut))).thenReturn(leave);
+    AtomicBoolean ready = new AtomicBoolean(false);
+    when(subscription.isReady()).thenAnswer(i -> ready.get());
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    doNothing().when(subscription).onReady(onReady.capture());
+    uut.connect(followRequest());
+    verify(followerGroups).join(any(), anyLong(), same(uut));
+
+    Fact f = Fact.builder().ns("ns").build("{}");
+    int handedOff = PgFactStream.FOLLOW_HAND_OFF_CAPACITY;
+    for (int ser = 1; ser <= handedOff + 1; ser++) {
+      uut.notifyFollowed(f, ser);
+    }
+    uut.shiftSerialTo(handedOff + 2);
+
+    // skipped by the group from now on, the rest is caught up on resume
+    assertTrue(uut.isPaused());
+    assertEquals(handedOff, uut.serial());
+    verify(subscription, timeout(5000)).onReady(any());
+    verify(subscription, never()).notifyElement(any());
+    verify(leave, never()).run();
+
+    ready.set(true);
+    onReady.getValue().run();
+
+    // delivers what was handed off, before leaving the group
+    verify(leave, timeout(5000)).run();
+    verify(subscription, times(handedOff)).notifyElement(f);
+    verify(subscription, timeout(5000).times(2)).onReady(any());
+
+    onReady.getValue().run();
+
+    // catches up and joins again
+    verify(catchup, timeout(5000).times(3)).run();
+    verify(followerGroups, timeout(5000).times(2)).join(any(), anyLong(), same(uut));
+    assertFalse(uut.isPaused());
+  }
+
+  private static SubscriptionRequestTO catchupRequest() {
+    return SubscriptionRequestTO.forFacts(
+        SubscriptionRequest.catchup(FactSpec.ns("ns")).fromScratch());
+  }
+
+  private static SubscriptionRequestTO followRequest() {
+    return SubscriptionRequestTO.forFacts(
+        SubscriptionRequest.follow(FactSpec.ns("ns")).fromScratch());
+  }
 }
@@ -61,6 +61,41 @@ void testFrom() throws Exception {
     assertEquals(7, uut.version());
   }
 
+  @Test
+  void testSerialAndTimestampFromColumns() throws Exception {
+    ResultSet rs = mock(ResultSet.class);
+    String id = UUID.randomUUID().toString();
+    // contradicting header, in order to make sure it is not parsed
+    String header = "{\"meta\":{\"_ser\":1,\"_ts\":2}}";
+    when(rs.getString(eq(PgConstants.ALIAS_ID))).thenReturn(id);
+    when(rs.getString(eq(PgConstants.ALIAS_NS))).thenReturn("ns");
+    when(rs.getString(eq(PgConstants.COLUMN_HEADER))).thenReturn(header);
+    when(rs.getString(eq(PgConstants.COLUMN_PAYLOAD))).thenReturn("{}");
+    when(rs.getLong(eq(PgConstants.COLUMN_SER))).thenReturn(42L);
+    when(rs.getString(eq(PgConstants.ALIAS_TIMESTAMP))).thenReturn("1234");
+    PgFact uut = (PgFact) PgFact.from(rs);
+
+    assertEquals(42, uut.serial());
+    assertEquals("42", uut.meta("_ser"));
+    assertEquals(Long.valueOf(1234), uut.timestamp());
+    assertEquals("1234", uut.meta("_ts"));
+  }
+
+  @Test
+  void testSerialAndTimestampFromHeaderIfNotSelected() throws Exception {
+    ResultSet rs = mock(ResultSet.class);
+    String id = UUID.randomUUID().toString();
+    String header = "{\"meta\":{\"_ser\":1,\"_ts\":2}}";
+    when(rs.getString(eq(PgConstants.ALIAS_ID))).thenReturn(id);
+    when(rs.getString(eq(PgConstants.ALIAS_NS))).thenReturn("ns");
+    when(rs.getString(eq(PgConstants.COLUMN_HEADER))).thenReturn(header);
+    when(rs.getString(eq(PgConstants.COLUMN_PAYLOAD))).thenReturn("{}");
+    PgFact uut = (PgFact) PgFact.from(rs);
+
+    assertEquals(1, uut.serial());
+    assertEquals(Long.valueOf(2), uut.timestamp());
+  }
+
   @Test
   void testToUUIDArrayNull() {
     Set<UUID> res = PgFact.toUUIDArray(null);
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.Lists;
+import java.sql.ResultSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.listen.PgListener.InsertedFactType;
+import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer.BufferedFact;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer.Slice;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+@ExtendWith(MockitoExtension.class)
+public class PgFollowerGroupQueryTest {
+
+  static final FactSpec SPEC = FactSpec.ns("foo");
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  JdbcTemplate jdbcTemplate;
+
+  @Mock PgLatestSerialFetcher fetcher;
+
+  @Mock PgTailBuffer tailBuffer;
+
+  @Mock SubscriptionImpl subscription1;
+
+  @Mock SubscriptionImpl subscription2;
+
+  PgFollowerGroupQuery uut;
+
+  @BeforeEach
+  void setUp() {
+    uut = new PgFollowerGroupQuery(jdbcTemplate, Lists.newArrayList(SPEC), fetcher, tailBuffer);
+  }
+
+  @Test
+  void testFansOutFromIndividualSerials() throws Exception {
+    PgFactStream s1 = stream(subscription1, 0);
+    PgFactStream s2 = stream(subscription2, 5);
+    uut.add(s1);
+    uut.add(s2);
+    returnRows(3, 7);
+
+    uut.run(false);
+
+    verify(subscription1, times(2)).notifyElement(any(Fact.class));
+    verify(subscription2, times(1)).notifyElement(any(Fact.class));
+    assertThat(s1.serial()).isEqualTo(7);
+    assertThat(s2.serial()).isEqualTo(7);
+  }
+
+  @Test
+  void testFailingMemberDoesNotAffectOthers() throws Exception {
+    PgFactStream s1 = stream(subscription1, 0);
+    PgFactStream s2 = stream(subscription2, 0);
+    uut.add(s1);
+    uut.add(s2);
+    doThrow(new IllegalStateException("client gone"))
+        .when(subscription1)
+        .notifyElement(any(Fact.class));
+    doAnswer(
+            inv -> {
+              s1.close();
+              return null;
+            })
+        .when(subscription1)
+        .close();
+    returnRows(3, 7);
+
+    uut.run(false);
+
+    verify(subscription1).close();
+    verify(subscription1, times(1)).notifyElement(any(Fact.class));
+    verify(subscription2, times(2)).notifyElement(any(Fact.class));
+    assertThat(s2.serial()).isEqualTo(7);
+  }
+
+  @Test
+  void testShiftsMembersToLatest() throws Exception {
+    PgFactStream s1 = stream(subscription1, 0);
+    uut.add(s1);
+    when(fetcher.retrieveLatestSer()).thenReturn(100L);
+
+    uut.run(false);
+
+    verify(subscription1, never()).notifyElement(any(Fact.class));
+    assertThat(s1.serial()).isEqualTo(100);
+  }
+
+  @Test
+  void testSkipsRunWithoutMembers() {
+    uut.run(false);
+
+    verifyNoInteractions(fetcher);
+    assertThat(uut.isEmpty()).isTrue();
+  }
+
+  @Test
+  void testRemove() {
+    PgFactStream s1 = stream(subscription1, 0);
+    uut.add(s1);
+    assertThat(uut.isEmpty()).isFalse();
+    uut.remove(s1);
+    assertThat(uut.isEmpty()).isTrue();
+  }
+
+  @Test
+  void testServesFromTailBuffer() throws Exception {
+    PgFactStream s1 = stream(subscription1, 0);
+    PgFactStream s2 = stream(subscription2, 5);
+    uut.add(s1);
+    uut.add(s2);
+    when(tailBuffer.tailAfter(0))
+        .thenReturn(
+            Optional.of(
+                new Slice(
+                    10,
+                    Lists.newArrayList(
+                        new BufferedFact(3, Fact.builder().ns("foo").buildWithoutPayload()),
+                        new BufferedFact(6, Fact.builder().ns("bar").buildWithoutPayload()),
+                        new BufferedFact(7, Fact.builder().ns("foo").buildWithoutPayload())))));
+
+    uut.run(false);
+
+    verify(subscription1, times(2)).notifyElement(any(Fact.class));
+    verify(subscription2, times(1)).notifyElement(any(Fact.class));
+    assertThat(s1.serial()).isEqualTo(10);
+    assertThat(s2.serial()).isEqualTo(10);
+    verify(jdbcTemplate, never())
+        .query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+  }
+
+  @Test
+  void testServesWildcardNsFromTailBuffer() throws Exception {
+    uut =
+        new PgFollowerGroupQuery(
+            jdbcTemplate, Lists.newArrayList(FactSpec.ns("*")), fetcher, tailBuffer);
+    PgFactStream s1 = stream(subscription1, 0);
+    uut.add(s1);
+    when(tailBuffer.tailAfter(0))
+        .thenReturn(
+            Optional.of(
+                new Slice(
+                    10,
+                    Lists.newArrayList(
+                        new BufferedFact(3, Fact.builder().ns("foo").buildWithoutPayload()),
+                        new BufferedFact(6, Fact.builder().ns("bar").buildWithoutPayload())))));
+
+    uut.run(false);
+
+    verify(subscription1, times(2)).notifyElement(any(Fact.class));
+    assertThat(s1.serial()).isEqualTo(10);
+  }
+
+  @Test
+  void testMatchesInsertedFactTypes() {
+    assertThat(uut.matches(new InsertedFactType("foo", "any"))).isTrue();
+    assertThat(uut.matches(new InsertedFactType("bar", "any"))).isFalse();
+  }
+
+  @Test
+  void testWildcardNsMatchesAnyInsertedFactType() {
+    uut =
+        new PgFollowerGroupQuery(
+            jdbcTemplate, Lists.newArrayList(FactSpec.ns("*").type("t")), fetcher, tailBuffer);
+
+    assertThat(uut.matches(new InsertedFactType("foo", "t"))).isTrue();
+    assertThat(uut.matches(new InsertedFactType("bar", "t"))).isTrue();
+    assertThat(uut.matches(new InsertedFactType("bar", "other"))).isFalse();
+  }
+
+  @Test
+  void testSlowMemberDoesNotHoldUpOthers() throws Exception {
+    ExecutorService followExecutor = Executors.newCachedThreadPool();
+    try {
+      CountDownLatch slow = new CountDownLatch(1);
+      PgFactStream s1 = stream(subscription1, 0, followExecutor);
+      PgFactStream s2 = stream(subscription2, 0, followExecutor);
+      uut.add(s1);
+      uut.add(s2);
+      doAnswer(
+              inv -> {
+                slow.await();
+                return null;
+              })
+          .when(subscription1)
+          .notifyElement(any(Fact.class));
+      returnRows(3, 7);
+
+      uut.run(false);
+
+      verify(subscription2, timeout(5000).times(2)).notifyElement(any(Fact.class));
+      verify(subscription1, times(1)).notifyElement(any(Fact.class));
+
+      slow.countDown();
+
+      verify(subscription1, timeout(5000).times(2)).notifyElement(any(Fact.class));
+    } finally {
+      followExecutor.shutdownNow();
+    }
+  }
+
+  private PgFactStream stream(SubscriptionImpl subscription, long serial) {
+    return stream(subscription, serial, Runnable::run);
+  }
+
+  private PgFactStream stream(SubscriptionImpl subscription, long serial, Executor followExecutor) {
+    PgCatchupFactory catchupFactory = mock(PgCatchupFactory.class);
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(mock(PgCatchup.class));
+    lenient().when(subscription.isReady()).thenReturn(true);
+    PgFactStream s =
+        new PgFactStream(
+            jdbcTemplate,
+            mock(PgFactIdToSerialMapper.class),
+            subscription,
+            fetcher,
+            catchupFactory,
+            mock(PgFollowerGroups.class),
+            Runnable::run,
+            followExecutor);
+    s.connect(SubscriptionRequestTO.forFacts(SubscriptionRequest.follow(SPEC).fromScratch()));
+    s.shiftSerialTo(serial);
+    return s;
+  }
+
+  private void returnRows(long... serials) {
+    doAnswer(
+            inv -> {
+              RowCallbackHandler handler = inv.getArgument(2);
+              for (long ser : serials) {
+                ResultSet rs = mock(ResultSet.class, withSettings().lenient());
+                when(rs.getString(PgConstants.ALIAS_ID)).thenReturn(UUID.randomUUID().toString());
+                when(rs.getString(PgConstants.ALIAS_NS)).thenReturn("foo");
+                when(rs.getString(PgConstants.COLUMN_HEADER)).thenReturn("{}");
+                when(rs.getString(PgConstants.COLUMN_PAYLOAD)).thenReturn("{}");
+                when(rs.getLong(PgConstants.COLUMN_SER)).thenReturn(ser);
+                handler.processRow(rs);
+              }
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.EventBus;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SuppressWarnings("UnstableApiUsage")
+@ExtendWith(MockitoExtension.class)
+public class PgFollowerGroupsTest {
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  JdbcTemplate jdbcTemplate;
+
+  @Mock EventBus eventBus;
+
+  @Mock PgLatestSerialFetcher fetcher;
+
+  @Mock PgTailBuffer tailBuffer;
+
+  @Mock PgFactStream stream1;
+
+  @Mock PgFactStream stream2;
+
+  PgFollowerGroups uut;
+
+  @BeforeEach
+  void setUp() {
+    uut = new PgFollowerGroups(jdbcTemplate, eventBus, fetcher, tailBuffer);
+  }
+
+  @Test
+  void testSameSpecsShareGroup() {
+    uut.join(Lists.newArrayList(FactSpec.ns("a"), FactSpec.ns("b")), 100, stream1);
+    uut.join(Lists.newArrayList(FactSpec.ns("b"), FactSpec.ns("a")), 100, stream2);
+
+    assertThat(uut.size()).isEqualTo(1);
+    verify(eventBus, times(1)).register(any(CondensedQueryExecutor.class));
+  }
+
+  @Test
+  void testDifferentSpecsDoNotShareGroup() {
+    uut.join(Lists.newArrayList(FactSpec.ns("a")), 100, stream1);
+    uut.join(Lists.newArrayList(FactSpec.ns("b")), 100, stream2);
+
+    assertThat(uut.size()).isEqualTo(2);
+  }
+
+  @Test
+  void testDifferentDelayDoesNotShareGroup() {
+    uut.join(Lists.newArrayList(FactSpec.ns("a")), 100, stream1);
+    uut.join(Lists.newArrayList(FactSpec.ns("a")), 200, stream2);
+
+    assertThat(uut.size()).isEqualTo(2);
+  }
+
+  @Test
+  void testGroupRemovedWhenLastMemberLeaves() {
+    Runnable leave1 = uut.join(Lists.newArrayList(FactSpec.ns("a")), 100, stream1);
+    Runnable leave2 = uut.join(Lists.newArrayList(FactSpec.ns("a")), 100, stream2);
+
+    leave1.run();
+    assertThat(uut.size()).isEqualTo(1);
+    verify(eventBus, never()).unregister(any());
+
+    leave2.run();
+    assertThat(uut.size()).isEqualTo(0);
+    verify(eventBus).unregister(any(CondensedQueryExecutor.class));
+  }
+
+  @Test
+  void testLeaveIsIdempotent() {
+    Runnable leave = uut.join(Lists.newArrayList(FactSpec.ns("a")), 100, stream1);
+    leave.run();
+    leave.run();
+
+    verify(eventBus, times(1)).unregister(any(CondensedQueryExecutor.class));
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.PgPublishCoalescer.PendingPublish;
+import org.junit.jupiter.api.*;
+
+class PgPublishCoalescerTest {
+
+  final List<List<Fact>> written = new CopyOnWriteArrayList<>();
+
+  PgPublishCoalescer uut;
+
+  @AfterEach
+  void tearDown() {
+    if (uut != null) {
+      uut.close();
+    }
+  }
+
+  @Test
+  void groupsConcurrentPublishes() throws Exception {
+    CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+    uut =
+        new PgPublishCoalescer(
+            facts -> {
+              if (written.isEmpty()) {
+                firstWriteStarted.countDown();
+                await(releaseFirstWrite);
+              }
+              written.add(facts);
+            },
+            100_000,
+            1000);
+
+    CompletableFuture<Void> first = publishAsync(fact());
+    assertThat(firstWriteStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    // these queue up while the first group is being written
+    List<CompletableFuture<Void>> others =
+        IntStream.range(0, 5).mapToObj(i -> publishAsync(fact())).collect(Collectors.toList());
+    Thread.sleep(100);
+    releaseFirstWrite.countDown();
+
+    first.get(10, TimeUnit.SECONDS);
+    for (CompletableFuture<Void> f : others) {
+      f.get(10, TimeUnit.SECONDS);
+    }
+    assertThat(written).hasSize(2);
+    assertThat(written.get(1)).hasSize(5);
+  }
+
+  @Test
+  void doesNotWaitLongerThanDelay() throws Exception {
+    uut = new PgPublishCoalescer(written::add, 1000, 1000);
+
+    publishAsync(fact()).get(10, TimeUnit.SECONDS);
+
+    assertThat(written).hasSize(1);
+  }
+
+  @Test
+  void stopsWaitingForMoreWhenMaxFactsReached() throws Exception {
+    uut = new PgPublishCoalescer(written::add, 10_000_000, 2);
+
+    publishAsync(fact(), fact()).get(5, TimeUnit.SECONDS);
+
+    assertThat(written).hasSize(1);
+  }
+
+  @Test
+  void onlyFailsOffendingPublish() throws Exception {
+    Fact bad = fact();
+    CompletableFuture<Void> good1 = new CompletableFuture<>();
+    CompletableFuture<Void> offending = new CompletableFuture<>();
+    CompletableFuture<Void> good2 = new CompletableFuture<>();
+
+    List<List<Fact>> attempts = new ArrayList<>();
+    PgPublishCoalescer writer =
+        new PgPublishCoalescer(
+            facts -> {
+              attempts.add(facts);
+              if (facts.contains(bad)) {
+                throw new IllegalArgumentException("duplicate");
+              }
+            },
+            0,
+            1000);
+    try {
+      writer.write(
+          Arrays.asList(pending(fact(), good1), pending(bad, offending), pending(fact(), good2)));
+    } finally {
+      writer.close();
+    }
+
+    // one group, then one by one
+    assertThat(attempts).hasSize(4);
+    assertThat(good1).isCompleted();
+    assertThat(good2).isCompleted();
+    assertThatThrownBy(() -> offending.get())
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void failsWholeGroupOnError() {
+    CompletableFuture<Void> p1 = new CompletableFuture<>();
+    CompletableFuture<Void> p2 = new CompletableFuture<>();
+
+    List<List<Fact>> attempts = new ArrayList<>();
+    PgPublishCoalescer writer =
+        new PgPublishCoalescer(
+            facts -> {
+              attempts.add(facts);
+              throw new AssertionError("boom");
+            },
+            0,
+            1000);
+    try {
+      writer.write(Arrays.asList(pending(fact(), p1), pending(fact(), p2)));
+    } finally {
+      writer.close();
+    }
+
+    assertThat(attempts).hasSize(1);
+    assertThatThrownBy(p1::get).hasCauseInstanceOf(AssertionError.class);
+    assertThatThrownBy(p2::get).hasCauseInstanceOf(AssertionError.class);
+  }
+
+  @Test
+  void survivesErrors() throws Exception {
+    uut =
+        new PgPublishCoalescer(
+            facts -> {
+              if (written.isEmpty()) {
+                written.add(facts);
+                throw new AssertionError("boom");
+              }
+              written.add(facts);
+            },
+            0,
+            1000);
+
+    assertThatThrownBy(() -> uut.publish(Collections.singletonList(fact())))
+        .isInstanceOf(AssertionError.class);
+    publishAsync(fact()).get(10, TimeUnit.SECONDS);
+
+    assertThat(written).hasSize(2);
+  }
+
+  @Test
+  void propagatesFailure() {
+    uut =
+        new PgPublishCoalescer(
+            facts -> {
+              throw new IllegalArgumentException("duplicate");
+            },
+            0,
+            1000);
+
+    assertThatThrownBy(() -> uut.publish(Collections.singletonList(fact())))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void rejectsPublishAfterClose() {
+    uut = new PgPublishCoalescer(written::add, 0, 1000);
+    uut.close();
+
+    assertThatThrownBy(() -> uut.publish(Collections.singletonList(fact())))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private CompletableFuture<Void> publishAsync(Fact... facts) {
+    return CompletableFuture.runAsync(() -> uut.publish(Arrays.asList(facts)));
+  }
+
+  private static PendingPublish pending(Fact f, CompletableFuture<Void> result) {
+    return new PendingPublish(Collections.singletonList(f), result);
+  }
+
+  private static Fact fact() {
+    return Fact.builder().ns("ns").build("{}");
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
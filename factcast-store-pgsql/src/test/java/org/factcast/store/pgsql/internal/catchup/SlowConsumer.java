@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.NonNull;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.observer.FlowControl;
+
+/**
+ * Takes at most capacity facts until it is drained, like a client behind the gRPC server's flow
+ * control. Remembers the max number of facts it ever had to buffer.
+ */
+public class SlowConsumer implements FactObserver, FlowControl {
+
+  final int capacity;
+
+  public final List<Fact> received = new ArrayList<>();
+
+  int buffered = 0;
+
+  public int maxBuffered = 0;
+
+  public SlowConsumer(int capacity) {
+    this.capacity = capacity;
+  }
+
+  @Override
+  public void onNext(@NonNull Fact element) {
+    received.add(element);
+    maxBuffered = Math.max(maxBuffered, ++buffered);
+  }
+
+  @Override
+  public boolean isReady() {
+    return buffered < capacity;
+  }
+
+  @Override
+  public void onReady(@NonNull Runnable callback) {
+    // runs are triggered by the tests
+  }
+
+  public void drain() {
+    buffered = 0;
+  }
+
+  public static List<Fact> facts(int count) {
+    List<Fact> facts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      facts.add(Fact.builder().ns("foo").build("{}"));
+    }
+    return facts;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.fetching;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.SlowConsumer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+@ExtendWith(MockitoExtension.class)
+public class PgFetchingCatchupTest {
+
+  @Mock JdbcTemplate jdbc;
+
+  @Mock PgConfigurationProperties props;
+
+  @Mock SubscriptionRequestTO req;
+
+  @Mock PgPostQueryMatcher postQueryMatcher;
+
+  @Mock SubscriptionImpl subscription;
+
+  @Mock ResultSet rs;
+
+  final AtomicLong serial = new AtomicLong(0);
+
+  PgFetchingCatchup uut;
+
+  @BeforeEach
+  void setup() {
+    uut = new PgFetchingCatchup(jdbc, props, req, postQueryMatcher, subscription, serial);
+  }
+
+  @Test
+  void testNullParameterContracts() {
+    assertThatThrownBy(
+            () -> new PgFetchingCatchup(null, props, req, postQueryMatcher, subscription, serial))
+        .isInstanceOf(NullPointerException.class);
+    assertThatThrownBy(
+            () -> new PgFetchingCatchup(jdbc, props, req, postQueryMatcher, subscription, null))
+        .isInstanceOf(NullPointerException.class);
+  }
+
+  @Test
+  void testProcessRowNotifiesAndAdvancesSerial() throws Exception {
+    mockRow(42);
+    when(postQueryMatcher.test(any())).thenReturn(true);
+
+    RowCallbackHandler handler = uut.createRowCallbackHandler();
+    handler.processRow(rs);
+
+    verify(subscription).notifyElement(any(Fact.class));
+    assertThat(serial.get()).isEqualTo(42);
+  }
+
+  @Test
+  void testProcessRowSkipsFilteredButAdvancesSerial() throws Exception {
+    mockRow(43);
+    when(postQueryMatcher.test(any())).thenReturn(false);
+
+    uut.createRowCallbackHandler().processRow(rs);
+
+    verify(subscription, never()).notifyElement(any(Fact.class));
+    assertThat(serial.get()).isEqualTo(43);
+  }
+
+  @Test
+  void testProcessRowPropagatesTransformationErrors() throws Exception {
+    mockRow(44);
+    when(postQueryMatcher.test(any())).thenReturn(true);
+    TransformationException e = new TransformationException(new IllegalStateException("fail"));
+    doThrow(e).when(subscription).notifyElement(any(Fact.class));
+
+    RowCallbackHandler handler = uut.createRowCallbackHandler();
+    assertThatThrownBy(() -> handler.processRow(rs))
+        .isInstanceOf(RuntimeException.class)
+        .hasRootCauseInstanceOf(IllegalStateException.class);
+
+    verify(subscription).notifyError(e);
+    assertThat(serial.get()).isEqualTo(0);
+  }
+
+  @Test
+  void testStopsReadingWhenSubscriptionIsNotReady() throws Exception {
+    SlowConsumer consumer = new SlowConsumer(256);
+    PgFetchingCatchup uut =
+        new PgFetchingCatchup(
+            jdbc, props, req, postQueryMatcher, SubscriptionImpl.on(consumer, f -> f), serial);
+    mockRow(42);
+    // more rows than the consumer takes
+    when(rs.next()).thenReturn(true);
+    when(postQueryMatcher.test(any())).thenReturn(true);
+
+    uut.createResultSetExtractor(uut.createRowCallbackHandler()).extractData(rs);
+
+    assertThat(uut.paused()).isTrue();
+    assertThat(consumer.maxBuffered).isEqualTo(256);
+    verify(rs, times(256)).next();
+    assertThat(serial.get()).isEqualTo(42);
+  }
+
+  private void mockRow(long ser) throws Exception {
+    lenient().when(rs.getString(anyString())).thenReturn(null);
+    when(rs.getString(PgConstants.ALIAS_ID)).thenReturn(UUID.randomUUID().toString());
+    when(rs.getString(PgConstants.ALIAS_NS)).thenReturn("ns");
+    when(rs.getString(PgConstants.COLUMN_HEADER)).thenReturn("{}");
+    when(rs.getString(PgConstants.COLUMN_PAYLOAD)).thenReturn("{}");
+    lenient().when(rs.getLong(PgConstants.COLUMN_SER)).thenReturn(ser);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.keyset;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+public class AdaptivePageSizeTest {
+
+  @Test
+  void testInitialIsNotBelowMinimum() {
+    assertThat(new AdaptivePageSize(1).current()).isEqualTo(AdaptivePageSize.MIN_PAGE_SIZE);
+    assertThat(new AdaptivePageSize(100).current()).isEqualTo(100);
+  }
+
+  @Test
+  void testGrowsOnFastSmallAndFullPages() {
+    AdaptivePageSize uut = new AdaptivePageSize(100);
+    uut.observe(100, 1000, 1);
+    assertThat(uut.current()).isEqualTo(200);
+  }
+
+  @Test
+  void testDoesNotGrowOnIncompletePages() {
+    AdaptivePageSize uut = new AdaptivePageSize(100);
+    uut.observe(99, 1000, 1);
+    assertThat(uut.current()).isEqualTo(100);
+  }
+
+  @Test
+  void testGrowsUpToTenTimesTheInitialSize() {
+    AdaptivePageSize uut = new AdaptivePageSize(100);
+    for (int i = 0; i < 10; i++) {
+      uut.observe(uut.current(), 1000, 1);
+    }
+    assertThat(uut.current()).isEqualTo(1000);
+  }
+
+  @Test
+  void testShrinksOnSlowPages() {
+    AdaptivePageSize uut = new AdaptivePageSize(100);
+    uut.observe(100, 1000, AdaptivePageSize.TARGET_LATENCY_IN_MILLIS + 1);
+    assertThat(uut.current()).isEqualTo(50);
+  }
+
+  @Test
+  void testShrinksOnBigPagesDownToMinimum() {
+    AdaptivePageSize uut = new AdaptivePageSize(100);
+    for (int i = 0; i < 10; i++) {
+      uut.observe(uut.current(), AdaptivePageSize.TARGET_BYTES + 1, 1);
+    }
+    assertThat(uut.current()).isEqualTo(AdaptivePageSize.MIN_PAGE_SIZE);
+  }
+}
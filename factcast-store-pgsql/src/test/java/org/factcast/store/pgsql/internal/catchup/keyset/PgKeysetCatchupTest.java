@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.keyset;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.SlowConsumer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+@SuppressWarnings("unchecked")
+@ExtendWith(MockitoExtension.class)
+public class PgKeysetCatchupTest {
+
+  @Mock JdbcTemplate jdbc;
+
+  @Mock PgPostQueryMatcher postQueryMatcher;
+
+  final PgConfigurationProperties props = new PgConfigurationProperties();
+
+  final SubscriptionRequestTO req =
+      SubscriptionRequestTO.forFacts(SubscriptionRequest.catchup(FactSpec.ns("foo")).fromScratch());
+
+  final AtomicLong serial = new AtomicLong(0);
+
+  @Test
+  void testPausesWithinPagesBiggerThanTheConsumerTakes() {
+    SlowConsumer consumer = new SlowConsumer(256);
+    PgKeysetCatchup uut =
+        new PgKeysetCatchup(
+            jdbc, props, req, postQueryMatcher, SubscriptionImpl.on(consumer, f -> f), serial);
+    List<Fact> page = SlowConsumer.facts(props.getPageSize());
+    when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+        .thenReturn(page)
+        .thenReturn(Collections.emptyList());
+    when(postQueryMatcher.test(any())).thenReturn(true);
+
+    uut.run();
+    int runs = 1;
+    while (uut.paused()) {
+      consumer.drain();
+      uut.run();
+      runs++;
+    }
+
+    assertThat(runs).isEqualTo(4);
+    assertThat(consumer.maxBuffered).isEqualTo(256);
+    assertThat(consumer.received).isEqualTo(page);
+    // the page was fetched once, followed by the query for the end
+    verify(jdbc, times(2))
+        .query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class));
+  }
+}
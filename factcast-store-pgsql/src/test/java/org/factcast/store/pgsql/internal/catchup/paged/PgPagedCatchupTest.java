@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.paged;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.SlowConsumer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+@SuppressWarnings("unchecked")
+@ExtendWith(MockitoExtension.class)
+public class PgPagedCatchupTest {
+
+  @Mock JdbcTemplate jdbc;
+
+  @Mock PgPostQueryMatcher postQueryMatcher;
+
+  @Mock SubscriptionImpl subscription;
+
+  final PgConfigurationProperties props = new PgConfigurationProperties();
+
+  final SubscriptionRequestTO req =
+      SubscriptionRequestTO.forFacts(SubscriptionRequest.catchup(FactSpec.ns("foo")).fromScratch());
+
+  final AtomicLong serial = new AtomicLong(0);
+
+  PgPagedCatchup uut;
+
+  @BeforeEach
+  void setup() {
+    uut = new PgPagedCatchup(jdbc, props, req, postQueryMatcher, subscription, serial);
+    when(jdbc.queryForObject(PgConstants.NEXT_FROM_CATCHUP_SEQ, Long.class)).thenReturn(42L);
+    when(jdbc.execute(anyString(), any(PreparedStatementCallback.class))).thenReturn(42L);
+    when(postQueryMatcher.test(any())).thenReturn(true);
+  }
+
+  @Test
+  void testResumesWithoutPreparingAgain() throws Exception {
+    Fact f1 = Fact.builder().ns("foo").build("{}");
+    Fact f2 = Fact.builder().ns("foo").build("{}");
+    when(jdbc.query(
+            eq(PgConstants.SELECT_FACT_FROM_CATCHUP),
+            any(PreparedStatementSetter.class),
+            any(RowMapper.class)))
+        .thenReturn(Collections.singletonList(f1), Collections.singletonList(f2))
+        .thenReturn(Collections.emptyList());
+    when(subscription.isReady()).thenReturn(true, false, true);
+
+    uut.run();
+
+    assertThat(uut.paused()).isTrue();
+    verify(subscription).notifyElementsWhileReady(Collections.singletonList(f1));
+    verify(jdbc, never()).update(PgConstants.DELETE_CATCH_BY_CID, 42L);
+
+    uut.run();
+
+    assertThat(uut.paused()).isFalse();
+    verify(subscription).notifyElementsWhileReady(Collections.singletonList(f2));
+    verify(jdbc).queryForObject(PgConstants.NEXT_FROM_CATCHUP_SEQ, Long.class);
+    verify(jdbc).update(PgConstants.DELETE_CATCH_BY_CID, 42L);
+  }
+
+  @Test
+  void testPausesWithinPagesBiggerThanTheConsumerTakes() {
+    SlowConsumer consumer = new SlowConsumer(256);
+    SubscriptionImpl subscription = SubscriptionImpl.on(consumer, f -> f);
+    PgPagedCatchup uut =
+        new PgPagedCatchup(jdbc, props, req, postQueryMatcher, subscription, serial);
+    List<Fact> page = SlowConsumer.facts(props.getPageSize());
+    when(jdbc.query(
+            eq(PgConstants.SELECT_FACT_FROM_CATCHUP),
+            any(PreparedStatementSetter.class),
+            any(RowMapper.class)))
+        .thenReturn(page)
+        .thenReturn(Collections.emptyList());
+
+    uut.run();
+    int runs = 1;
+    while (uut.paused()) {
+      consumer.drain();
+      uut.run();
+      runs++;
+    }
+
+    assertThat(runs).isEqualTo(4);
+    assertThat(consumer.maxBuffered).isEqualTo(256);
+    assertThat(consumer.received).isEqualTo(page);
+    // the page was fetched once, followed by the query for the end
+    verify(jdbc, times(2))
+        .query(
+            eq(PgConstants.SELECT_FACT_FROM_CATCHUP),
+            any(PreparedStatementSetter.class),
+            any(RowMapper.class));
+    verify(jdbc).update(PgConstants.DELETE_CATCH_BY_CID, 42L);
+  }
+
+  @Test
+  void testCloseDeletesRowsOfPausedCatchup() {
+    when(jdbc.query(
+            eq(PgConstants.SELECT_FACT_FROM_CATCHUP),
+            any(PreparedStatementSetter.class),
+            any(RowMapper.class)))
+        .thenReturn(Arrays.asList(Fact.builder().ns("foo").build("{}")));
+    when(subscription.isReady()).thenReturn(true, false);
+
+    uut.run();
+    uut.close();
+    uut.close();
+
+    verify(jdbc).update(PgConstants.DELETE_CATCH_BY_CID, 42L);
+  }
+}
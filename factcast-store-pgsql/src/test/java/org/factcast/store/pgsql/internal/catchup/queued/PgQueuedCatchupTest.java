@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.queued;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.SlowConsumer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+@ExtendWith(MockitoExtension.class)
+public class PgQueuedCatchupTest {
+
+  @Mock JdbcTemplate jdbc;
+
+  @Mock PgConfigurationProperties props;
+
+  @Mock SubscriptionRequestTO req;
+
+  @Mock PgPostQueryMatcher postQueryMatcher;
+
+  @Mock SubscriptionImpl subscription;
+
+  final AtomicLong serial = new AtomicLong(0);
+
+  final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  PgQueuedCatchup uut;
+
+  @BeforeEach
+  void setup() {
+    when(props.getQueueSize()).thenReturn(2);
+    when(props.getFetchSize()).thenReturn(2);
+    when(req.specs()).thenReturn(Collections.emptyList());
+    lenient().when(subscription.isReady()).thenReturn(true);
+    uut = new PgQueuedCatchup(jdbc, props, req, postQueryMatcher, subscription, serial, executor);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  @Timeout(10)
+  void testDeliversAllPagesInOrder() throws Exception {
+    Fact f1 = Fact.builder().ns("ns").buildWithoutPayload();
+    Fact f2 = Fact.builder().ns("ns").buildWithoutPayload();
+    Fact f3 = Fact.builder().ns("ns").buildWithoutPayload();
+    when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+        .thenReturn(Arrays.asList(f1, f2), Collections.singletonList(f3));
+    when(postQueryMatcher.test(any())).thenReturn(true);
+
+    uut.run();
+
+    InOrder inOrder = inOrder(subscription);
+    inOrder.verify(subscription).notifyElement(f1);
+    inOrder.verify(subscription).notifyElement(f2);
+    inOrder.verify(subscription).notifyElement(f3);
+    // second page was not full, so there is no need for a third query
+    verify(jdbc, times(2))
+        .query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class));
+  }
+
+  @Test
+  @Timeout(10)
+  void testPausesWhileTheConsumerIsNotReady() throws Exception {
+    SlowConsumer consumer = new SlowConsumer(256);
+    PgQueuedCatchup uut =
+        new PgQueuedCatchup(
+            jdbc,
+            props,
+            req,
+            postQueryMatcher,
+            SubscriptionImpl.on(consumer, f -> f),
+            serial,
+            executor);
+    List<Fact> page = SlowConsumer.facts(1000);
+    when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+        .thenReturn(page, Collections.emptyList());
+    when(postQueryMatcher.test(any())).thenReturn(true);
+
+    uut.run();
+    int runs = 1;
+    while (uut.paused()) {
+      consumer.drain();
+      uut.run();
+      runs++;
+    }
+
+    assertThat(runs).isEqualTo(4);
+    assertThat(consumer.maxBuffered).isEqualTo(256);
+    assertThat(consumer.received).isEqualTo(page);
+  }
+
+  @Test
+  @Timeout(10)
+  void testCloseStopsFetchingOfPausedCatchup() throws Exception {
+    when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+        .thenReturn(SlowConsumer.facts(10));
+    when(postQueryMatcher.test(any())).thenReturn(true);
+    when(subscription.isReady()).thenReturn(false);
+
+    uut.run();
+    assertThat(uut.paused()).isTrue();
+    uut.close();
+
+    executor.shutdown();
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  @Timeout(10)
+  void testSkipsFilteredFacts() throws Exception {
+    Fact f1 = Fact.builder().ns("ns").buildWithoutPayload();
+    when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+        .thenReturn(Collections.singletonList(f1));
+    when(postQueryMatcher.test(any())).thenReturn(false);
+
+    uut.run();
+
+    verify(subscription, never()).notifyElement(any());
+  }
+
+  @Test
+  @Timeout(10)
+  void testReturnsOnFetchFailure() throws Exception {
+    when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+        .thenThrow(new IllegalStateException("db gone"));
+
+    uut.run();
+
+    verify(subscription, never()).notifyElement(any());
+  }
+
+  @Test
+  @Timeout(10)
+  void testStopsFetchingWhenDeliveryFails() throws Exception {
+    List<Fact> fullPage =
+        Arrays.asList(
+            Fact.builder().ns("ns").buildWithoutPayload(),
+            Fact.builder().ns("ns").buildWithoutPayload());
+    when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+        .thenReturn(fullPage);
+    when(postQueryMatcher.test(any())).thenReturn(true);
+    doThrow(new IllegalStateException("client gone")).when(subscription).notifyElement(any());
+
+    uut.run();
+
+    verify(subscription).close();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+  }
+}
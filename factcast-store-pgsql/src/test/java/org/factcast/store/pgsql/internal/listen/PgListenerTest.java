@@ -19,14 +19,20 @@
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.google.common.collect.Lists;
 import com.google.common.eventbus.EventBus;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import lombok.val;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgConstants;
 import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
 import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgListener.InsertedFactType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -155,6 +161,59 @@ public void subscribersAreOnlyInformedAboutNewFactsInDatabase() {
     assertEquals("fact_insert", factCaptor.getAllValues().get(0).name());
   }
 
+  @Test
+  public void subscribersAreInformedAboutInsertedFactTypes() {
+    PGNotification[] receivedNotifications =
+        new PGNotification[] {
+          new Notification(
+              "fact_insert",
+              1,
+              "{\"ns\":\"foo\",\"type\":\"bar\",\"ts\":" + System.currentTimeMillis() + "}"),
+          new Notification("fact_insert", 1, "{\"ns\":\"foo\",\"type\":null}")
+        };
+
+    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    pgListener.informSubscriberOfChannelNotifications(receivedNotifications);
+
+    verify(eventBus, times(1)).post(factCaptor.capture());
+    FactInsertionEvent event = factCaptor.getValue();
+    assertTrue(event.mightMatch(t -> "foo".equals(t.ns()) && "bar".equals(t.type())));
+    assertTrue(event.mightMatch(t -> "foo".equals(t.ns()) && t.type() == null));
+    assertFalse(event.mightMatch(t -> "baz".equals(t.ns())));
+    verify(registry.counter(OP.NOTIFY_FACT_INSERT)).increment(2);
+    verify(registry.timer(OP.PUBLISH_TO_NOTIFY_LATENCY))
+        .record(anyLong(), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void parsesFormerPerRowPayloads() {
+    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    List<InsertedFactType> types =
+        pgListener.parseInsertedFactTypes(
+            Lists.newArrayList(
+                new Notification(
+                    "fact_insert",
+                    1,
+                    "{\"ser\":7,\"header\":{\"id\":\""
+                        + UUID.randomUUID()
+                        + "\",\"ns\":\"foo\",\"type\":\"bar\"}}")));
+
+    assertEquals(Lists.newArrayList(new InsertedFactType("foo", "bar")), types);
+  }
+
+  @Test
+  public void unparseableNotificationsMightMatchAnything() {
+    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    List<InsertedFactType> types =
+        pgListener.parseInsertedFactTypes(
+            Lists.newArrayList(
+                new Notification("fact_insert", 1, "{\"ns\":\"foo\",\"type\":\"bar\"}"),
+                new Notification("fact_insert", 1)));
+
+    assertTrue(types.isEmpty());
+    assertTrue(new FactInsertionEvent("fact_insert", types).mightMatch(t -> false));
+  }
+
   @Test
   public void otherNotificationsAreIgnored() {
     PGNotification[] receivedNotifications =
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.lock;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.store.FactStore;
+import org.factcast.store.pgsql.internal.PgTestConfiguration;
+import org.factcast.store.test.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ContextConfiguration(classes = {PgTestConfiguration.class})
+@Sql(scripts = "/test_schema.sql", config = @SqlConfig(separator = "#"))
+@ExtendWith(SpringExtension.class)
+@TestPropertySource(properties = "factcast.store.pgsql.publishLockStrategy=STRIPED")
+@IntegrationTest
+class StripedAdvisoryWriteLockIntegrationTest {
+
+  @Autowired FactStore store;
+
+  @Autowired FactTableWriteLock lock;
+
+  @Autowired PlatformTransactionManager txManager;
+
+  final UUID aggId = UUID.randomUUID();
+
+  @Test
+  void conditionOnlyBlocksPublishesOfMatchingFacts() throws Exception {
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Void> condition =
+        CompletableFuture.runAsync(
+            () ->
+                new TransactionTemplate(txManager)
+                    .execute(
+                        status -> {
+                          lock.aquireTXLockFor(
+                              Collections.singletonList(FactSpec.ns("ns").aggId(aggId)),
+                              Collections.emptyList());
+                          locked.countDown();
+                          try {
+                            return release.await(10, TimeUnit.SECONDS);
+                          } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                          }
+                        }));
+    assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+    // other aggregate, other namespace
+    publishAsync(Fact.builder().ns("ns").aggId(UUID.randomUUID()).build("{}"))
+        .get(10, TimeUnit.SECONDS);
+    publishAsync(Fact.builder().ns("other").aggId(aggId).build("{}")).get(10, TimeUnit.SECONDS);
+
+    CompletableFuture<Void> matching =
+        publishAsync(Fact.builder().ns("ns").aggId(aggId).build("{}"));
+    assertThatThrownBy(() -> matching.get(500, TimeUnit.MILLISECONDS))
+        .isInstanceOf(TimeoutException.class);
+
+    release.countDown();
+    condition.get(10, TimeUnit.SECONDS);
+    matching.get(10, TimeUnit.SECONDS);
+  }
+
+  private CompletableFuture<Void> publishAsync(Fact f) {
+    return CompletableFuture.runAsync(() -> store.publish(Collections.singletonList(f)));
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.lock;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class StripedAdvisoryWriteLockTest {
+
+  @Mock JdbcTemplate tpl;
+
+  final UUID aggId = UUID.randomUUID();
+
+  StripedAdvisoryWriteLock uut;
+
+  @BeforeEach
+  void setup() {
+    uut = new StripedAdvisoryWriteLock(tpl, 1024, 4);
+  }
+
+  @Test
+  void rejectsZeroStripes() {
+    assertThatThrownBy(() -> new StripedAdvisoryWriteLock(tpl, 0, 4))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void stripesAreStableAndNeverZero() {
+    assertThat(uut.stripe("ns")).isEqualTo(uut.stripe("ns")).isBetween(1, 1024);
+    assertThat(uut.stripe("ns", aggId)).isEqualTo(uut.stripe("ns", aggId)).isBetween(1, 1024);
+  }
+
+  @Test
+  void publishingTakesSharedLocks() {
+    Fact f = Fact.builder().ns("ns").aggId(aggId).build("{}");
+
+    Map<Integer, Boolean> stripes = uut.stripesFor(Collections.emptyList(), Arrays.asList(f));
+
+    assertThat(stripes)
+        .containsOnly(
+            entry(StripedAdvisoryWriteLock.ALL_STRIPES, false),
+            entry(uut.stripe("ns"), false),
+            entry(uut.stripe("ns", aggId), false));
+  }
+
+  @Test
+  void conditionOnNamespaceTakesExclusiveLockOnNamespace() {
+    Fact f = Fact.builder().ns("ns").aggId(aggId).build("{}");
+
+    Map<Integer, Boolean> stripes =
+        uut.stripesFor(Arrays.asList(FactSpec.ns("ns")), Arrays.asList(f));
+
+    assertThat(stripes)
+        .containsOnly(
+            entry(StripedAdvisoryWriteLock.ALL_STRIPES, false),
+            entry(uut.stripe("ns"), true),
+            entry(uut.stripe("ns", aggId), false));
+  }
+
+  @Test
+  void conditionOnAggIdTakesExclusiveLockOnAggIdOnly() {
+    Map<Integer, Boolean> stripes =
+        uut.stripesFor(Arrays.asList(FactSpec.ns("ns").aggId(aggId)), Collections.emptyList());
+
+    assertThat(stripes)
+        .containsOnly(
+            entry(StripedAdvisoryWriteLock.ALL_STRIPES, false),
+            entry(uut.stripe("ns"), false),
+            entry(uut.stripe("ns", aggId), true));
+  }
+
+  @Test
+  void conditionOnAnyNamespaceLocksAllStripes() {
+    Fact f = Fact.builder().ns("ns").aggId(aggId).build("{}");
+
+    assertThat(uut.stripesFor(Arrays.asList(FactSpec.ns("*").aggId(aggId)), Arrays.asList(f)))
+        .containsOnly(entry(StripedAdvisoryWriteLock.ALL_STRIPES, true));
+  }
+
+  @Test
+  void locksAllStripesIfTooManyWouldBeNecessary() {
+    // fixed ids, so that no two of them hash to the same stripe
+    Fact f =
+        Fact.builder()
+            .ns("ns")
+            .aggId(new UUID(0, 1))
+            .aggId(new UUID(0, 2))
+            .aggId(new UUID(0, 3))
+            .aggId(new UUID(0, 4))
+            .build("{}");
+
+    assertThat(uut.stripesFor(Collections.emptyList(), Arrays.asList(f)))
+        .containsOnly(entry(StripedAdvisoryWriteLock.ALL_STRIPES, true));
+  }
+
+  @Test
+  void createsLockStatementInOrder() {
+    Map<Integer, Boolean> stripes = new LinkedHashMap<>();
+    stripes.put(0, false);
+    stripes.put(7, true);
+    stripes.put(9, false);
+
+    assertThat(StripedAdvisoryWriteLock.createLockStatement(stripes))
+        .isEqualTo(
+            "SELECT pg_advisory_xact_lock_shared(129,0),pg_advisory_xact_lock(129,7),"
+                + "pg_advisory_xact_lock_shared(129,9)");
+  }
+
+  @Test
+  void locksStripes() {
+    uut.aquireTXLockFor(Arrays.asList(FactSpec.ns("ns")), Collections.emptyList());
+
+    verify(tpl)
+        .execute(
+            "SELECT pg_advisory_xact_lock_shared(129,0),pg_advisory_xact_lock(129,"
+                + uut.stripe("ns")
+                + ")");
+  }
+
+  @Test
+  void exclusiveLockIsGlobal() {
+    uut.aquireExclusiveTXLock();
+
+    verify(tpl).execute("SELECT pg_advisory_xact_lock(128)");
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.partition;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.google.common.io.Resources;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.factcast.core.Fact;
+import org.factcast.core.store.FactStore;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgTestConfiguration;
+import org.factcast.store.test.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ContextConfiguration(classes = {PgTestConfiguration.class})
+@Sql(scripts = "/test_schema.sql", config = @SqlConfig(separator = "#"))
+@ExtendWith(SpringExtension.class)
+@IntegrationTest
+class PgFactTablePartitioningIntegrationTest {
+
+  static final String CHANGESETS = "/db/changelog/factcast/partitioning/partitionFactTable.sql";
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Autowired FactStore store;
+
+  @Autowired PgMetrics pgMetrics;
+
+  @Autowired PlatformTransactionManager txManager;
+
+  @Test
+  void migratesFactTableOnline() throws Exception {
+    List<UUID> ids = publish(25);
+    applyChangesets(10);
+
+    // published while migrating
+    ids.addAll(publish(5));
+    assertThat(relkind("fact")).isEqualTo("r");
+    assertThat(count("fact_partitioned")).isEqualTo(5);
+
+    PgFactTablePartitioning uut = new PgFactTablePartitioning(jdbcTemplate, pgMetrics, 7, 2, 3);
+    uut.maintain();
+    assertThat(relkind("fact")).isEqualTo("r");
+    assertThat(count("fact_partitioned")).isEqualTo(19);
+
+    uut.maintain();
+    uut.maintain();
+    assertThat(relkind("fact")).isEqualTo("p");
+    assertThat(count("fact")).isEqualTo(30);
+
+    ids.addAll(publish(15));
+    for (int i = 0; i < ids.size(); i++) {
+      Fact fact = store.fetchById(ids.get(i)).get();
+      assertThat(fact.serial()).isEqualTo(i + 1L);
+    }
+
+    assertThat(count("fact_p40")).isEqualTo(6);
+    // partitions up to the one of serial 30, plus three ahead
+    assertThat(count("fact_p60")).isEqualTo(0);
+    assertThat(jdbcTemplate.queryForObject("SELECT to_regclass('fact_p70')", String.class))
+        .isNull();
+    uut.maintain();
+    assertThat(jdbcTemplate.queryForObject("SELECT to_regclass('fact_p70')", String.class))
+        .isNotNull();
+  }
+
+  @Test
+  void rejectsDuplicateIdsAfterSwap() throws Exception {
+    List<UUID> ids = publish(15);
+    applyChangesets(10);
+    new PgFactTablePartitioning(jdbcTemplate, pgMetrics, 100, 1, 3).maintain();
+    assertThat(relkind("fact")).isEqualTo("p");
+
+    Fact duplicate = Fact.builder().ns("ns").id(ids.get(3)).build("{}");
+    assertThatThrownBy(() -> store.publish(Collections.singletonList(duplicate)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(count("fact")).isEqualTo(15);
+  }
+
+  @Test
+  void movesFactsOutOfDefaultPartition() throws Exception {
+    publish(15);
+    applyChangesets(10);
+    PgFactTablePartitioning uut = new PgFactTablePartitioning(jdbcTemplate, pgMetrics, 100, 1, 3);
+    uut.maintain();
+    assertThat(relkind("fact")).isEqualTo("p");
+
+    // beyond the partitions kept ready
+    List<UUID> ids = publish(50);
+    assertThat(count("fact_pdefault")).isEqualTo(16);
+
+    uut.maintain();
+    assertThat(count("fact_pdefault")).isZero();
+    assertThat(count("fact_p50")).isEqualTo(10);
+    assertThat(count("fact_p60")).isEqualTo(6);
+    assertThat(store.fetchById(ids.get(49)).get().serial()).isEqualTo(65L);
+
+    Fact duplicate = Fact.builder().ns("ns").id(ids.get(49)).build("{}");
+    assertThatThrownBy(() -> store.publish(Collections.singletonList(duplicate)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void rejectsConcurrentDuplicateIdsWithoutGlobalLock() throws Exception {
+    publish(5);
+    applyChangesets(10);
+    new PgFactTablePartitioning(jdbcTemplate, pgMetrics, 100, 1, 3).maintain();
+    Fact fact = Fact.builder().ns("ns").build("{}");
+    CountDownLatch inserted = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+
+    // inserting like a publish under STRIPED would, if it did not take the global lock
+    CompletableFuture<Void> first =
+        CompletableFuture.runAsync(
+            () ->
+                new TransactionTemplate(txManager)
+                    .executeWithoutResult(
+                        status -> {
+                          insert(fact);
+                          inserted.countDown();
+                          try {
+                            commit.await(10, TimeUnit.SECONDS);
+                          } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                          }
+                        }));
+    assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<Void> second = CompletableFuture.runAsync(() -> insert(fact));
+
+    commit.countDown();
+    first.get(10, TimeUnit.SECONDS);
+    assertThatThrownBy(() -> second.get(10, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(DuplicateKeyException.class);
+    assertThat(count("fact")).isEqualTo(6);
+  }
+
+  private void insert(Fact f) {
+    jdbcTemplate.update(PgConstants.INSERT_FACT, f.jsonHeader(), f.jsonPayload());
+  }
+
+  private List<UUID> publish(int n) {
+    List<Fact> facts =
+        IntStream.range(0, n)
+            .mapToObj(i -> Fact.builder().ns("ns").type("t" + i % 3).build("{}"))
+            .collect(Collectors.toList());
+    store.publish(facts);
+    return facts.stream().map(Fact::id).collect(Collectors.toCollection(ArrayList::new));
+  }
+
+  // every changeset in this file holds exactly one statement
+  private void applyChangesets(long partitionSize) throws IOException {
+    String sql = Resources.toString(getClass().getResource(CHANGESETS), StandardCharsets.UTF_8);
+    String[] changesets =
+        sql.replace("${factcastPartitionSize}", String.valueOf(partitionSize))
+            .split("(?m)^--changeset.*$");
+    for (int i = 1; i < changesets.length; i++) {
+      jdbcTemplate.execute(changesets[i]);
+    }
+  }
+
+  private String relkind(String table) {
+    return jdbcTemplate.queryForObject(
+        "SELECT relkind FROM pg_class WHERE oid = to_regclass(?)", String.class, table);
+  }
+
+  private long count(String table) {
+    return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+  }
+}
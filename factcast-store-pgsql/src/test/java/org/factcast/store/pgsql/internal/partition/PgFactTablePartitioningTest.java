@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.partition;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class PgFactTablePartitioningTest {
+
+  @Mock JdbcTemplate jdbcTemplate;
+
+  @Mock PgMetrics pgMetrics;
+
+  PgFactTablePartitioning uut;
+
+  @BeforeEach
+  void setup() {
+    uut = new PgFactTablePartitioning(jdbcTemplate, pgMetrics, 100, 3, 2);
+  }
+
+  @Test
+  void doesNothingIfNotPrepared() {
+    when(jdbcTemplate.queryForObject(PgFactTablePartitioning.IS_PREPARED, Boolean.class))
+        .thenReturn(false);
+
+    uut.maintain();
+
+    verifyNoInteractions(pgMetrics);
+    verifyNoMoreInteractions(jdbcTemplate);
+  }
+
+  @Test
+  void maintainIsTimed() {
+    when(jdbcTemplate.queryForObject(PgFactTablePartitioning.IS_PREPARED, Boolean.class))
+        .thenReturn(true);
+
+    uut.maintain();
+
+    verify(pgMetrics).time(same(OP.MAINTAIN_FACT_PARTITIONS), any(Runnable.class));
+  }
+
+  @Test
+  void copiesAtMostChunksPerRunAndDoesNotSwapUnlessDone() {
+    when(jdbcTemplate.queryForObject(PgFactTablePartitioning.COPY_CHUNK, Long.class, 100))
+        .thenReturn(1000L, 900L, 800L, 700L);
+    when(jdbcTemplate.queryForObject(PgFactTablePartitioning.ENSURE_PARTITIONS, Integer.class, 2))
+        .thenReturn(0);
+
+    uut.migrateAndEnsurePartitions();
+
+    verify(jdbcTemplate, times(3))
+        .queryForObject(PgFactTablePartitioning.COPY_CHUNK, Long.class, 100);
+    verify(jdbcTemplate, never()).queryForObject(PgFactTablePartitioning.SWAP, Boolean.class);
+  }
+
+  @Test
+  void swapsWhenDone() {
+    when(jdbcTemplate.queryForObject(PgFactTablePartitioning.COPY_CHUNK, Long.class, 100))
+        .thenReturn(100L, 0L);
+    when(jdbcTemplate.queryForObject(PgFactTablePartitioning.SWAP, Boolean.class)).thenReturn(true);
+    when(jdbcTemplate.queryForObject(PgFactTablePartitioning.ENSURE_PARTITIONS, Integer.class, 2))
+        .thenReturn(1);
+
+    uut.migrateAndEnsurePartitions();
+
+    verify(jdbcTemplate, times(2))
+        .queryForObject(PgFactTablePartitioning.COPY_CHUNK, Long.class, 100);
+    verify(jdbcTemplate).queryForObject(PgFactTablePartitioning.SWAP, Boolean.class);
+    verify(jdbcTemplate)
+        .queryForObject(PgFactTablePartitioning.ENSURE_PARTITIONS, Integer.class, 2);
+  }
+}
@@ -18,7 +18,12 @@
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.sql.PreparedStatement;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.SneakyThrows;
+import org.factcast.core.spec.FactSpec;
 import org.junit.jupiter.api.*;
 
 public class PgQueryBuilderTest {
@@ -30,4 +35,34 @@ public void testPGQueryBuilder() {
     PgQueryBuilder uut = new PgQueryBuilder(mock(List.class));
     assertThrows(NullPointerException.class, () -> uut.createStatementSetter(null));
   }
+
+  @Test
+  public void testCreatePagedSQL() {
+    PgQueryBuilder uut = new PgQueryBuilder(Collections.singletonList(FactSpec.ns("foo")));
+    assertTrue(uut.createPagedSQL().startsWith(uut.createSQL()));
+    assertTrue(uut.createPagedSQL().endsWith(" LIMIT ?"));
+  }
+
+  @Test
+  public void testPayloadPredicatesAreOredPerPath() {
+    PgQueryBuilder uut =
+        new PgQueryBuilder(
+            Collections.singletonList(FactSpec.ns("foo").payload("a.b", 1, 2).payload("c", "x")));
+    String sql = uut.createSQL();
+    assertTrue(sql.contains("AND ( payload @> ?::jsonb OR payload @> ?::jsonb ) "));
+    assertTrue(sql.contains("AND ( payload @> ?::jsonb ) "));
+  }
+
+  @Test
+  @SneakyThrows
+  public void testPayloadPredicateParameters() {
+    PgQueryBuilder uut =
+        new PgQueryBuilder(Collections.singletonList(FactSpec.ns("foo").payload("a.b", 1, "x")));
+    PreparedStatement ps = mock(PreparedStatement.class);
+    uut.createStatementSetter(new AtomicLong(7)).setValues(ps);
+    verify(ps).setString(1, "{\"ns\": \"foo\" }");
+    verify(ps).setString(2, "{\"a\":{\"b\":1}}");
+    verify(ps).setString(3, "{\"a\":{\"b\":\"x\"}}");
+    verify(ps).setLong(4, 7);
+  }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.tail;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import lombok.SneakyThrows;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer.BufferedFact;
+import org.factcast.store.pgsql.internal.tail.PgTailBuffer.Slice;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+@ExtendWith(MockitoExtension.class)
+public class PgTailBufferTest {
+
+  @Mock JdbcTemplate jdbcTemplate;
+
+  /** simulated fact table */
+  final List<Row> table = new ArrayList<>();
+
+  @Test
+  void testDisabled() {
+    PgTailBuffer uut = new PgTailBuffer(jdbcTemplate, 0);
+
+    assertThat(uut.tailAfter(0)).isEmpty();
+    verifyNoInteractions(jdbcTemplate);
+  }
+
+  @Test
+  void testStartsAtLatestFact() {
+    table(1, 2, 3);
+    PgTailBuffer uut = new PgTailBuffer(jdbcTemplate, 10);
+
+    assertThat(uut.tailAfter(2)).isEmpty();
+    Slice slice = uut.tailAfter(3).get();
+    assertThat(slice.head()).isEqualTo(3);
+    assertThat(slice.facts()).isEmpty();
+  }
+
+  @Test
+  void testServesAppendedFacts() {
+    table(1, 2, 3);
+    PgTailBuffer uut = new PgTailBuffer(jdbcTemplate, 10);
+    uut.tailAfter(3);
+    table(4, 5, 6);
+
+    Slice slice = uut.tailAfter(4).get();
+
+    assertThat(slice.head()).isEqualTo(6);
+    assertThat(sers(slice)).containsExactly(5L, 6L);
+  }
+
+  @Test
+  void testStartsOnEmptyTable() {
+    PgTailBuffer uut = new PgTailBuffer(jdbcTemplate, 10);
+    assertThat(uut.tailAfter(0).get().facts()).isEmpty();
+    table(1, 2);
+
+    assertThat(sers(uut.tailAfter(0).get())).containsExactly(1L, 2L);
+  }
+
+  @Test
+  void testEvictsBeyondCapacity() {
+    table(1);
+    PgTailBuffer uut = new PgTailBuffer(jdbcTemplate, 3);
+    uut.tailAfter(1);
+    table(2, 3);
+    uut.tailAfter(1);
+    table(4, 5);
+
+    assertThat(uut.tailAfter(1)).isEmpty();
+    assertThat(sers(uut.tailAfter(2).get())).containsExactly(3L, 4L, 5L);
+  }
+
+  @Test
+  void testResetsWhenTooManyFactsWerePublished() {
+    table(1);
+    PgTailBuffer uut = new PgTailBuffer(jdbcTemplate, 3);
+    uut.tailAfter(1);
+    table(2, 3, 4, 5);
+
+    assertThat(uut.tailAfter(1)).isEmpty();
+    assertThat(uut.tailAfter(5).get().facts()).isEmpty();
+  }
+
+  @Test
+  void testResetsWhenHeadFactChanged() {
+    table(1, 2);
+    PgTailBuffer uut = new PgTailBuffer(jdbcTemplate, 10);
+    uut.tailAfter(2);
+    table(3);
+    assertThat(sers(uut.tailAfter(2).get())).containsExactly(3L);
+
+    // wiped and refilled
+    table.clear();
+    table(1, 2, 3, 4);
+
+    assertThat(uut.tailAfter(2)).isEmpty();
+    assertThat(uut.tailAfter(4).get().head()).isEqualTo(4);
+  }
+
+  private static List<Long> sers(Slice slice) {
+    return slice.facts().stream().map(BufferedFact::ser).collect(Collectors.toList());
+  }
+
+  @SneakyThrows
+  private void table(long... sers) {
+    for (long ser : sers) {
+      table.add(new Row(ser, UUID.randomUUID()));
+    }
+    lenient()
+        .when(jdbcTemplate.query(eq(PgConstants.SELECT_LATEST_FACT), any(RowMapper.class)))
+        .thenAnswer(
+            inv ->
+                map(
+                    inv.getArgument(1),
+                    table.isEmpty()
+                        ? new ArrayList<>()
+                        : table.subList(table.size() - 1, table.size())));
+    lenient()
+        .when(
+            jdbcTemplate.query(
+                eq(PgConstants.SELECT_FACTS_FROM_SER),
+                any(PreparedStatementSetter.class),
+                any(RowMapper.class)))
+        .thenAnswer(
+            inv -> {
+              PreparedStatementSetterCapture capture = new PreparedStatementSetterCapture();
+              ((PreparedStatementSetter) inv.getArgument(1)).setValues(capture.ps);
+              List<Row> rows =
+                  table.stream()
+                      .filter(r -> r.ser >= capture.from())
+                      .limit(capture.limit())
+                      .collect(Collectors.toList());
+              return map(inv.getArgument(2), rows);
+            });
+  }
+
+  @SneakyThrows
+  private static List<Object> map(RowMapper<?> mapper, List<Row> rows) {
+    List<Object> result = new ArrayList<>();
+    for (Row r : rows) {
+      ResultSet rs = mock(ResultSet.class, withSettings().lenient());
+      when(rs.getLong(PgConstants.COLUMN_SER)).thenReturn(r.ser);
+      when(rs.getString(PgConstants.ALIAS_ID)).thenReturn(r.id.toString());
+      when(rs.getString(PgConstants.ALIAS_NS)).thenReturn("ns");
+      when(rs.getString(PgConstants.COLUMN_HEADER)).thenReturn("{}");
+      when(rs.getString(PgConstants.COLUMN_PAYLOAD)).thenReturn("{}");
+      result.add(mapper.mapRow(rs, result.size()));
+    }
+    return result;
+  }
+
+  private static class Row {
+    final long ser;
+
+    final UUID id;
+
+    Row(long ser, UUID id) {
+      this.ser = ser;
+      this.id = id;
+    }
+  }
+
+  private static class PreparedStatementSetterCapture {
+    final PreparedStatement ps = mock(java.sql.PreparedStatement.class);
+
+    @SneakyThrows
+    long from() {
+      ArgumentCaptor<Long> c = ArgumentCaptor.forClass(Long.class);
+      verify(ps).setLong(eq(1), c.capture());
+      return c.getValue();
+    }
+
+    @SneakyThrows
+    int limit() {
+      ArgumentCaptor<Integer> c = ArgumentCaptor.forClass(Integer.class);
+      verify(ps).setInt(eq(2), c.capture());
+      return c.getValue();
+    }
+  }
+}
@@ -24,11 +24,15 @@
 import java.io.IOException;
 import java.net.URL;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import lombok.val;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.registry.NOPRegistryMetrics;
 import org.factcast.store.pgsql.registry.RegistryIndex;
+import org.factcast.store.pgsql.registry.metrics.MetricEvent;
 import org.factcast.store.pgsql.registry.metrics.RegistryMetrics;
 import org.factcast.store.pgsql.registry.metrics.TimedOperation;
 import org.factcast.store.pgsql.registry.transformation.*;
@@ -179,11 +183,100 @@ public void testAllowReplaceTrueForSchemes()
     uut.fetchInitial();
 
     assertThat(schemaStore.get(testSource.toKey())).isPresent().hasValue("{}");
+    val before = uut.get(testSource.toKey());
 
     index.schemes(Lists.newArrayList(testSource.hash("changed")));
     uut.refresh();
 
     assertThat(schemaStore.get(testSource.toKey())).isPresent().hasValue("{\"foo\":\"bar\"}");
+    // cached schema was invalidated
+    assertThat(uut.get(testSource.toKey()).get()).isNotSameAs(before.get());
+  }
+
+  @Test
+  void testInvalidationWhileLoadingIsNotLost() throws Exception {
+    index.schemes(Lists.newArrayList(source1));
+    when(fileFetcher.fetchSchema(any())).thenReturn("{}").thenReturn("{\"foo\":\"bar\"}");
+    HttpSchemaRegistry uut =
+        new HttpSchemaRegistry(
+            schemaStore,
+            transformationStore,
+            indexFetcher,
+            fileFetcher,
+            registryMetrics,
+            new PgConfigurationProperties().setAllowSchemaReplace(true));
+    uut.fetchInitial();
+    SchemaKey key = source1.toKey();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch refreshed = new CountDownLatch(1);
+    doAnswer(
+            inv -> {
+              Object stale = inv.callRealMethod();
+              loading.countDown();
+              refreshed.await(10, TimeUnit.SECONDS);
+              return stale;
+            })
+        .doCallRealMethod()
+        .when(schemaStore)
+        .get(key);
+
+    val stale = CompletableFuture.supplyAsync(() -> uut.get(key));
+    assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+    index.schemes(Lists.newArrayList(source1.hash("changed")));
+    uut.refresh();
+    refreshed.countDown();
+    stale.get(10, TimeUnit.SECONDS);
+
+    uut.get(key);
+
+    // loaded again, as the schema was replaced while loading
+    verify(schemaStore, times(2)).get(key);
+  }
+
+  @Test
+  void testCachesCompiledSchemas() throws Exception {
+    HttpSchemaRegistry uut =
+        new HttpSchemaRegistry(
+            schemaStore,
+            transformationStore,
+            indexFetcher,
+            fileFetcher,
+            registryMetrics,
+            new PgConfigurationProperties());
+    uut.fetchInitial();
+    SchemaKey key = source1.toKey();
+
+    val first = uut.get(key);
+    val second = uut.get(key);
+
+    assertThat(first).isPresent();
+    assertThat(second.get()).isSameAs(first.get());
+    verify(schemaStore, times(1)).get(key);
+    verify(registryMetrics).count(MetricEvent.SCHEMA_CACHE_MISS);
+    verify(registryMetrics).count(MetricEvent.SCHEMA_CACHE_HIT);
+  }
+
+  @Test
+  void testCachesMissingSchemasUntilRegistered() throws Exception {
+    HttpSchemaRegistry uut =
+        new HttpSchemaRegistry(
+            schemaStore,
+            transformationStore,
+            indexFetcher,
+            fileFetcher,
+            registryMetrics,
+            new PgConfigurationProperties());
+    uut.fetchInitial();
+    val source3 = new SchemaSource("http://foo/3", "123", "ns", "type", 3);
+
+    assertThat(uut.get(source3.toKey())).isEmpty();
+    assertThat(uut.get(source3.toKey())).isEmpty();
+    verify(schemaStore, times(1)).get(source3.toKey());
+
+    index.schemes(Lists.newArrayList(source3));
+    uut.refresh();
+
+    assertThat(uut.get(source3.toKey())).isPresent();
   }
 
   @Test
@@ -20,11 +20,16 @@
 import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.factcast.core.Fact;
 import org.factcast.core.TestFact;
 import org.factcast.core.subscription.FactTransformerService;
+import org.factcast.core.subscription.TransformationException;
 import org.factcast.core.util.FactCastJson;
 import org.factcast.store.pgsql.internal.RequestedVersions;
 import org.factcast.store.pgsql.registry.NOPRegistryMetrics;
@@ -138,4 +143,90 @@ public void testTransform() throws Exception {
     verify(registryMetrics)
         .timed(eq(TimedOperation.TRANSFORMATION), any(), any(SupplierWithException.class));
   }
+
+  @Test
+  public void testTransformBatch() throws Exception {
+    Fact untouched = new TestFact().ns("other").version(1);
+    RequestedVersions requestedVersions = new RequestedVersions();
+    List<Fact> probes = new ArrayList<>();
+    for (int i = 0; i < FactTransformerServiceImpl.MIN_FACTS_TO_TRANSFORM_IN_PARALLEL; i++) {
+      Fact probe = new TestFact().version(1);
+      requestedVersions.add(probe.ns(), probe.type(), 33);
+      probes.add(probe);
+    }
+    Fact cachedProbe = probes.get(3);
+    Fact cachedTransformed = new TestFact().version(33);
+    List<Fact> batch = new ArrayList<>(probes);
+    batch.add(1, untouched);
+
+    when(chains.get(any(), eq(1), eq(33))).thenReturn(chain);
+    when(chain.id()).thenReturn("chainId");
+    when(cache.findAll(any()))
+        .thenReturn(
+            Collections.singletonMap(
+                TransformationCache.Key.of(cachedProbe.id(), 33, "chainId"), cachedTransformed));
+    JsonNode transformedJsonNode = FactCastJson.readTree("{\"transformed\":true}");
+    when(trans.transform(any(), any())).thenReturn(transformedJsonNode);
+
+    FactTransformerService service =
+        new FactTransformerServiceImpl(chains, trans, cache, registryMetrics, 2);
+    FactTransformersImpl uut =
+        new FactTransformersImpl(requestedVersions, service, registryMetrics);
+
+    List<Fact> transformed = uut.transformIfNecessary(batch);
+
+    assertThat(transformed).hasSize(batch.size());
+    assertThat(transformed.get(1)).isSameAs(untouched);
+    assertThat(transformed.get(4)).isSameAs(cachedTransformed);
+    for (int i = 0; i < transformed.size(); i++) {
+      if (i != 1 && i != 4) {
+        assertThat(transformed.get(i).id()).isEqualTo(batch.get(i).id());
+        assertThat(transformed.get(i).version()).isEqualTo(33);
+        assertThat(transformed.get(i).jsonPayload()).isEqualTo(transformedJsonNode.toString());
+      }
+    }
+
+    verify(trans, times(probes.size() - 1)).transform(any(), any());
+    verify(cache).findAll(any());
+    verify(cache).putAll(argThat(m -> m.size() == probes.size() - 1));
+    verify(cache, never()).find(any(), anyInt(), any());
+    verify(registryMetrics)
+        .timed(eq(TimedOperation.TRANSFORMATION), any(), any(SupplierWithException.class));
+  }
+
+  @Test
+  public void testTransformBatchNotNecessary() throws Exception {
+    List<Fact> batch = Arrays.asList(new TestFact(), new TestFact());
+    FactTransformerService service =
+        new FactTransformerServiceImpl(chains, trans, cache, registryMetrics);
+    FactTransformersImpl uut =
+        new FactTransformersImpl(new RequestedVersions(), service, registryMetrics);
+
+    assertThat(uut.transformIfNecessary(batch)).isSameAs(batch);
+
+    verifyNoInteractions(registryMetrics, cache);
+  }
+
+  @Test
+  public void testTransformBatchPropagatesTransformationException() throws Exception {
+    RequestedVersions requestedVersions = new RequestedVersions();
+    List<Fact> batch = new ArrayList<>();
+    for (int i = 0; i < FactTransformerServiceImpl.MIN_FACTS_TO_TRANSFORM_IN_PARALLEL; i++) {
+      Fact probe = new TestFact().version(1);
+      requestedVersions.add(probe.ns(), probe.type(), 33);
+      batch.add(probe);
+    }
+    when(chains.get(any(), eq(1), eq(33))).thenReturn(chain);
+    when(chain.id()).thenReturn("chainId");
+    when(trans.transform(any(), any()))
+        .thenThrow(new TransformationException(new IllegalArgumentException("broken")));
+
+    FactTransformerService service =
+        new FactTransformerServiceImpl(chains, trans, cache, registryMetrics, 2);
+    FactTransformersImpl uut =
+        new FactTransformersImpl(requestedVersions, service, registryMetrics);
+
+    assertThatThrownBy(() -> uut.transformIfNecessary(batch))
+        .isInstanceOf(TransformationException.class);
+  }
 }
@@ -19,6 +19,10 @@
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import org.factcast.core.Fact;
@@ -120,4 +124,29 @@ void testRespectsVersion() {
     uut.put(f, "foo");
     assertThat(uut.find(f.id(), 2, "foo")).isEmpty();
   }
+
+  @Test
+  void testFindAllAfterPutAll() {
+    Fact f1 = Fact.builder().ns("name").type("type").version(2).build("{}");
+    Fact f2 = Fact.builder().ns("name").type("type").version(2).build("{}");
+    TransformationCache.Key k1 = TransformationCache.Key.of(f1, "foo");
+    TransformationCache.Key k2 = TransformationCache.Key.of(f2, "foo");
+    TransformationCache.Key unknown = TransformationCache.Key.of(UUID.randomUUID(), 2, "foo");
+
+    Map<TransformationCache.Key, Fact> toPut = new HashMap<>();
+    toPut.put(k1, f1);
+    toPut.put(k2, f2);
+    uut.putAll(toPut);
+
+    Map<TransformationCache.Key, Fact> found = uut.findAll(Arrays.asList(k1, k2, unknown));
+
+    assertThat(found).hasSize(2).containsEntry(k1, f1).containsEntry(k2, f2);
+    verify(registryMetrics, times(2)).count(MetricEvent.TRANSFORMATION_CACHE_HIT);
+    verify(registryMetrics).count(MetricEvent.TRANSFORMATION_CACHE_MISS);
+  }
+
+  @Test
+  void testFindAllEmpty() {
+    assertThat(uut.findAll(Collections.emptyList())).isEmpty();
+  }
 }
@@ -15,6 +15,13 @@
  */
 package org.factcast.store.pgsql.registry.transformation.cache;
 
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.base.Strings;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.registry.metrics.MetricEvent;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -24,4 +31,58 @@ class InMemTransformationCacheTest extends AbstractTransformationCacheTest {
   protected TransformationCache createUUT() {
     return new InMemTransformationCache(registryMetrics);
   }
+
+  @Test
+  void testBoundedByCapacity() {
+    InMemTransformationCache uut = new InMemTransformationCache(1000, 1024 * 1024, registryMetrics);
+
+    for (int i = 0; i < 2000; i++) {
+      uut.put(Fact.builder().ns("ns").type("type").version(1).build("{}"), "foo");
+    }
+
+    assertThat(uut.size()).isLessThanOrEqualTo(1000);
+    verify(registryMetrics, atLeast(1000)).count(MetricEvent.TRANSFORMATION_CACHE_EVICTION);
+  }
+
+  @Test
+  void testBoundedByBytes() {
+    long maxBytes = 1024 * 1024;
+    InMemTransformationCache uut =
+        new InMemTransformationCache(1_000_000, maxBytes, registryMetrics);
+    String payload = "{\"a\":\"" + Strings.repeat("x", 100_000) + "\"}";
+
+    for (int i = 0; i < 100; i++) {
+      uut.put(Fact.builder().ns("ns").type("type").version(1).build(payload), "foo");
+    }
+
+    // each entry weighs more than 200k
+    assertThat(uut.size()).isLessThanOrEqualTo(maxBytes / 200_000);
+    verify(registryMetrics, atLeast(90)).count(MetricEvent.TRANSFORMATION_CACHE_EVICTION);
+  }
+
+  @Test
+  void testHoldsUpToMaxBytes() {
+    long maxBytes = 1024 * 1024;
+    InMemTransformationCache uut =
+        new InMemTransformationCache(1_000_000, maxBytes, registryMetrics);
+    String payload = "{\"a\":\"" + Strings.repeat("x", 100_000) + "\"}";
+
+    for (int i = 0; i < 4; i++) {
+      uut.put(Fact.builder().ns("ns").type("type").version(1).build(payload), "foo");
+    }
+
+    // about 800k in total, no matter how the keys hash
+    assertThat(uut.size()).isEqualTo(4);
+    verify(registryMetrics, never()).count(MetricEvent.TRANSFORMATION_CACHE_EVICTION);
+  }
+
+  @Test
+  void testWeigh() {
+    Fact f = Fact.builder().ns("ns").type("type").version(1).build("{}");
+
+    assertThat(InMemTransformationCache.weigh("key", f))
+        .isEqualTo(
+            2L * (3 + f.jsonHeader().length() + 2)
+                + InMemTransformationCache.ENTRY_OVERHEAD_IN_BYTES);
+  }
 }
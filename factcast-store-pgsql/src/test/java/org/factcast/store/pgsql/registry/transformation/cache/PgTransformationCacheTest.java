@@ -17,6 +17,7 @@
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.UUID;
 import org.factcast.core.Fact;
@@ -61,6 +62,16 @@ void testLastAccessUpdateAfterFind() {
     assertTrue(dateOnInsert.before(dateAfterUpdate));
   }
 
+  @Test
+  void testPutAllIgnoresExistingEntries() {
+    Fact fact = Fact.builder().ns("ns").type("type").id(UUID.randomUUID()).version(1).build("{}");
+    uut.put(fact, "1-2-3");
+
+    uut.putAll(Collections.singletonMap(TransformationCache.Key.of(fact, "1-2-3"), fact));
+
+    assertEquals(fact, uut.find(fact.id(), 1, "1-2-3").get());
+  }
+
   private Date getLastAccessDate() {
     return tpl.query(
             "SELECT last_access FROM transformationcache",
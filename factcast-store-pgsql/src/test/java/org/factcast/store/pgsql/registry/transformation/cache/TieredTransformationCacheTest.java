@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.registry.transformation.cache;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Date;
+import java.util.UUID;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.PgTestConfiguration;
+import org.factcast.store.test.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ContextConfiguration(classes = {PgTestConfiguration.class})
+@Sql(scripts = "/test_schema.sql", config = @SqlConfig(separator = "#"))
+@ExtendWith(SpringExtension.class)
+@ExtendWith(MockitoExtension.class)
+@IntegrationTest
+class TieredTransformationCacheTest extends AbstractTransformationCacheTest {
+  @Autowired private JdbcTemplate tpl;
+
+  @Override
+  protected TransformationCache createUUT() {
+    return new TieredTransformationCache(
+        new PgTransformationCache(tpl, registryMetrics), registryMetrics, 100);
+  }
+
+  private TieredTransformationCache tiered() {
+    return (TieredTransformationCache) uut;
+  }
+
+  @Test
+  void testServesFromL1() {
+    Fact fact = Fact.builder().ns("ns").type("type").id(UUID.randomUUID()).version(1).build("{}");
+    uut.put(fact, "1-2-3");
+
+    tpl.update("DELETE FROM transformationcache");
+
+    assertThat(uut.find(fact.id(), 1, "1-2-3")).contains(fact);
+  }
+
+  @Test
+  void testPopulatesL1FromL2() {
+    Fact fact = Fact.builder().ns("ns").type("type").id(UUID.randomUUID()).version(1).build("{}");
+    new PgTransformationCache(tpl, registryMetrics).put(fact, "1-2-3");
+    assertThat(tiered().l1Size()).isEqualTo(0);
+
+    assertThat(uut.find(fact.id(), 1, "1-2-3")).contains(fact);
+
+    assertThat(tiered().l1Size()).isEqualTo(1);
+  }
+
+  @Test
+  void testBatchesAccessTimes() throws Exception {
+    Fact fact = Fact.builder().ns("ns").type("type").id(UUID.randomUUID()).version(1).build("{}");
+    uut.put(fact, "1-2-3");
+    Date dateOnInsert = getLastAccessDate();
+
+    uut.find(fact.id(), 1, "1-2-3");
+    uut.find(fact.id(), 1, "1-2-3");
+
+    assertThat(getLastAccessDate()).isEqualTo(dateOnInsert);
+    assertThat(tiered().pendingAccesses()).isEqualTo(1);
+
+    tiered().flushAccessTimes();
+
+    assertThat(getLastAccessDate()).isAfter(dateOnInsert);
+    assertThat(tiered().pendingAccesses()).isEqualTo(0);
+  }
+
+  private Date getLastAccessDate() {
+    return tpl.queryForObject("SELECT last_access FROM transformationcache", Date.class);
+  }
+}
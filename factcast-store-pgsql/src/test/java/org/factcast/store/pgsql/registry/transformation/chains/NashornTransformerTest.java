@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.registry.transformation.chains;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.core.util.FactCastJson;
+import org.factcast.store.pgsql.registry.transformation.SingleTransformation;
+import org.factcast.store.pgsql.registry.transformation.Transformation;
+import org.factcast.store.pgsql.registry.transformation.TransformationKey;
+import org.junit.jupiter.api.*;
+
+public class NashornTransformerTest {
+
+  final TransformationKey key = TransformationKey.of("ns", "type");
+
+  NashornTransformer uut = new NashornTransformer(2);
+
+  @Test
+  void testNoCode() throws Exception {
+    JsonNode input = FactCastJson.readTree("{\"a\":1}");
+    assertThat(uut.transform(SingleTransformation.of(key, 1, 2, null), input)).isSameAs(input);
+  }
+
+  @Test
+  void testTransformsNestedStructures() throws Exception {
+    Transformation t =
+        SingleTransformation.of(
+            key, 1, 2, "function transform(e){ e.list[0] = 'a'; e.nested.y = e.nested.x + 'y' }");
+
+    JsonNode actual =
+        uut.transform(t, FactCastJson.readTree("{\"list\":[1,2],\"nested\":{\"x\":21}}"));
+
+    assertThat(actual.toString())
+        .isEqualTo("{\"list\":[\"a\",2],\"nested\":{\"x\":21,\"y\":\"21y\"}}");
+  }
+
+  @Test
+  void testKeepsNumbersUntouched() throws Exception {
+    Transformation t = SingleTransformation.of(key, 1, 2, "function transform(e){ e.x = 'x' }");
+
+    JsonNode actual =
+        uut.transform(
+            t,
+            FactCastJson.readTree(
+                "{\"big\":9007199254740993,\"neg\":-9223372036854775808,\"frac\":0.1,"
+                    + "\"exp\":1.5E300,\"int\":7}"));
+
+    assertThat(actual.toString())
+        .isEqualTo(
+            "{\"big\":9007199254740993,\"neg\":-9223372036854775808,\"frac\":0.1,"
+                + "\"exp\":1.5E300,\"int\":7,\"x\":\"x\"}");
+  }
+
+  @Test
+  void testTransformsLikeBefore() throws Exception {
+    Transformation t =
+        SingleTransformation.of(
+            key, 1, 2, "function transform(e){ e.sum = e.a + e.b; e.half = e.a / 2 }");
+
+    JsonNode actual = uut.transform(t, FactCastJson.readTree("{\"a\":3,\"b\":0.5}"));
+
+    assertThat(actual.toString()).isEqualTo("{\"a\":3,\"b\":0.5,\"sum\":3.5,\"half\":1.5}");
+  }
+
+  @Test
+  void testBrokenCode() {
+    Transformation t = SingleTransformation.of(key, 1, 2, "function transform(e){ e.x = ; }");
+    assertThatThrownBy(() -> uut.transform(t, FactCastJson.readTree("{}")))
+        .isInstanceOf(TransformationException.class);
+  }
+
+  @Test
+  void testMissingTransformFunction() {
+    Transformation t = SingleTransformation.of(key, 1, 2, "var x = 1;");
+    assertThatThrownBy(() -> uut.transform(t, FactCastJson.readTree("{}")))
+        .isInstanceOf(TransformationException.class);
+  }
+
+  @Test
+  @SneakyThrows
+  void testConcurrentUseIsIsolated() {
+    String js = "function transform(e){ e.copy = e.n; for (var i=0;i<1000;i++) { e.copy = e.n; } }";
+    Transformation t = SingleTransformation.of(key, 1, 2, js);
+
+    ExecutorService es = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<JsonNode>> results =
+          IntStream.range(0, 200)
+              .mapToObj(
+                  i ->
+                      es.submit(() -> uut.transform(t, FactCastJson.readTree("{\"n\":" + i + "}"))))
+              .collect(Collectors.toList());
+
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(results.get(i).get().get("copy").asInt()).isEqualTo(i);
+      }
+    } finally {
+      es.shutdown();
+    }
+
+    assertThat(uut.idleEngines(js)).isBetween(1, 2);
+  }
+}
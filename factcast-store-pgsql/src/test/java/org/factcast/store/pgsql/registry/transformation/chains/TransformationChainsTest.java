@@ -17,6 +17,7 @@
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -24,6 +25,11 @@
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.factcast.core.util.FactCastJson;
 import org.factcast.store.pgsql.registry.NOPRegistryMetrics;
 import org.factcast.store.pgsql.registry.SchemaRegistry;
@@ -203,6 +209,95 @@ void testNoTransformationForKey() {
                     Tag.of("to", "99"))));
   }
 
+  @Test
+  void testPrecomputesAllReachablePairs() {
+    ArrayList<Transformation> all = Lists.newArrayList();
+    all.add(SingleTransformation.of(key, 1, 2, js(1)));
+    all.add(SingleTransformation.of(key, 2, 3, js(2)));
+    all.add(SingleTransformation.of(key, 3, 2, js(3)));
+    when(r.get(key)).thenReturn(all);
+
+    assertThat(uut.precompute(key))
+        .containsOnlyKeys(
+            new TransformationChains.VersionPath(1, 2),
+            new TransformationChains.VersionPath(1, 3),
+            new TransformationChains.VersionPath(2, 3),
+            new TransformationChains.VersionPath(3, 2));
+  }
+
+  @Test
+  void testServesPrecomputedChainsWithoutSearching() {
+    ArrayList<Transformation> all = Lists.newArrayList();
+    all.add(SingleTransformation.of(key, 1, 2, js(1)));
+    all.add(SingleTransformation.of(key, 2, 3, js(2)));
+    when(r.get(key)).thenReturn(all);
+
+    uut.notifyFor(key);
+    TransformationChain chain = uut.get(key, 1, 3);
+
+    assertThat(uut.get(key, 1, 3)).isSameAs(chain);
+    assertEquals("[1, 2, 3]", chain.id());
+    verify(r, times(1)).get(key);
+  }
+
+  @Test
+  void testNotifyReplacesChains() {
+    ArrayList<Transformation> all = Lists.newArrayList();
+    all.add(SingleTransformation.of(key, 1, 2, js(1)));
+    all.add(SingleTransformation.of(key, 2, 3, js(2)));
+    when(r.get(key)).thenReturn(all);
+    assertEquals("[1, 2, 3]", uut.get(key, 1, 3).id());
+
+    ArrayList<Transformation> updated = Lists.newArrayList(all);
+    updated.add(SingleTransformation.of(key, 1, 3, js(3)));
+    when(r.get(key)).thenReturn(updated);
+    uut.notifyFor(key);
+
+    assertEquals("[1, 3]", uut.get(key, 1, 3).id());
+  }
+
+  @Test
+  void testPrecomputingDoesNotBlockOtherKeys() throws Exception {
+    CountDownLatch precomputing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(r.get(any(TransformationKey.class)))
+        .thenAnswer(
+            inv -> {
+              TransformationKey k = inv.getArgument(0);
+              return Lists.newArrayList(SingleTransformation.of(k, 1, 2, js(1)));
+            });
+    when(r.get(key))
+        .thenAnswer(
+            inv -> {
+              precomputing.countDown();
+              release.await(10, TimeUnit.SECONDS);
+              return Lists.newArrayList(SingleTransformation.of(key, 1, 2, js(1)));
+            });
+
+    ExecutorService es = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> blocked = es.submit(() -> uut.notifyFor(key));
+      assertThat(precomputing.await(10, TimeUnit.SECONDS)).isTrue();
+
+      // enough keys for some of them to share a bin of the map with the blocked one
+      Future<?> others =
+          es.submit(
+              () -> {
+                for (int i = 0; i < 64; i++) {
+                  uut.get(TransformationKey.of("ns", "type" + i), 1, 2);
+                }
+                return null;
+              });
+      others.get(10, TimeUnit.SECONDS);
+
+      release.countDown();
+      blocked.get(10, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      es.shutdownNow();
+    }
+  }
+
   private String js(int n) {
     return "function transform(event){ event.stage" + n + " = true }";
   }
@@ -20,6 +20,9 @@
 
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.factcast.core.Fact;
 import org.factcast.core.FactValidationException;
@@ -71,4 +74,27 @@ void testInterceptPublishPropagatesErros() throws Throwable {
     }
     verify(jp, never()).proceed();
   }
+
+  @Test
+  void testInterceptPublishValidatesBigBatchesInParallel() throws Throwable {
+    List<Fact> facts =
+        IntStream.range(0, FactValidationAspect.MIN_FACTS_TO_VALIDATE_IN_PARALLEL * 2)
+            .mapToObj(i -> Fact.builder().ns("ns").type("type").version(1).buildWithoutPayload())
+            .collect(Collectors.toList());
+    Fact invalid = facts.get(7);
+    when(jp.getArgs()).thenReturn(new Object[] {facts});
+    when(v.validate(any()))
+        .thenAnswer(
+            i ->
+                i.getArgument(0) == invalid
+                    ? Collections.singletonList(new FactValidationError("invalid"))
+                    : Collections.emptyList());
+
+    FactValidationException e =
+        assertThrows(FactValidationException.class, () -> uut.interceptPublish(jp));
+
+    assertTrue(e.getMessage().contains("invalid"));
+    facts.forEach(f -> verify(v).validate(f));
+    verify(jp, never()).proceed();
+  }
 }
@@ -20,6 +20,7 @@
 
 import com.github.fge.jsonschema.main.JsonSchema;
 import io.micrometer.core.instrument.Tags;
+import java.util.Collections;
 import java.util.Optional;
 import lombok.val;
 import org.factcast.core.Fact;
@@ -188,4 +189,24 @@ public void testIsValidateableWithoutVersion() throws Exception {
     Fact invalidFact = Fact.builder().ns("ns").type("type").buildWithoutPayload();
     assertThat(FactValidator.isValidateable(invalidFact)).isFalse();
   }
+
+  @Test
+  public void testDelegatesToEngine() {
+    val registryMetrics = spy(new NOPRegistryMetrics());
+    PgConfigurationProperties props = mock(PgConfigurationProperties.class);
+    when(props.isValidationEnabled()).thenReturn(true);
+    FactValidationEngine engine = mock(FactValidationEngine.class);
+    Fact probeFact = Fact.builder().ns("foo").type("bar").version(1).build("{}");
+    FactValidationError error = new FactValidationError("nope");
+    when(engine.validate(SchemaKey.from(probeFact), probeFact))
+        .thenReturn(Optional.of(Collections.singletonList(error)));
+
+    FactValidator uut = new FactValidator(props, engine, registryMetrics);
+
+    assertThat(uut.validate(probeFact)).containsExactly(error);
+    verify(registryMetrics)
+        .count(
+            MetricEvent.FACT_VALIDATION_FAILED,
+            Tags.of(RegistryMetrics.TAG_IDENTITY_KEY, SchemaKey.from(probeFact).toString()));
+  }
 }
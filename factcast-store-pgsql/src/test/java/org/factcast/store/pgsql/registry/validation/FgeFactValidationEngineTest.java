@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.registry.validation;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.Optional;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.registry.SchemaRegistry;
+import org.factcast.store.pgsql.registry.http.ValidationConstants;
+import org.factcast.store.pgsql.registry.validation.schema.SchemaKey;
+import org.junit.jupiter.api.*;
+
+class FgeFactValidationEngineTest {
+
+  final SchemaRegistry registry = mock(SchemaRegistry.class);
+
+  final FgeFactValidationEngine uut = new FgeFactValidationEngine(registry);
+
+  final SchemaKey key = SchemaKey.of("ns", "type", 1);
+
+  @BeforeEach
+  void setup() throws Exception {
+    String schema =
+        "{\"type\":\"object\",\"properties\":{\"firstName\":{\"type\":\"string\"}},"
+            + "\"required\":[\"firstName\"]}";
+    when(registry.get(key))
+        .thenReturn(
+            Optional.of(
+                ValidationConstants.JSON_SCHEMA_FACTORY.getJsonSchema(
+                    ValidationConstants.JACKSON.readTree(schema))));
+  }
+
+  @Test
+  void validFact() {
+    assertThat(uut.validate(key, fact("{\"firstName\":\"Peter\"}")))
+        .hasValue(Collections.emptyList());
+  }
+
+  @Test
+  void invalidFact() {
+    assertThat(uut.validate(key, fact("{\"lastName\":\"Peter\"}")).get())
+        .hasSize(1)
+        .first()
+        .extracting(FactValidationError::level)
+        .isEqualTo("error");
+  }
+
+  @Test
+  void unparseableFact() {
+    assertThat(uut.validate(key, fact("{\"firstName\":")).get())
+        .hasSize(1)
+        .first()
+        .extracting(FactValidationError::message)
+        .asString()
+        .startsWith("Fact is not parseable.");
+  }
+
+  @Test
+  void missingSchema() {
+    assertThat(uut.validate(SchemaKey.of("ns", "type", 2), fact("{}"))).isEmpty();
+  }
+
+  private static Fact fact(String payload) {
+    return Fact.builder().ns("ns").type("type").version(1).build(payload);
+  }
+}
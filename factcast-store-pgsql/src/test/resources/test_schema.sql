@@ -6,8 +6,15 @@ DROP SEQUENCE IF EXISTS catchup_seq;
 DROP INDEX IF EXISTS idx_catchup_cid_ser;
 DROP INDEX IF EXISTS idx_fact_header;
 DROP INDEX IF EXISTS idx_fact_unique_id;
+DROP INDEX IF EXISTS idx_fact_id;
+DROP INDEX IF EXISTS idx_fact_aggids;
 
 DROP TABLE IF EXISTS fact CASCADE;
+DROP TABLE IF EXISTS fact_partitioned CASCADE;
+DROP TABLE IF EXISTS fact_unpartitioned CASCADE;
+DROP TABLE IF EXISTS fact_partitioning CASCADE;
+DROP TABLE IF EXISTS fact_id CASCADE;
+DROP SEQUENCE IF EXISTS fact_ser_seq CASCADE;
 DROP TABLE IF EXISTS catchup CASCADE;
 
 DROP TABLE IF EXISTS schemastore cascade;
@@ -20,26 +27,50 @@ CREATE TABLE fact (
  ser SERIAL PRIMARY KEY,
  
  header JSONB NOT NULL,
- payload JSONB NOT NULL
+ payload JSONB NOT NULL,
 
+ id UUID,
+ aggids UUID[]
 );
 
-CREATE UNIQUE INDEX idx_fact_unique_id ON fact( (header->'id') );
+CREATE UNIQUE INDEX idx_fact_id ON fact(id);
+CREATE INDEX idx_fact_aggids ON fact USING GIN(aggids);
 CREATE INDEX idx_fact_header ON fact USING GIN(header jsonb_path_ops);
 #
 
-CREATE OR REPLACE FUNCTION notifyFactInsert() RETURNS trigger AS $$
+CREATE OR REPLACE FUNCTION extractFactIds() RETURNS trigger AS $$
 BEGIN
-  PERFORM pg_notify('fact_insert', json_build_object(
-    'ser', NEW.ser,
-    'header',NEW.header
-  )::text);
+  NEW.id := (NEW.header->>'id')::uuid;
+  IF jsonb_typeof(NEW.header->'aggIds') = 'array' THEN
+    NEW.aggids := ARRAY(SELECT jsonb_array_elements_text(NEW.header->'aggIds')::uuid);
+  ELSE
+    NEW.aggids := '{}';
+  END IF;
   RETURN NEW;
 END;
 $$ LANGUAGE plpgsql;
 
 #
-CREATE CONSTRAINT TRIGGER tr_deferred_fact_insert AFTER INSERT ON fact DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE PROCEDURE notifyFactInsert();
+CREATE TRIGGER tr_fact_extract_ids BEFORE INSERT ON fact FOR EACH ROW EXECUTE PROCEDURE extractFactIds();
+#
+
+CREATE OR REPLACE FUNCTION notifyFactInsertStatement() RETURNS trigger AS $$
+DECLARE
+  r RECORD;
+BEGIN
+  FOR r IN SELECT DISTINCT header->>'ns' AS ns, header->>'type' AS type FROM inserted LOOP
+    PERFORM pg_notify('fact_insert', json_build_object(
+      'ns', r.ns,
+      'type', r.type,
+      'ts', (EXTRACT(EPOCH FROM now()) * 1000)::bigint
+    )::text);
+  END LOOP;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+#
+CREATE TRIGGER tr_fact_insert_notify AFTER INSERT ON fact REFERENCING NEW TABLE AS inserted FOR EACH STATEMENT EXECUTE PROCEDURE notifyFactInsertStatement();
 
 #
 create sequence catchup_seq;
@@ -44,6 +44,8 @@
 import org.factcast.core.subscription.SubscriptionRequest;
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.observer.FlowControl;
+import org.factcast.core.util.FactCastJson;
 import org.junit.jupiter.api.*;
 import org.mockito.Mockito;
 import org.springframework.test.annotation.DirtiesContext;
@@ -415,6 +417,34 @@ protected void testScriptedWithPayloadFiltering() {
         });
   }
 
+  @DirtiesContext
+  @Test
+  protected void testPayloadPredicateFiltering() {
+    Assertions.assertTimeout(
+        Duration.ofMillis(30000),
+        () -> {
+          FactObserver observer = mock(FactObserver.class);
+          uut.publish(
+              Fact.of(
+                  "{\"id\":\"" + UUID.randomUUID() + "\",\"ns\":\"default\",\"type\":\"t\"}",
+                  "{\"order\":{\"state\":\"open\"}}"));
+          uut.publish(
+              Fact.of(
+                  "{\"id\":\"" + UUID.randomUUID() + "\",\"ns\":\"default\",\"type\":\"t\"}",
+                  "{\"order\":{\"state\":\"closed\"}}"));
+          uut.publish(
+              Fact.of(
+                  "{\"id\":\"" + UUID.randomUUID() + "\",\"ns\":\"default\",\"type\":\"t\"}",
+                  "{\"order\":{\"state\":\"cancelled\"}}"));
+          FactSpec spec = FactSpec.ns("default").payload("order.state", "open", "cancelled");
+          uut.subscribe(SubscriptionRequest.catchup(spec).fromScratch(), observer).awaitComplete();
+          verify(observer, times(2)).onNext(any());
+          verify(observer).onCatchup();
+          verify(observer).onComplete();
+          verifyNoMoreInteractions(observer);
+        });
+  }
+
   @DirtiesContext
   @Test
   protected void testScriptedWithHeaderFiltering() {
@@ -796,6 +826,58 @@ protected void testCatchup() throws Exception {
 
   }
 
+  @Test
+  protected void testCatchupWithSlowConsumer() throws Exception {
+    String ns = "slowcatchup";
+    for (int i = 0; i < 50; i++) {
+      uut.publish(Fact.builder().ns(ns).type("type").build("{\"i\":" + i + "}"));
+    }
+    FlowControlledObserver observer = new FlowControlledObserver(false);
+    Subscription s =
+        store.subscribe(
+            SubscriptionRequestTO.forFacts(
+                SubscriptionRequest.catchup(FactSpec.ns(ns)).fromScratch()),
+            observer);
+
+    Thread.sleep(200);
+    observer.ready(true);
+    s.awaitComplete(10000);
+
+    assertThat(observer.received()).isEqualTo(range(50));
+  }
+
+  @Test
+  protected void testFollowWithSlowConsumer() throws Exception {
+    String ns = "slowfollow";
+    FlowControlledObserver observer = new FlowControlledObserver(true);
+    store
+        .subscribe(
+            SubscriptionRequestTO.forFacts(
+                SubscriptionRequest.follow(FactSpec.ns(ns)).fromScratch()),
+            observer)
+        .awaitCatchup(10000);
+
+    observer.ready(false);
+    for (int i = 0; i < 10; i++) {
+      uut.publish(Fact.builder().ns(ns).type("type").build("{\"i\":" + i + "}"));
+    }
+    Thread.sleep(200);
+    observer.ready(true);
+
+    observer.await(10);
+    // give duplicates a chance to show up
+    Thread.sleep(200);
+    assertThat(observer.received()).isEqualTo(range(10));
+  }
+
+  private static List<Integer> range(int to) {
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < to; i++) {
+      expected.add(i);
+    }
+    return expected;
+  }
+
   private Fact newTestFact(String ns) {
     return Fact.builder().ns(ns).id(UUID.randomUUID()).type("type").build("{}");
   }
@@ -1286,6 +1368,53 @@ public void await(int count) {
     }
   }
 
+  /** an observer that can signal it is not ready for more facts, like a slow remote consumer */
+  private static class FlowControlledObserver extends TestFactObserver implements FlowControl {
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+
+    private boolean ready;
+
+    FlowControlledObserver(boolean ready) {
+      this.ready = ready;
+    }
+
+    void ready(boolean ready) {
+      List<Runnable> toRun;
+      synchronized (this) {
+        this.ready = ready;
+        if (!ready) {
+          return;
+        }
+        toRun = new ArrayList<>(callbacks);
+        callbacks.clear();
+      }
+      toRun.forEach(Runnable::run);
+    }
+
+    @Override
+    public synchronized boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void onReady(Runnable callback) {
+      synchronized (this) {
+        if (!ready) {
+          callbacks.add(callback);
+          return;
+        }
+      }
+      callback.run();
+    }
+
+    List<Integer> received() {
+      return super.values.stream()
+          .map(f -> FactCastJson.toObjectNode(f.jsonPayload()).get("i").asInt())
+          .collect(Collectors.toList());
+    }
+  }
+
   @Test
   public void nullContracts_publishIfUnchanged() throws Exception {
     assertThrows(
@@ -35,6 +35,9 @@ static void wipeAllFactCastDataDataFromPostgres(PostgreSQLContainer<?> pg) {
     try (val con = DriverManager.getConnection(url, p);
         val st = con.createStatement()) {
       st.execute("TRUNCATE fact");
+      // ids of a partitioned fact table
+      st.execute(
+          "DO $$ BEGIN IF to_regclass('fact_id') IS NOT NULL THEN TRUNCATE fact_id; END IF; END $$");
       st.execute("TRUNCATE tokenstore");
       st.execute("TRUNCATE transformationcache");
       st.execute("TRUNCATE snapshot_cache");